@@ -1,3 +1,4 @@
 mkdir $PREFIX/lib $PREFIX/bin
 cp bin/xenon.bat $PREFIX/bin/xenon.bat
 cp lib/xenon-cli-*.jar $PREFIX/lib/
+cp -r lib/xenon-adaptors-cloud $PREFIX/lib/
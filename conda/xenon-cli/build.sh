@@ -2,3 +2,4 @@ mkdir  $PREFIX/bin $PREFIX/lib || true
 cp bin/xenon $PREFIX/bin/xenon
 cp bin/xenon.bat $PREFIX/bin/xenon.bat
 cp lib/xenon-cli-*.jar $PREFIX/lib/
+cp -r lib/xenon-adaptors-cloud $PREFIX/lib/
@@ -137,10 +137,10 @@ public class ListTest {
 
         assertEquals("Count", 2, result.files.size());
         LongListItem dir3 = result.files.get(0);
-        assertEquals("first item is dir3", "dir3", dir3.relativePath);
-        assertTrue("first item is dir", dir3.isDirectory);
+        assertEquals("first item is dir3", "dir3", dir3.getRelativePath());
+        assertTrue("first item is dir", dir3.isDirectory());
         LongListItem file1 = result.files.get(1);
-        assertEquals("second item is file1", "file1", file1.relativePath);
-        assertTrue("second item is file", file1.isRegular);
+        assertEquals("second item is file1", "file1", file1.getRelativePath());
+        assertTrue("second item is file", file1.isRegular());
     }
 }
@@ -0,0 +1,81 @@
+package nl.esciencecenter.xenon.cli.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import nl.esciencecenter.xenon.cli.Main;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.SystemOutRule;
+import org.junit.rules.TemporaryFolder;
+
+public class SyncTest {
+    @Rule
+    public TemporaryFolder myFolder = new TemporaryFolder();
+
+    @Rule
+    public final SystemOutRule systemOutRule = new SystemOutRule().enableLog();
+
+    private void sync(String... options) {
+        File sourceDir = new File(myFolder.getRoot(), "source");
+        File targetDir = new File(myFolder.getRoot(), "target");
+        String[] command = {"filesystem", "file", "sync"};
+        String[] paths = {sourceDir.getAbsolutePath(), targetDir.getAbsolutePath()};
+        String[] args = new String[command.length + options.length + paths.length];
+        System.arraycopy(command, 0, args, 0, command.length);
+        System.arraycopy(options, 0, args, command.length, options.length);
+        System.arraycopy(paths, 0, args, command.length + options.length, paths.length);
+        Main main = new Main();
+        main.run(args);
+    }
+
+    @Test
+    public void sync_newDir_copiesTreeWithModifiedTime() throws IOException {
+        Path sourceDir = myFolder.newFolder("source").toPath();
+        Files.createDirectories(sourceDir.resolve("sub"));
+        Path sourceFile = Files.write(sourceDir.resolve("sub/file.txt"), "data".getBytes(StandardCharsets.UTF_8));
+
+        sync();
+
+        Path targetFile = myFolder.getRoot().toPath().resolve("target/sub/file.txt");
+        assertEquals("data", new String(Files.readAllBytes(targetFile), StandardCharsets.UTF_8));
+        assertEquals(Files.getLastModifiedTime(sourceFile), Files.getLastModifiedTime(targetFile));
+    }
+
+    @Test
+    public void sync_again_copiesOnlyChanged() throws IOException {
+        Path sourceDir = myFolder.newFolder("source").toPath();
+        Files.write(sourceDir.resolve("same.txt"), "same".getBytes(StandardCharsets.UTF_8));
+        Files.write(sourceDir.resolve("changed.txt"), "old".getBytes(StandardCharsets.UTF_8));
+        sync();
+        Files.write(sourceDir.resolve("changed.txt"), "changed".getBytes(StandardCharsets.UTF_8));
+        systemOutRule.clearLog();
+
+        sync();
+
+        Path targetDir = myFolder.getRoot().toPath().resolve("target");
+        assertEquals("changed", new String(Files.readAllBytes(targetDir.resolve("changed.txt")), StandardCharsets.UTF_8));
+        assertTrue(systemOutRule.getLog().contains("0 new and 1 changed files of which 1 copied"));
+        assertTrue(systemOutRule.getLog().contains("1 unchanged files"));
+    }
+
+    @Test
+    public void sync_delete_removesExtraneous() throws IOException {
+        myFolder.newFolder("source");
+        Path targetDir = myFolder.newFolder("target").toPath();
+        Files.createDirectories(targetDir.resolve("extra"));
+        Files.write(targetDir.resolve("extra/file.txt"), "extra".getBytes(StandardCharsets.UTF_8));
+
+        sync("--delete");
+
+        assertFalse(Files.exists(targetDir.resolve("extra")));
+    }
+}
@@ -0,0 +1,145 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single buffer copy loop which Utils.pipe used to have with {@link PipelinedCopy}.
+ *
+ * A remote stream is simulated by a fixed latency per sftp sized packet, a local stream has none
+ * and stdin/stdout are pipes with a small latency per call on both sides.
+ *
+ * Run with `./gradlew jmh`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipeBenchmark {
+    private static final int SIZE = 16 * 1024 * 1024;
+    private static final int PACKET_SIZE = 32 * 1024;
+    private static final long REMOTE_LATENCY_NANOS = 200_000L;
+    private static final long PIPE_LATENCY_NANOS = 20_000L;
+
+    @Param({"localToRemote", "remoteToLocal", "streaming"})
+    public String direction;
+
+    private InputStream source() {
+        switch (direction) {
+            case "remoteToLocal":
+                return new SlowInputStream(SIZE, PACKET_SIZE, REMOTE_LATENCY_NANOS);
+            case "streaming":
+                return new SlowInputStream(SIZE, 64 * 1024, PIPE_LATENCY_NANOS);
+            default:
+                return new SlowInputStream(SIZE, Integer.MAX_VALUE, 0);
+        }
+    }
+
+    private OutputStream target() {
+        switch (direction) {
+            case "localToRemote":
+                return new SlowOutputStream(PACKET_SIZE, REMOTE_LATENCY_NANOS);
+            case "streaming":
+                return new SlowOutputStream(64 * 1024, PIPE_LATENCY_NANOS);
+            default:
+                return new SlowOutputStream(Integer.MAX_VALUE, 0);
+        }
+    }
+
+    @Benchmark
+    public long singleBuffer() throws IOException {
+        InputStream in = source();
+        OutputStream out = target();
+        long bytes = 0;
+        byte[] buffer = new byte[16 * 1024];
+        int len = in.read(buffer);
+        while (len != -1) {
+            bytes += len;
+            out.write(buffer, 0, len);
+            len = in.read(buffer);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long pipelined() throws IOException {
+        return PipelinedCopy.copy(source(), target());
+    }
+
+    /**
+     * Zeros which are returned at most a packet per read, each read waits for the latency
+     */
+    private static class SlowInputStream extends InputStream {
+        private final int packetSize;
+        private final long latencyNanos;
+        private long remaining;
+
+        SlowInputStream(long size, int packetSize, long latencyNanos) {
+            this.remaining = size;
+            this.packetSize = packetSize;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining == 0) {
+                return -1;
+            }
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            int n = (int) Math.min(remaining, Math.min(length, packetSize));
+            remaining -= n;
+            return n;
+        }
+    }
+
+    /**
+     * Discards bytes, each started packet waits for the latency
+     */
+    private static class SlowOutputStream extends OutputStream {
+        private final int packetSize;
+        private final long latencyNanos;
+
+        SlowOutputStream(int packetSize, long latencyNanos) {
+            this.packetSize = packetSize;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public void write(int b) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            if (latencyNanos == 0) {
+                return;
+            }
+            for (int written = 0; written < length; written += packetSize) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.xenon.cli.PipelinedCopy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Copies a multi-GB local file with streams, as the adaptor and the copy engine used to, and with channel transfers.
+ *
+ * Each copy is timed once, throughput is size divided by time.
+ * The directory of the files can be set with `-Dbenchmark.dir=DIR`, the default is the temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LocalCopyBenchmark {
+    @Param({"2147483648", "4294967296"})
+    public long size;
+
+    private Path dir;
+    private Path source;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        dir = Files.createTempDirectory(Paths.get(System.getProperty("benchmark.dir", System.getProperty("java.io.tmpdir"))), "xenon-benchmark");
+        source = dir.resolve("source");
+        target = dir.resolve("target");
+        ByteBuffer block = ByteBuffer.allocate(1024 * 1024);
+        try (FileChannel out = FileChannel.open(source, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (long written = 0; written < size; written += block.capacity()) {
+                // not all zeros, so a filesystem can not store it sparse
+                block.clear();
+                block.putLong(0, written);
+                out.write(block);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void removeTarget() throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void removeFiles() throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long streams() throws IOException {
+        try (
+            InputStream in = Files.newInputStream(source);
+            OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)
+        ) {
+            return PipelinedCopy.copy(in, out);
+        }
+    }
+
+    @Benchmark
+    public long channelTransfer() throws IOException {
+        return LocalTransfer.copy(source, target, false);
+    }
+}
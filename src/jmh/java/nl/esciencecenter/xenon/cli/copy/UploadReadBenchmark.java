@@ -0,0 +1,99 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.xenon.cli.PipelinedCopy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads a local file as an upload does, with a plain stream and memory mapped, into a target which discards it.
+ *
+ * The default size of 8G should be larger than the memory of the machine, so reads miss the page cache,
+ * other sizes can be given to the benchmark jar with `-p size=BYTES`. The gc profiler reports allocation and collections.
+ * The directory of the file can be set with `-Dbenchmark.dir=DIR`, the default is the temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class UploadReadBenchmark {
+    @Param({"8589934592"})
+    public long size;
+
+    private Path dir;
+    private Path source;
+
+    /**
+     * Target with the cost of copying the bytes, like a network stream
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+        private final byte[] sink = new byte[1024 * 1024];
+
+        @Override
+        public void write(int b) {
+            sink[0] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            System.arraycopy(b, off, sink, 0, Math.min(len, sink.length));
+        }
+    }
+
+    @Setup
+    public void createSource() throws IOException {
+        dir = Files.createTempDirectory(Paths.get(System.getProperty("benchmark.dir", System.getProperty("java.io.tmpdir"))), "xenon-benchmark");
+        source = dir.resolve("source");
+        ByteBuffer block = ByteBuffer.allocate(1024 * 1024);
+        try (FileChannel out = FileChannel.open(source, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (long written = 0; written < size; written += block.capacity()) {
+                block.clear();
+                block.putLong(0, written);
+                out.write(block);
+            }
+        }
+    }
+
+    @TearDown
+    public void removeSource() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return PipelinedCopy.copy(in, new DiscardingOutputStream());
+        }
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        try (InputStream in = new MappedInputStream(source)) {
+            return PipelinedCopy.copy(in, new DiscardingOutputStream());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package nl.esciencecenter.xenon.cli;
+
+import net.sourceforge.argparse4j.inf.Argument;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.ArgumentType;
+import nl.esciencecenter.xenon.cli.copy.BandwidthSchedule;
+
+/**
+ * Bytes per second like `10M`, or timetable of start times and rates like `08:00,512K 18:00,10M 23:00,off`
+ */
+public class BandwidthArgumentType implements ArgumentType<BandwidthSchedule> {
+    @Override
+    public BandwidthSchedule convert(ArgumentParser parser, Argument arg, String value) throws ArgumentParserException {
+        try {
+            return BandwidthSchedule.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new ArgumentParserException(e.getMessage(), parser);
+        }
+    }
+}
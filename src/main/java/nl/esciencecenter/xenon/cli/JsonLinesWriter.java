@@ -0,0 +1,56 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+import nl.esciencecenter.xenon.XenonRuntimeException;
+
+/**
+ * Writes records as JSON lines (NDJSON), each record is written as soon as it is produced,
+ * so downstream tools can start consuming before the command is done.
+ */
+public class JsonLinesWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final Gson gson;
+    private final Writer writer;
+
+    public JsonLinesWriter(OutputStream out) {
+        this(out, new Gson());
+    }
+
+    /**
+     * @param gson Gson with adapters for the records
+     */
+    public JsonLinesWriter(OutputStream out, Gson gson) {
+        this.gson = gson;
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @param res Parsed arguments
+     * @return true when `--jsonl` is given, so commands should write their records with a JsonLinesWriter
+     */
+    public static boolean isEnabled(Namespace res) {
+        return Boolean.TRUE.equals(res.getBoolean("jsonl"));
+    }
+
+    public synchronized void write(Object record) {
+        try {
+            // a JsonWriter only allows a single top-level value
+            gson.toJson(record, record.getClass(), new JsonWriter(writer));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException | JsonIOException e) {
+            throw new XenonRuntimeException("jsonl", "Unable to write record", e);
+        }
+    }
+}
@@ -3,12 +3,16 @@ package nl.esciencecenter.xenon.cli;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.*;
 import nl.esciencecenter.xenon.AdaptorDescription;
+import nl.esciencecenter.xenon.UnknownAdaptorException;
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.XenonRuntimeException;
+import nl.esciencecenter.xenon.cli.adaptors.Adaptors;
+import nl.esciencecenter.xenon.cli.batch.BatchParser;
 import nl.esciencecenter.xenon.cli.copy.CopyParser;
 import nl.esciencecenter.xenon.cli.copy.DownloadParser;
 import nl.esciencecenter.xenon.cli.copy.UploadParser;
@@ -20,14 +24,23 @@ import nl.esciencecenter.xenon.cli.queues.QueuesParser;
 import nl.esciencecenter.xenon.cli.removefile.RemoveFileParser;
 import nl.esciencecenter.xenon.cli.removejob.RemoveJobParser;
 import nl.esciencecenter.xenon.cli.rename.RenameParser;
+import nl.esciencecenter.xenon.cli.serve.ServeClient;
+import nl.esciencecenter.xenon.cli.serve.ServeParser;
 import nl.esciencecenter.xenon.cli.submit.SubmitParser;
+import nl.esciencecenter.xenon.cli.sync.SyncParser;
 import nl.esciencecenter.xenon.cli.wait.WaitParser;
-import nl.esciencecenter.xenon.filesystems.FileSystem;
 import nl.esciencecenter.xenon.filesystems.FileSystemAdaptorDescription;
-import nl.esciencecenter.xenon.schedulers.Scheduler;
 import nl.esciencecenter.xenon.schedulers.SchedulerAdaptorDescription;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 import static nl.esciencecenter.xenon.cli.ParserHelpers.getSupportedLocationHelp;
@@ -37,31 +50,68 @@ import static nl.esciencecenter.xenon.utils.LocalFileSystemUtils.isWindows;
  * Parse arguments and runs sub-commands.
  */
 public class Main {
-    private final ArgumentParser parser;
+    private static final String FILESYSTEM = "filesystem";
+    private static final String SCHEDULER = "scheduler";
+    private static final int PRINT_BUFFER_SIZE = 64 * 1024;
+    private ArgumentParser parser;
     private Namespace res = new Namespace(new HashMap<>());
+    private final Profile profile = new Profile();
 
     public static void main(String[] args) {
+        StandardStreams.capture();
+        String endpointFile = System.getenv(ServeClient.ENDPOINT_ENV);
+        if (endpointFile != null && indexOfAdaptorType(args) != -1) {
+            Integer status = new ServeClient(Paths.get(endpointFile)).forward(args);
+            if (status != null) {
+                System.exit(status);
+            }
+            // daemon is not running or refused the command, so run it in this process
+        }
         Main main = new Main();
-        Object output = main.run(args);
-        main.print(output);
+        main.runAndPrint(args);
     }
 
-    public Namespace getRes() {
-        return res;
+    public void runAndPrint(String[] args) {
+        Object output = run(args);
+        long start = System.nanoTime();
+        print(output);
+        profile.record("print", start);
+        reportProfile();
+        if (output instanceof PartialFailure) {
+            String failure = ((PartialFailure) output).getFailure();
+            if (failure != null) {
+                System.err.println(failure);
+                exit(1);
+            }
+        }
     }
 
-    public Main() {
-        parser = buildArgumentParser();
+    public Namespace getRes() {
+        return res;
     }
 
     public Object run(String[] args) {
+        profile.makeCurrent();
+        long start = System.nanoTime();
+        if (needsOnDemandAdaptors(args)) {
+            Adaptors.loadOnDemandAdaptors();
+        }
+        AdaptorDescription adaptorDescription = findAdaptorDescription(args);
+        profile.record("adaptors", start);
+        start = System.nanoTime();
+        parser = isVersion(args) ? buildRootParser() : buildArgumentParser(adaptorDescription);
+        profile.record("parser", start);
+        start = System.nanoTime();
         try {
             res = parser.parseArgs(args);
         } catch (ArgumentParserException e) {
             parser.handleError(e);
-            System.exit(2);
+            exit(2);
         }
+        profile.record("parse", start);
+        start = System.nanoTime();
         configureLogger();
+        profile.record("logger", start);
         ICommand subCommand = res.get("command");
         return run(subCommand);
     }
@@ -84,9 +134,13 @@ public class Main {
     }
 
     public Object run(ICommand subCommand) {
+        long start = System.nanoTime();
         try {
-            return subCommand.run(res);
+            Object output = subCommand.run(res);
+            profile.record("command", start);
+            return output;
         } catch (XenonException e) {
+            profile.record("command", start);
             handleError(e);
             return null;
         }
@@ -98,10 +152,45 @@ public class Main {
         } else {
             System.err.println(e.getMessage());
         }
-        System.exit(1);
+        reportProfile();
+        exit(1);
+    }
+
+    /**
+     * Write profile to stderr when `--profile` is given, as JSON with `--json`, and append it as JSON line to `--profile-file`.
+     */
+    private void reportProfile() {
+        boolean toStderr = Boolean.TRUE.equals(res.getBoolean("profile"));
+        String file = res.getString("profile_file");
+        if (!toStderr && file == null) {
+            return;
+        }
+        ICommand subCommand = res.get("command");
+        String command = subCommand == null ? null : subCommand.getClass().getSimpleName();
+        String json = new Gson().toJson(profile.toMap(command, res.getString("adaptor")));
+        if (toStderr) {
+            boolean machineReadable = Boolean.TRUE.equals(res.getBoolean("json")) || JsonLinesWriter.isEnabled(res);
+            System.err.println(machineReadable ? json : profile.toString());
+        }
+        if (file != null) {
+            try {
+                Files.write(Paths.get(file), Collections.singletonList(json), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Unable to write profile to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    protected void exit(int status) {
+        System.exit(status);
     }
 
     private void print(Object output) {
+        if (output != null && JsonLinesWriter.isEnabled(res)) {
+            // commands which produce many records write them as they go and return nothing
+            new JsonLinesWriter(System.out).write(output);
+            return;
+        }
         Boolean jsonFormat = res.getBoolean("json");
         print(output, jsonFormat);
     }
@@ -111,14 +200,169 @@ public class Main {
             return;
         }
         if (jsonFormat) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            System.out.print(gson.toJson(output));
+            // stream document to stdout instead of building it as string first
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), PRINT_BUFFER_SIZE);
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            jsonWriter.setIndent("  ");
+            try {
+                if (output instanceof StreamingOutput) {
+                    ((StreamingOutput) output).writeJson(jsonWriter);
+                } else {
+                    new Gson().toJson(output, output.getClass(), jsonWriter);
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new XenonRuntimeException("json", "Unable to write output", e);
+            }
+        } else if (output instanceof StreamingOutput) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), PRINT_BUFFER_SIZE);
+            try {
+                ((StreamingOutput) output).writeText(writer);
+                writer.flush();
+            } catch (IOException e) {
+                throw new XenonRuntimeException("text", "Unable to write output", e);
+            }
         } else {
             System.out.println(output);
         }
     }
 
     public ArgumentParser buildArgumentParser() {
+        ArgumentParser newParser = buildRootParser();
+        Subparsers subparsers = newParser.addSubparsers();
+        addFilesystemParser(subparsers, Adaptors.getFileSystemAdaptorDescriptions());
+        addSchedulerParser(subparsers, Adaptors.getSchedulerAdaptorDescriptions());
+        new ServeParser().buildArgumentParser(subparsers);
+        new BatchParser().buildArgumentParser(subparsers);
+        return newParser;
+    }
+
+    /**
+     * Build argument parser for the filesystem or scheduler adaptor selected in args.
+     *
+     * Building sub parsers for every adaptor is expensive, while only one adaptor is used per invocation.
+     * Falls back to argument parser of all adaptors when the adaptor can not be determined from args, for example for `--help`.
+     *
+     * @param args Command line arguments
+     * @return Argument parser
+     */
+    public ArgumentParser buildArgumentParser(String[] args) {
+        if (isVersion(args)) {
+            return buildRootParser();
+        }
+        return buildArgumentParser(findAdaptorDescription(args));
+    }
+
+    /**
+     * Whether args only ask for the version, which the root parser prints without any adaptor or command parser.
+     *
+     * @param args Command line arguments
+     * @return true when args are root flags including `--version`
+     */
+    static boolean isVersion(String[] args) {
+        return indexOfCommand(args) == -1 && Arrays.asList(args).contains("--version");
+    }
+
+    private ArgumentParser buildArgumentParser(AdaptorDescription adaptorDescription) {
+        if (adaptorDescription == null) {
+            return buildArgumentParser();
+        }
+        ArgumentParser newParser = buildRootParser();
+        Subparsers subparsers = newParser.addSubparsers();
+        if (adaptorDescription instanceof FileSystemAdaptorDescription) {
+            addFilesystemParser(subparsers, new AdaptorDescription[]{adaptorDescription});
+        } else {
+            addSchedulerParser(subparsers, new AdaptorDescription[]{adaptorDescription});
+        }
+        return newParser;
+    }
+
+    /**
+     * Find the adaptor description of the `filesystem|scheduler <adaptor>` arguments.
+     *
+     * @param args Command line arguments
+     * @return Adaptor description or null when args contain no or an unknown adaptor
+     */
+    public static AdaptorDescription findAdaptorDescription(String[] args) {
+        int index = indexOfAdaptorType(args);
+        if (index == -1 || index + 1 == args.length) {
+            return null;
+        }
+        return getAdaptorDescription(args[index], args[index + 1]);
+    }
+
+    /**
+     * Find the `filesystem` or `scheduler` argument, without loading any adaptor.
+     *
+     * @param args Command line arguments
+     * @return Index of `filesystem` or `scheduler` argument or -1 when not found
+     */
+    static int indexOfAdaptorType(String[] args) {
+        int index = indexOfCommand(args);
+        if (index != -1 && (FILESYSTEM.equals(args[index]) || SCHEDULER.equals(args[index]))) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first argument after the root flags, without loading any adaptor.
+     *
+     * @param args Command line arguments
+     * @return Index of first argument which is not a root flag or -1 when there is none
+     */
+    private static int indexOfCommand(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--profile-file".equals(arg)) {
+                // skip value of flag
+                i++;
+            } else if (!isRootFlag(arg)) {
+                // for example filesystem, serve or arguments read from @file, which are not known yet
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the command can use adaptors which are loaded on demand, commands of other adaptors and help do not.
+     *
+     * @param args Command line arguments
+     * @return true when on demand adaptors should be loaded before running the command
+     */
+    static boolean needsOnDemandAdaptors(String[] args) {
+        int index = indexOfAdaptorType(args);
+        if (index != -1) {
+            return index + 1 < args.length && Adaptors.isOnDemand(args[index + 1]);
+        }
+        index = indexOfCommand(args);
+        if (index == -1) {
+            return false;
+        }
+        // serve, batch and arguments read from @file can use any adaptor
+        String arg = args[index];
+        return !"--help".equals(arg) && !"-h".equals(arg);
+    }
+
+    private static boolean isRootFlag(String arg) {
+        return "--version".equals(arg) || "--json".equals(arg) || "--jsonl".equals(arg) || "--stacktrace".equals(arg) || "--verbose".equals(arg) || arg.matches("-v+")
+            || "--profile".equals(arg) || arg.startsWith("--profile-file=");
+    }
+
+    private static AdaptorDescription getAdaptorDescription(String type, String adaptorName) {
+        try {
+            if (FILESYSTEM.equals(type)) {
+                return Adaptors.getFileSystemAdaptorDescription(adaptorName);
+            }
+            return Adaptors.getSchedulerAdaptorDescription(adaptorName);
+        } catch (UnknownAdaptorException e) {
+            // let the full parser report the invalid choice
+            return null;
+        }
+    }
+
+    private ArgumentParser buildRootParser() {
         ArgumentParser newParser = ArgumentParsers.newFor(BuildConfig.NAME)
                 .addHelp(true)
                 .fromFilePrefix("@")
@@ -128,20 +372,26 @@ public class Main {
                 .version(getVersion());
         newParser.addArgument("--version").action(Arguments.version()).help("Prints version and exists");
         newParser.addArgument("--json").help("Output in JSON format").action(Arguments.storeTrue());
+        newParser.addArgument("--jsonl").help("Output in JSON lines format, listings write a line per item as soon as it is found").action(Arguments.storeTrue());
         newParser.addArgument("--stacktrace").help("Print out the stacktrace for all exceptions").action(Arguments.storeTrue());
         newParser.addArgument("--verbose", "-v").help("Repeat for more verbose logging").action(Arguments.count());
+        newParser.addArgument("--profile").help("Print time spent in each phase to stderr, as JSON when --json is given").action(Arguments.storeTrue());
+        newParser.addArgument("--profile-file").help("Append time spent in each phase as JSON line to file");
+        return newParser;
+    }
 
-        Subparsers subparsers = newParser.addSubparsers();
+    private void addFilesystemParser(Subparsers subparsers, AdaptorDescription[] adaptorDescriptions) {
         String filesystemHelp = "Filesystem represent a (possibly remote) file system that can be used to access data.";
-        Subparser filesystemAdaptorParser = subparsers.addParser("filesystem")
+        Subparser filesystemAdaptorParser = subparsers.addParser(FILESYSTEM)
             .help(filesystemHelp).description(filesystemHelp);
-        addAdaptorSubParsers(filesystemAdaptorParser, FileSystem.getAdaptorDescriptions());
+        addAdaptorSubParsers(filesystemAdaptorParser, adaptorDescriptions);
+    }
+
+    private void addSchedulerParser(Subparsers subparsers, AdaptorDescription[] adaptorDescriptions) {
         String schedulerHelp = "Scheduler represents a (possibly remote) scheduler that can be used to submit jobs and retrieve queue information.";
-        Subparser schedulerAdaptorParser = subparsers.addParser("scheduler")
+        Subparser schedulerAdaptorParser = subparsers.addParser(SCHEDULER)
             .help(schedulerHelp).description(schedulerHelp);
-        addAdaptorSubParsers(schedulerAdaptorParser, Scheduler.getAdaptorDescriptions());
-
-        return newParser;
+        addAdaptorSubParsers(schedulerAdaptorParser, adaptorDescriptions);
     }
 
     private String getVersion() {
@@ -204,6 +454,8 @@ public class Main {
             // download
             new DownloadParser().buildArgumentParser(commandsParser);
         }
+        // sync
+        new SyncParser().setLocal(isLocal).buildArgumentParser(commandsParser);
         // list
         new ListFilesParser().buildArgumentParser(commandsParser);
         // createdir
@@ -6,12 +6,14 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.ArgumentGroup;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.MutuallyExclusiveGroup;
 import net.sourceforge.argparse4j.inf.Subparser;
 
 import nl.esciencecenter.xenon.XenonPropertyDescription;
+import nl.esciencecenter.xenon.cli.copy.CopyOptions;
 import nl.esciencecenter.xenon.credentials.CertificateCredential;
 import nl.esciencecenter.xenon.credentials.KeytabCredential;
 import nl.esciencecenter.xenon.credentials.PasswordCredential;
@@ -108,6 +110,108 @@ public class ParserHelpers {
         return group;
     }
 
+    /**
+     * Arguments of copy commands which select the client side copy engine instead of the copy of the adaptor
+     */
+    public static ArgumentGroup addCopyEngineArguments(ArgumentParser parser) {
+        ArgumentGroup group = parser.addArgumentGroup("optional copy engine arguments");
+        group.addArgument("--parallel")
+            .help("Copy files of a directory with N connections to each location at once. " +
+                "Files which fail to copy are reported while the other files are copied")
+            .type(Integer.class)
+            .metavar("N");
+        group.addArgument("--streams")
+            .help("Copy each file larger than --segment-threshold in segments over N connections at once. " +
+                "Segments are written at their position in a local target file " +
+                "or as part files which are concatenated with ssh on the host of a sftp target (default: 1, no segments)")
+            .type(Integer.class)
+            .metavar("N");
+        group.addArgument("--segment-size")
+            .help("Size of a segment, like 64M")
+            .type(new SizeArgumentType())
+            .metavar("SIZE")
+            .setDefault(CopyOptions.DEFAULT_SEGMENT_SIZE);
+        group.addArgument("--segment-threshold")
+            .help("Minimum size of a file to copy in segments, like 1G")
+            .type(new SizeArgumentType())
+            .metavar("SIZE")
+            .setDefault(CopyOptions.DEFAULT_SEGMENT_THRESHOLD);
+        group.addArgument("--resume")
+            .help("Record progress in a journal and continue an earlier interrupted copy from it, " +
+                "files which were completed are skipped and partially written files are appended to. " +
+                "The journal is removed when all files have been copied")
+            .action(Arguments.storeTrue());
+        group.addArgument("--journal")
+            .help("Journal file of --resume (default: file in ~/.xenon/journals named after source and target)")
+            .metavar("FILE");
+        group.addArgument("--delta")
+            .help("When a local file replaces a file on a sftp location, only send the blocks which differ, like rsync. " +
+                "Used for files of at least 16M when the measured bandwidth makes it faster than a full copy, " +
+                "needs --replace, which sync implies, and GNU coreutils on the target host")
+            .action(Arguments.storeTrue());
+        group.addArgument("--verify")
+            .help("Verify each copied file by comparing its checksum with the checksum of the source, " +
+                "computed while copying. A mismatch is reported as failed file. " +
+                "The target is read back, except that sha256 of a file on a sftp location is computed on its host (default: crc32c)")
+            .nargs("?")
+            .setConst("crc32c")
+            .choices("crc32c", "sha256")
+            .metavar("ALGORITHM");
+        return group;
+    }
+
+    /**
+     * Arguments of single file copy commands which (de)compress the bytes while they are copied
+     */
+    public static MutuallyExclusiveGroup addCompressionArguments(ArgumentParser parser) {
+        MutuallyExclusiveGroup group = parser.addMutuallyExclusiveGroup("optional compression arguments");
+        group.addArgument("--compress")
+            .help("Gzip the file while it is copied, blocks are compressed on all processors like pigz")
+            .action(Arguments.storeTrue());
+        group.addArgument("--decompress")
+            .help("Gunzip the file while it is copied")
+            .action(Arguments.storeTrue());
+        return group;
+    }
+
+    /**
+     * Arguments of copy commands which report progress while copying
+     */
+    public static Argument addProgressArguments(ArgumentParser parser) {
+        return parser.addArgument("--progress")
+            .help("Report bytes copied, current and average rate, files copied and ETA on stderr every second. " +
+                "With jsonl each report is a JSON line, with the seconds since bytes were last copied as stalledSeconds (default: text)")
+            .nargs("?")
+            .setConst("text")
+            .choices("text", "jsonl")
+            .metavar("FORMAT");
+    }
+
+    /**
+     * Arguments of copy commands which copy a list of files instead of the source
+     */
+    public static Argument addFilesFromArguments(ArgumentParser parser) {
+        return parser.addArgument("--files-from")
+            .help("Copy the files listed in FILE, use '-' for stdin, instead of the source. " +
+                "Each line is a path, a source and target path separated by a tab, " +
+                "or a JSON line with a path, with source and target fields, or like the output of list with --jsonl. " +
+                "Relative paths are relative to the source and target directory, listed directories are created without their content. " +
+                "The list is read while the files are copied with --parallel connections")
+            .metavar("FILE");
+    }
+
+    /**
+     * Arguments of copy commands which limit the bandwidth used by the copy
+     */
+    public static Argument addBandwidthLimitArguments(ArgumentParser parser) {
+        return parser.addArgument("--bwlimit")
+            .help("Limit the bytes per second read from the source by all connections of the copy together, like 10M. " +
+                "A timetable of start times and limits changes the limit with the time of day, " +
+                "like '08:00,512K 18:00,10M 23:00,off', where off is no limit")
+            .type(new BandwidthArgumentType())
+            .metavar("RATE");
+    }
+
     public static String getSupportedLocationHelp(String[] supportedLocations) {
         List<String> helps = Arrays.stream(supportedLocations).map(location -> "- " + location).collect(Collectors.toList());
         helps.add(0, "supported locations:");
@@ -0,0 +1,13 @@
+package nl.esciencecenter.xenon.cli;
+
+/**
+ * Output of a command which completed, but failed for some of its items.
+ *
+ * The output is printed and the command exits with a non-zero status.
+ */
+public interface PartialFailure {
+    /**
+     * @return Summary of failed items or null when all items succeeded
+     */
+    String getFailure();
+}
@@ -0,0 +1,174 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Copy of a stream in which reading and writing overlap.
+ *
+ * A reader thread fills buffers from a small pool and hands them to the calling thread, which writes them,
+ * so a remote source and a remote target each wait for their own round trips instead of for each other.
+ * The buffer size follows the observed throughput, so a buffer holds about 10ms of data.
+ */
+public final class PipelinedCopy {
+    static final int MIN_BUFFER_SIZE = 16 * 1024;
+    static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    private static final int BUFFERS = 4;
+
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "xenon-pipe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Buffer handed from reader to writer, with a length of -1 at the end of the stream
+     */
+    private static class Chunk {
+        byte[] data;
+        int length;
+        Throwable error;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Picks buffer size from the rate at which bytes are copied, including time spent waiting for the writer
+     */
+    static class BufferSizer {
+        private static final long BUFFER_NANOS = 10_000_000L;
+        private static final long WINDOW_NANOS = 100_000_000L;
+
+        private int size = MIN_BUFFER_SIZE;
+        private long windowStart;
+        private long windowBytes = 0;
+
+        BufferSizer(long now) {
+            windowStart = now;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void record(int bytes, long now) {
+            windowBytes += bytes;
+            long elapsed = now - windowStart;
+            if (elapsed < WINDOW_NANOS) {
+                return;
+            }
+            long wanted = windowBytes * BUFFER_NANOS / elapsed;
+            size = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, Long.highestOneBit(Math.max(1, wanted))));
+            windowStart = now;
+            windowBytes = 0;
+        }
+    }
+
+    private PipelinedCopy() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Copy all bytes of input stream to output stream, neither stream is closed
+     *
+     * @return Number of bytes copied
+     * @throws IOException when reading or writing fails
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFERS);
+        // one extra slot for the error of the reader
+        BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(BUFFERS + 1);
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new Chunk(new byte[MIN_BUFFER_SIZE]));
+        }
+        Future<?> reader = READERS.submit(() -> read(in, free, full));
+        long bytes = 0;
+        try {
+            Chunk chunk = full.take();
+            while (chunk.length != -1) {
+                if (chunk.error != null) {
+                    throw rethrow(chunk.error);
+                }
+                out.write(chunk.data, 0, chunk.length);
+                bytes += chunk.length;
+                free.put(chunk);
+                chunk = full.take();
+            }
+            return bytes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while copying after " + bytes + " bytes");
+        } finally {
+            // stops a reader waiting for a free buffer when writing failed
+            reader.cancel(true);
+        }
+    }
+
+    private static void read(InputStream in, BlockingQueue<Chunk> free, BlockingQueue<Chunk> full) {
+        BufferSizer sizer = new BufferSizer(System.nanoTime());
+        try {
+            Chunk chunk;
+            do {
+                chunk = free.take();
+                if (chunk.data.length != sizer.size()) {
+                    chunk.data = new byte[sizer.size()];
+                }
+                try {
+                    chunk.length = fill(in, chunk.data);
+                } catch (Throwable e) {
+                    // any failure must reach the writer, which otherwise waits forever for the next chunk
+                    Chunk failed = new Chunk(null);
+                    failed.error = e;
+                    full.put(failed);
+                    return;
+                }
+                full.put(chunk);
+                sizer.record(Math.max(0, chunk.length), System.nanoTime());
+            } while (chunk.length != -1);
+        } catch (InterruptedException e) {
+            // writer stopped
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Exception of reader to throw in writer, unchecked ones are thrown as they are
+     */
+    private static IOException rethrow(Throwable error) {
+        if (error instanceof IOException) {
+            return (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        return new IOException(error);
+    }
+
+    /**
+     * Read what is available into buffer, without waiting for more once some bytes were read
+     *
+     * @return Number of bytes read or -1 at end of stream
+     */
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int length = in.read(buffer);
+        while (length > 0 && length < buffer.length && in.available() > 0) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                // end of stream is seen again by the next read
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+}
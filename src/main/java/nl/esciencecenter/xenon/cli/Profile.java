@@ -0,0 +1,93 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall clock time spent in each phase of a xenon invocation, reported with `--profile` or `--profile-file`.
+ *
+ * Phases are recorded in nanoseconds, times are reported in milliseconds.
+ * Time of a phase that runs more than once, like connecting to several locations, is summed.
+ */
+public class Profile {
+    private static final ThreadLocal<Profile> CURRENT = new ThreadLocal<>();
+    private final long entryNanos = System.nanoTime();
+    private final long entryMillis = System.currentTimeMillis();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Make this profile the one phases recorded with {@link #recordCurrent(String, long)} by the current thread are added to
+     */
+    public void makeCurrent() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Record phase in the profile of the current thread, if any
+     *
+     * @param phase Name of phase
+     * @param startNanos Value of {@link System#nanoTime()} at start of phase
+     */
+    public static void recordCurrent(String phase, long startNanos) {
+        Profile profile = CURRENT.get();
+        if (profile != null) {
+            profile.record(phase, startNanos);
+        }
+    }
+
+    public synchronized void record(String phase, long startNanos) {
+        phases.merge(phase, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * @return Milliseconds between start of Java virtual machine and creation of this profile
+     */
+    public long getUptimeAtEntry() {
+        // only looked up when reporting, as loading the management classes takes time itself
+        return entryMillis - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    public synchronized Map<String, Double> getPhases() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        phases.forEach((phase, nanos) -> result.put(phase, toMillis(nanos)));
+        return result;
+    }
+
+    /**
+     * @return Milliseconds since creation of this profile
+     */
+    public double getTotal() {
+        return toMillis(System.nanoTime() - entryNanos);
+    }
+
+    /**
+     * @param command Name of command, may be null
+     * @param adaptor Name of adaptor, may be null
+     * @return Profile as map to serialize as JSON, so reports of many invocations can be aggregated
+     */
+    public Map<String, Object> toMap(String command, String adaptor) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startedAt", entryMillis);
+        result.put("command", command);
+        result.put("adaptor", adaptor);
+        result.put("uptimeAtEntry", getUptimeAtEntry());
+        result.put("phases", getPhases());
+        result.put("total", getTotal());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        String sep = System.getProperty("line.separator");
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-16s %10d ms", "uptime at entry", getUptimeAtEntry())).append(sep);
+        getPhases().forEach((phase, millis) -> builder.append(String.format("%-16s %10.3f ms", phase, millis)).append(sep));
+        builder.append(String.format("%-16s %10.3f ms", "total", getTotal()));
+        return builder.toString();
+    }
+}
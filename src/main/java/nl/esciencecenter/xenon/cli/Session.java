@@ -0,0 +1,35 @@
+package nl.esciencecenter.xenon.cli;
+
+import nl.esciencecenter.xenon.XenonException;
+
+/**
+ * Filesystem or scheduler used by a command.
+ *
+ * Closing the session releases the filesystem or scheduler,
+ * which closes it or keeps it open for the next command when a session cache is used.
+ *
+ * @param <T> FileSystem or Scheduler
+ */
+public class Session<T> implements AutoCloseable {
+    private final T instance;
+    private final Release<T> release;
+
+    @FunctionalInterface
+    public interface Release<T> {
+        void release(T instance) throws XenonException;
+    }
+
+    public Session(T instance, Release<T> release) {
+        this.instance = instance;
+        this.release = release;
+    }
+
+    public T get() {
+        return instance;
+    }
+
+    @Override
+    public void close() throws XenonException {
+        release.release(instance);
+    }
+}
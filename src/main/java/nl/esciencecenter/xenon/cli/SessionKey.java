@@ -0,0 +1,78 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+import nl.esciencecenter.xenon.credentials.Credential;
+
+/**
+ * Identity of a filesystem or scheduler, commands with equal keys can share the same filesystem or scheduler.
+ *
+ * Keys which only differ in slot are separate connections to the same location,
+ * used by a command which works on a location over multiple connections at once.
+ */
+public class SessionKey {
+    private final String adaptor;
+    private final String location;
+    private final Credential credential;
+    private final Map<String, String> properties;
+    private final int slot;
+
+    public SessionKey(String adaptor, String location, Credential credential, Map<String, String> properties) {
+        this(adaptor, location, credential, properties, 0);
+    }
+
+    public SessionKey(String adaptor, String location, Credential credential, Map<String, String> properties, int slot) {
+        this.adaptor = adaptor;
+        this.location = location;
+        this.credential = credential;
+        if (properties == null) {
+            this.properties = Collections.emptyMap();
+        } else {
+            this.properties = properties;
+        }
+        this.slot = slot;
+    }
+
+    public String getAdaptor() {
+        return adaptor;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public Credential getCredential() {
+        return credential;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SessionKey that = (SessionKey) o;
+        return slot == that.slot &&
+            Objects.equals(adaptor, that.adaptor) &&
+            Objects.equals(location, that.location) &&
+            Objects.equals(credential, that.credential) &&
+            Objects.equals(properties, that.properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(adaptor, location, credential, properties, slot);
+    }
+}
@@ -0,0 +1,386 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.schedulers.Scheduler;
+
+/**
+ * Reference counted pool of filesystems and schedulers.
+ *
+ * Commands with equal adaptor, location, credential and properties share the same filesystem or scheduler.
+ * A filesystem or scheduler which is no longer used by any command is closed after it has been idle for the idle timeout.
+ * The number of filesystems and schedulers connected to a single host is limited,
+ * when the limit is reached idle ones of that host are closed or the command waits for one to be released.
+ */
+public class SessionPool implements AutoCloseable {
+    /**
+     * Idle timeout to close filesystems and schedulers as soon as they are released
+     */
+    public static final long CLOSE_WHEN_IDLE = 0L;
+    /**
+     * Idle timeout to keep filesystems and schedulers open until the pool is closed
+     */
+    public static final long KEEP_WHEN_IDLE = Long.MAX_VALUE;
+    public static final int DEFAULT_MAX_SESSIONS_PER_HOST = 8;
+
+    private final long idleTimeout;
+    private final int maxSessionsPerHost;
+    private final Map<SessionKey, Entry> fileSystems = new HashMap<>();
+    private final Map<SessionKey, Entry> schedulers = new HashMap<>();
+    private final Map<String, Integer> sessionsPerHost = new HashMap<>();
+    /**
+     * Hosts with sessions held by the current thread, a thread never waits for a host it holds a session of, as that could wait forever
+     */
+    private final ThreadLocal<Map<String, Integer>> heldHosts = ThreadLocal.withInitial(HashMap::new);
+    private final ScheduledExecutorService evictor;
+    private boolean closed = false;
+
+    private static class Entry {
+        final String host;
+        Object instance = null;
+        boolean creating = true;
+        int references = 0;
+        long idleSince = 0L;
+
+        Entry(String host) {
+            this.host = host;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Factory {
+        Object create() throws XenonException;
+    }
+
+    /**
+     * @param idleTimeout Milliseconds a released filesystem or scheduler is kept open for reuse
+     * @param maxSessionsPerHost Maximum number of open filesystems and schedulers per host
+     */
+    public SessionPool(long idleTimeout, int maxSessionsPerHost) {
+        if (maxSessionsPerHost < 1) {
+            throw new IllegalArgumentException("Maximum sessions per host must be at least 1");
+        }
+        this.idleTimeout = idleTimeout;
+        this.maxSessionsPerHost = maxSessionsPerHost;
+        if (idleTimeout == CLOSE_WHEN_IDLE || idleTimeout == KEEP_WHEN_IDLE) {
+            evictor = null;
+        } else {
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "xenon-session-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(idleTimeout / 2, 1000L);
+            evictor.scheduleWithFixedDelay(this::evictIdleSessions, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int getMaxSessionsPerHost() {
+        return maxSessionsPerHost;
+    }
+
+    public boolean keepsIdleSessions() {
+        return idleTimeout != CLOSE_WHEN_IDLE;
+    }
+
+    public Session<FileSystem> getFileSystem(SessionKey key) throws XenonException {
+        Entry entry = acquire(fileSystems, key, () -> Utils.createFileSystem(key.getAdaptor(), key.getLocation(), key.getCredential(), key.getProperties()));
+        return new Session<>((FileSystem) entry.instance, fs -> release(fileSystems, key, entry));
+    }
+
+    public Session<Scheduler> getScheduler(SessionKey key) throws XenonException {
+        Entry entry = acquire(schedulers, key, () -> Utils.createScheduler(key.getAdaptor(), key.getLocation(), key.getCredential(), key.getProperties()));
+        return new Session<>((Scheduler) entry.instance, scheduler -> release(schedulers, key, entry));
+    }
+
+    private Entry acquire(Map<SessionKey, Entry> entries, SessionKey key, Factory factory) throws XenonException {
+        Entry entry;
+        boolean create = false;
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new XenonException(key.getAdaptor(), "Session pool is closed");
+                }
+                entry = entries.get(key);
+                if (entry == null) {
+                    String host = hostOf(key.getLocation());
+                    if (reserveHost(host, evicted)) {
+                        entry = new Entry(host);
+                        entries.put(key, entry);
+                        create = true;
+                        break;
+                    }
+                } else if (!entry.creating) {
+                    if (isOpen(entry.instance)) {
+                        break;
+                    }
+                    // connection was lost, replace it
+                    if (entry.references == 0) {
+                        entries.remove(key);
+                        releaseHost(entry.host);
+                        evicted.add(entry.instance);
+                        continue;
+                    }
+                }
+                // wait for another thread to create the same session or to release a session of this host
+                waitForRelease(key);
+            }
+            entry.references++;
+            heldHosts.get().merge(entry.host, 1, Integer::sum);
+        }
+        try {
+            closeAll(evicted);
+        } catch (XenonException | RuntimeException e) {
+            // caller never gets the session, so give back the reference taken above
+            if (create) {
+                abandon(entries, key, entry);
+            } else {
+                try {
+                    release(entries, key, entry);
+                } catch (XenonException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        if (create) {
+            try {
+                long start = System.nanoTime();
+                Object instance = factory.create();
+                Profile.recordCurrent("connect", start);
+                synchronized (this) {
+                    entry.instance = instance;
+                    entry.creating = false;
+                    notifyAll();
+                }
+            } catch (XenonException | RuntimeException e) {
+                abandon(entries, key, entry);
+                throw e;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Forget entry which the current thread reserved but never created
+     */
+    private synchronized void abandon(Map<SessionKey, Entry> entries, SessionKey key, Entry entry) {
+        entries.remove(key);
+        releaseHost(entry.host);
+        unhold(entry.host);
+        notifyAll();
+    }
+
+    private void waitForRelease(SessionKey key) throws XenonException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XenonException(key.getAdaptor(), "Interrupted while waiting for a session", e);
+        }
+    }
+
+    private void release(Map<SessionKey, Entry> entries, SessionKey key, Entry entry) throws XenonException {
+        boolean close = false;
+        synchronized (this) {
+            entry.references--;
+            unhold(entry.host);
+            if (entry.references == 0) {
+                if (idleTimeout == CLOSE_WHEN_IDLE || closed) {
+                    if (entries.get(key) == entry) {
+                        entries.remove(key);
+                        releaseHost(entry.host);
+                    }
+                    close = !closed;
+                } else {
+                    entry.idleSince = System.currentTimeMillis();
+                }
+            }
+            notifyAll();
+        }
+        if (close) {
+            closeInstance(entry.instance);
+        }
+    }
+
+    /**
+     * Reserve a session for host, by closing idle sessions of the host if needed
+     *
+     * @return true when reserved, false when the caller should wait for a session of the host to be released
+     */
+    private boolean reserveHost(String host, List<Object> evicted) {
+        int count = sessionsPerHost.getOrDefault(host, 0);
+        if (count >= maxSessionsPerHost && !evictIdle(host, evicted) && !heldHosts.get().containsKey(host)) {
+            return false;
+        }
+        sessionsPerHost.merge(host, 1, Integer::sum);
+        return true;
+    }
+
+    private void releaseHost(String host) {
+        sessionsPerHost.computeIfPresent(host, (h, count) -> count == 1 ? null : count - 1);
+    }
+
+    private void unhold(String host) {
+        heldHosts.get().computeIfPresent(host, (h, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Close least recently used idle session of host
+     */
+    private boolean evictIdle(String host, List<Object> evicted) {
+        Map<SessionKey, Entry> lruEntries = null;
+        SessionKey lruKey = null;
+        Entry lru = null;
+        for (Map<SessionKey, Entry> entries : Arrays.asList(fileSystems, schedulers)) {
+            for (Map.Entry<SessionKey, Entry> candidate : entries.entrySet()) {
+                Entry entry = candidate.getValue();
+                if (entry.host.equals(host) && entry.references == 0 && !entry.creating && (lru == null || entry.idleSince < lru.idleSince)) {
+                    lruEntries = entries;
+                    lruKey = candidate.getKey();
+                    lru = entry;
+                }
+            }
+        }
+        if (lru == null) {
+            return false;
+        }
+        lruEntries.remove(lruKey);
+        releaseHost(host);
+        evicted.add(lru.instance);
+        return true;
+    }
+
+    private void evictIdleSessions() {
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Map<SessionKey, Entry> entries : Arrays.asList(fileSystems, schedulers)) {
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (entry.references == 0 && !entry.creating && now - entry.idleSince >= idleTimeout) {
+                        iterator.remove();
+                        releaseHost(entry.host);
+                        evicted.add(entry.instance);
+                    }
+                }
+            }
+            notifyAll();
+        }
+        try {
+            closeAll(evicted);
+        } catch (XenonException e) {
+            // connection of an idle session is no longer needed, so failing to close it cleanly is harmless
+        }
+    }
+
+    /**
+     * Host part of a location like `user@host:port`, `scheme://host/path` or `host via:other`
+     */
+    static String hostOf(String location) {
+        if (location == null) {
+            return "";
+        }
+        String host = location.trim();
+        int scheme = host.indexOf("://");
+        if (scheme >= 0) {
+            host = host.substring(scheme + 3);
+        }
+        int space = host.indexOf(' ');
+        if (space >= 0) {
+            host = host.substring(0, space);
+        }
+        int at = host.lastIndexOf('@');
+        if (at >= 0) {
+            host = host.substring(at + 1);
+        }
+        int end;
+        if (host.startsWith("[")) {
+            // IPv6 address
+            end = host.indexOf(']') + 1;
+            if (end == 0) {
+                end = host.length();
+            }
+        } else {
+            end = host.length();
+            for (char separator : new char[]{':', '/'}) {
+                int index = host.indexOf(separator);
+                if (index >= 0 && index < end) {
+                    end = index;
+                }
+            }
+        }
+        return host.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isOpen(Object instance) {
+        try {
+            if (instance instanceof FileSystem) {
+                return ((FileSystem) instance).isOpen();
+            }
+            return ((Scheduler) instance).isOpen();
+        } catch (XenonException e) {
+            return false;
+        }
+    }
+
+    private static void closeInstance(Object instance) throws XenonException {
+        if (instance instanceof FileSystem) {
+            ((FileSystem) instance).close();
+        } else if (instance instanceof Scheduler) {
+            ((Scheduler) instance).close();
+        }
+    }
+
+    private static void closeAll(List<Object> instances) throws XenonException {
+        XenonException error = null;
+        for (Object instance : instances) {
+            try {
+                closeInstance(instance);
+            } catch (XenonException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Close all filesystems and schedulers, including the ones still in use
+     */
+    @Override
+    public void close() throws XenonException {
+        List<Object> instances = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Map<SessionKey, Entry> entries : Arrays.asList(fileSystems, schedulers)) {
+                for (Entry entry : entries.values()) {
+                    if (!entry.creating) {
+                        instances.add(entry.instance);
+                    }
+                }
+                entries.clear();
+            }
+            sessionsPerHost.clear();
+            notifyAll();
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        closeAll(instances);
+    }
+}
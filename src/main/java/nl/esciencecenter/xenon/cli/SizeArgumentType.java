@@ -0,0 +1,62 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.argparse4j.inf.Argument;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.ArgumentType;
+
+/**
+ * Number of bytes with optional binary unit, like `512`, `64K`, `256M` or `2G`
+ */
+public class SizeArgumentType implements ArgumentType<Long> {
+    private static final Pattern SIZE = Pattern.compile("(\\d+)\\s*([KMGT]?)(I?B)?");
+    private static final String UNITS = "KMGT";
+
+    @Override
+    public Long convert(ArgumentParser parser, Argument arg, String value) throws ArgumentParserException {
+        try {
+            return parseSize(value);
+        } catch (IllegalArgumentException e) {
+            throw new ArgumentParserException(e.getMessage(), parser);
+        }
+    }
+
+    /**
+     * @param value Size like `64M`
+     * @return Number of bytes
+     * @throws IllegalArgumentException when value is not a size
+     */
+    public static long parseSize(String value) {
+        Matcher matcher = SIZE.matcher(value.trim().toUpperCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid size '" + value + "', expected number of bytes with optional K, M, G or T unit");
+        }
+        try {
+            long size = Long.parseLong(matcher.group(1));
+            String unit = matcher.group(2);
+            int exponent = unit.isEmpty() ? 0 : UNITS.indexOf(unit) + 1;
+            return Math.multiplyExact(size, 1L << (10 * exponent));
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Size '" + value + "' is too large");
+        }
+    }
+
+    /**
+     * @param size Number of bytes
+     * @return Size with largest binary unit which keeps it at least 1, like `512`, `64.0K` or `1.5G`
+     */
+    public static String formatSize(long size) {
+        int exponent = 0;
+        while (exponent < UNITS.length() && size >= 1L << (10 * (exponent + 1))) {
+            exponent++;
+        }
+        if (exponent == 0) {
+            return Long.toString(size);
+        }
+        return String.format(Locale.ROOT, "%.1f%c", size / (double) (1L << (10 * exponent)), UNITS.charAt(exponent - 1));
+    }
+}
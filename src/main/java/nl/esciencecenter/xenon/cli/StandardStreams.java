@@ -0,0 +1,77 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * Standard input and output of the process, bypassing the buffered and synchronized System.in and System.out.
+ *
+ * The file descriptors are only used while System.in and System.out are still the streams the process started with,
+ * so output of a command run by `xenon serve` or captured in a test is not bypassed.
+ */
+public final class StandardStreams {
+    private static volatile InputStream processIn = null;
+    private static volatile PrintStream processOut = null;
+
+    private StandardStreams() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Record the streams of the process, called when the process starts
+     */
+    static void capture() {
+        processIn = System.in;
+        processOut = System.out;
+    }
+
+    private static boolean isProcessIn() {
+        return processIn != null && System.in == processIn;
+    }
+
+    private static boolean isProcessOut() {
+        return processOut != null && System.out == processOut;
+    }
+
+    /**
+     * @return Unbuffered standard input or System.in when it was replaced
+     */
+    public static InputStream in() {
+        return isProcessIn() ? new FileInputStream(FileDescriptor.in) : System.in;
+    }
+
+    /**
+     * @return Unsynchronized standard output or System.out when it was replaced
+     */
+    public static OutputStream out() {
+        if (!isProcessOut()) {
+            return System.out;
+        }
+        // earlier output must come first
+        System.out.flush();
+        return new FileOutputStream(FileDescriptor.out);
+    }
+
+    /**
+     * @return Channel of standard input or null when System.in was replaced
+     */
+    public static FileChannel inChannel() {
+        return isProcessIn() ? new FileInputStream(FileDescriptor.in).getChannel() : null;
+    }
+
+    /**
+     * @return Channel of standard output or null when System.out was replaced
+     */
+    public static FileChannel outChannel() {
+        if (!isProcessOut()) {
+            return null;
+        }
+        System.out.flush();
+        return new FileOutputStream(FileDescriptor.out).getChannel();
+    }
+}
@@ -0,0 +1,36 @@
+package nl.esciencecenter.xenon.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Output which is too large to convert to a single string, so it is written piece by piece, as text or as JSON.
+ */
+public interface StreamingOutput {
+    void writeText(Writer writer) throws IOException;
+
+    void writeJson(JsonWriter writer) throws IOException;
+
+    /**
+     * Adapter for output nested in another document, like a result of a batch, which writes the output straight into the document
+     */
+    class Adapter extends TypeAdapter<StreamingOutput> {
+        @Override
+        public void write(JsonWriter out, StreamingOutput value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                value.writeJson(out);
+            }
+        }
+
+        @Override
+        public StreamingOutput read(JsonReader in) {
+            throw new UnsupportedOperationException("Streaming output can only be written");
+        }
+    }
+}
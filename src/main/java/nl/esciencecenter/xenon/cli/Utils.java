@@ -38,9 +38,6 @@ import nl.esciencecenter.xenon.schedulers.SchedulerAdaptorDescription;
  * Helpers for Xenon.jobs based commands
  */
 public class Utils {
-    /** The default buffer size to use for copy operations */
-    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
-
     Utils() {
         throw new IllegalAccessError("Utility class");
     }
@@ -161,17 +158,35 @@ public class Utils {
         return Pattern.matches(regex, key) && !Character.isDigit(key.charAt(0));
     }
 
+    /**
+     * Copy input stream to output stream, reading and writing overlap, see {@link PipelinedCopy}
+     *
+     * @return Number of bytes copied
+     */
     public static long pipe(InputStream in, OutputStream out) throws IOException {
-        long bytes = 0;
-
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int len = in.read(buffer);
-        while (len != -1) {
-            bytes += len;
-            out.write(buffer, 0, len);
-            len = in.read(buffer);
-        }
-        return bytes;
+        return PipelinedCopy.copy(in, out);
+    }
+
+    /**
+     * Pool of open filesystems and schedulers shared by commands,
+     * by default a filesystem or scheduler is closed as soon as no command uses it anymore
+     */
+    private static SessionPool sessionPool = new SessionPool(SessionPool.CLOSE_WHEN_IDLE, SessionPool.DEFAULT_MAX_SESSIONS_PER_HOST);
+
+    public static SessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    /**
+     * Replace the session pool
+     *
+     * @param pool Pool to use for next commands
+     * @return Previous pool, the caller is responsible for restoring or closing it
+     */
+    public static SessionPool setSessionPool(SessionPool pool) {
+        SessionPool previous = sessionPool;
+        sessionPool = pool;
+        return previous;
     }
 
     public static Scheduler createScheduler(Namespace res) throws XenonException {
@@ -180,6 +195,10 @@ public class Utils {
         Credential credential = createCredential(res);
 
         Map<String, String> props = buildXenonProperties(res);
+        return createScheduler(adaptor, location, credential, props);
+    }
+
+    public static Scheduler createScheduler(String adaptor, String location, Credential credential, Map<String, String> props) throws XenonException {
         SchedulerAdaptorDescription adaptorDescription = Scheduler.getAdaptorDescription(adaptor);
         try {
             return Scheduler.create(adaptor, location, credential, props);
@@ -195,6 +214,10 @@ public class Utils {
         Credential credential = createCredential(res);
 
         Map<String, String> props = buildXenonProperties(res);
+        return createFileSystem(adaptor, location, credential, props);
+    }
+
+    public static FileSystem createFileSystem(String adaptor, String location, Credential credential, Map<String, String> props) throws XenonException {
         FileSystemAdaptorDescription adaptorDescription = FileSystem.getAdaptorDescription(adaptor);
         try {
             return FileSystem.create(adaptor, location, credential, props);
@@ -204,6 +227,87 @@ public class Utils {
         }
     }
 
+    /**
+     * Open scheduler from the session pool, sharing it with other commands using the same adaptor, location, credential and properties.
+     *
+     * @param res Parsed arguments with adaptor, location, credential and properties
+     * @return Session which must be closed when the command is done with the scheduler
+     * @throws XenonException when scheduler could not be created
+     */
+    public static Session<Scheduler> openScheduler(Namespace res) throws XenonException {
+        String adaptor = res.getString("adaptor");
+        String location = res.getString("location");
+        Credential credential = createCredential(res);
+        Map<String, String> props = buildXenonProperties(res);
+        return sessionPool.getScheduler(new SessionKey(adaptor, location, credential, props));
+    }
+
+    /**
+     * Open scheduler from the session pool, sharing it with other commands using the same adaptor, location, credential and properties.
+     *
+     * @param adaptor Name of scheduler adaptor
+     * @param location Location of scheduler
+     * @param credential Credential to connect with
+     * @param props Adaptor properties
+     * @return Session which must be closed when the command is done with the scheduler
+     * @throws XenonException when scheduler could not be created
+     */
+    public static Session<Scheduler> openScheduler(String adaptor, String location, Credential credential, Map<String, String> props) throws XenonException {
+        return openScheduler(adaptor, location, credential, props, 0);
+    }
+
+    /**
+     * Open scheduler from the session pool, on a separate connection for each slot.
+     *
+     * @param adaptor Name of scheduler adaptor
+     * @param location Location of scheduler
+     * @param credential Credential to connect with
+     * @param props Adaptor properties
+     * @param slot Slot of connection, slot 0 is shared with commands which use a single connection
+     * @return Session which must be closed when the command is done with the scheduler
+     * @throws XenonException when scheduler could not be created
+     */
+    public static Session<Scheduler> openScheduler(String adaptor, String location, Credential credential, Map<String, String> props, int slot) throws XenonException {
+        return sessionPool.getScheduler(new SessionKey(adaptor, location, credential, props, slot));
+    }
+
+    public static Session<FileSystem> openFileSystem(Namespace res) throws XenonException {
+        String adaptor = res.getString("adaptor");
+        String location = res.getString("location");
+        Credential credential = createCredential(res);
+        Map<String, String> props = buildXenonProperties(res);
+        return openFileSystem(adaptor, location, credential, props);
+    }
+
+    /**
+     * Open filesystem from the session pool, sharing it with other commands using the same adaptor, location, credential and properties.
+     *
+     * @param adaptor Name of filesystem adaptor
+     * @param location Location of filesystem
+     * @param credential Credential to connect with
+     * @param props Adaptor properties
+     * @return Session which must be closed when the command is done with the filesystem
+     * @throws XenonException when filesystem could not be created
+     */
+    public static Session<FileSystem> openFileSystem(String adaptor, String location, Credential credential, Map<String, String> props) throws XenonException {
+        return openFileSystem(adaptor, location, credential, props, 0);
+    }
+
+    /**
+     * Open filesystem from the session pool, on a separate connection for each slot.
+     *
+     * @param adaptor Name of filesystem adaptor
+     * @param location Location of filesystem
+     * @param credential Credential to connect with
+     * @param props Adaptor properties
+     * @param slot Slot of connection, slot 0 is shared with commands which use a single connection
+     * @return Session which must be closed when the command is done with the filesystem
+     * @throws XenonException when filesystem could not be created
+     */
+    public static Session<FileSystem> openFileSystem(String adaptor, String location, Credential credential, Map<String, String> props, int slot) throws XenonException {
+        return sessionPool.getFileSystem(new SessionKey(adaptor, location, credential, props, slot));
+    }
+
     static Credential createCredential(Namespace res) {
         return createCredential(res, "");
     }
@@ -277,7 +381,11 @@ public class Utils {
     }
 
     public static boolean isLocalAdaptor(AdaptorDescription adaptorDescription) {
-        return adaptorDescription.getName().equals("file") || adaptorDescription.getName().equals("local");
+        return isLocalAdaptor(adaptorDescription.getName());
+    }
+
+    public static boolean isLocalAdaptor(String adaptorName) {
+        return "file".equals(adaptorName) || "local".equals(adaptorName);
     }
 
     public static Map<String,String> buildXenonProperties(Namespace res) {
@@ -0,0 +1,130 @@
+package nl.esciencecenter.xenon.cli.adaptors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import nl.esciencecenter.xenon.XenonRuntimeException;
+import nl.esciencecenter.xenon.filesystems.FileSystemAdaptorDescription;
+import nl.esciencecenter.xenon.schedulers.SchedulerAdaptorDescription;
+
+/**
+ * Descriptions of adaptors which are loaded on demand, read from manifest written at build time by {@link AdaptorManifestWriter}.
+ *
+ * The descriptions are enough to build argument parsers and help, without loading the implementation of the adaptors.
+ * Each description is a map of the name of a method of the description interface to the value it returns.
+ */
+public class AdaptorManifest {
+    static final String RESOURCE = "/nl/esciencecenter/xenon/cli/adaptors/manifest.json";
+    static final String FILESYSTEMS = "filesystems";
+    static final String SCHEDULERS = "schedulers";
+    private static final String GET_NAME = "getName";
+
+    private final List<FileSystemAdaptorDescription> fileSystemAdaptors = new ArrayList<>();
+    private final List<SchedulerAdaptorDescription> schedulerAdaptors = new ArrayList<>();
+
+    AdaptorManifest(Map<String, List<Map<String, Object>>> manifest) {
+        for (Map<String, Object> values : manifest.getOrDefault(FILESYSTEMS, Collections.emptyList())) {
+            fileSystemAdaptors.add(describe(FileSystemAdaptorDescription.class, values));
+        }
+        for (Map<String, Object> values : manifest.getOrDefault(SCHEDULERS, Collections.emptyList())) {
+            schedulerAdaptors.add(describe(SchedulerAdaptorDescription.class, values));
+        }
+    }
+
+    /**
+     * @return Manifest from class path, empty when there is none, for example when run from an IDE with all adaptors on the class path
+     */
+    static AdaptorManifest read() {
+        InputStream in = AdaptorManifest.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            return new AdaptorManifest(Collections.emptyMap());
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            Type type = new TypeToken<Map<String, List<Map<String, Object>>>>() {}.getType();
+            return new AdaptorManifest(new Gson().fromJson(reader, type));
+        } catch (IOException e) {
+            throw new XenonRuntimeException("adaptors", "Unable to read adaptor manifest", e);
+        }
+    }
+
+    public List<FileSystemAdaptorDescription> getFileSystemAdaptors() {
+        return fileSystemAdaptors;
+    }
+
+    public List<SchedulerAdaptorDescription> getSchedulerAdaptors() {
+        return schedulerAdaptors;
+    }
+
+    public FileSystemAdaptorDescription getFileSystemAdaptor(String name) {
+        return fileSystemAdaptors.stream().filter(d -> d.getName().equals(name)).findFirst().orElse(null);
+    }
+
+    public SchedulerAdaptorDescription getSchedulerAdaptor(String name) {
+        return schedulerAdaptors.stream().filter(d -> d.getName().equals(name)).findFirst().orElse(null);
+    }
+
+    public boolean contains(String name) {
+        return getFileSystemAdaptor(name) != null || getSchedulerAdaptor(name) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T describe(Class<T> type, Map<String, Object> values) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toString":
+                    return String.valueOf(values.get(GET_NAME));
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return convert(method.getReturnType(), values.get(method.getName()));
+            }
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(Class<?> type, Object value) throws ClassNotFoundException {
+        if (value == null) {
+            // methods added to description interface after manifest was written return the default value
+            return type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+        } else if (type.isArray()) {
+            List<?> items = (List<?>) value;
+            Class<?> componentType = type.getComponentType();
+            Object array = Array.newInstance(componentType, items.size());
+            for (int i = 0; i < items.size(); i++) {
+                Array.set(array, i, convert(componentType, items.get(i)));
+            }
+            return array;
+        } else if (type == Class.class) {
+            return Class.forName((String) value, false, Thread.currentThread().getContextClassLoader());
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, (String) value);
+        } else if (value instanceof Number) {
+            // Gson reads all numbers as double
+            Number number = (Number) value;
+            if (type == int.class || type == Integer.class) {
+                return number.intValue();
+            } else if (type == long.class || type == Long.class) {
+                return number.longValue();
+            }
+            return number.doubleValue();
+        } else if (type.isInterface() && value instanceof Map) {
+            return describe(type, (Map<String, Object>) value);
+        }
+        return value;
+    }
+}
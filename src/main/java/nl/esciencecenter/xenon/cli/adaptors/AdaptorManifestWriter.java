@@ -0,0 +1,100 @@
+package nl.esciencecenter.xenon.cli.adaptors;
+
+import static nl.esciencecenter.xenon.cli.adaptors.AdaptorManifest.FILESYSTEMS;
+import static nl.esciencecenter.xenon.cli.adaptors.AdaptorManifest.SCHEDULERS;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.google.gson.GsonBuilder;
+
+import nl.esciencecenter.xenon.AdaptorDescription;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.FileSystemAdaptorDescription;
+import nl.esciencecenter.xenon.schedulers.Scheduler;
+import nl.esciencecenter.xenon.schedulers.SchedulerAdaptorDescription;
+
+/**
+ * Writes manifest with descriptions of the adaptors loaded from the given jar files, used at build time.
+ *
+ * Usage: AdaptorManifestWriter &lt;manifest&gt; &lt;jar&gt;...
+ */
+public class AdaptorManifestWriter {
+    AdaptorManifestWriter() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException, URISyntaxException {
+        Path output = Paths.get(args[0]);
+        Set<Path> jars = Arrays.stream(args, 1, args.length)
+            .map(jar -> Paths.get(jar).toAbsolutePath().normalize())
+            .collect(Collectors.toSet());
+
+        Map<String, List<Map<String, Object>>> manifest = new LinkedHashMap<>();
+        manifest.put(FILESYSTEMS, describeAll(FileSystem.getAdaptorDescriptions(), FileSystemAdaptorDescription.class, jars));
+        manifest.put(SCHEDULERS, describeAll(Scheduler.getAdaptorDescriptions(), SchedulerAdaptorDescription.class, jars));
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(manifest, writer);
+        }
+    }
+
+    private static List<Map<String, Object>> describeAll(AdaptorDescription[] descriptions, Class<?> type, Set<Path> jars) throws ReflectiveOperationException, URISyntaxException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (AdaptorDescription description : descriptions) {
+            // adaptors implement their description
+            Path jar = Paths.get(description.getClass().getProtectionDomain().getCodeSource().getLocation().toURI()).toAbsolutePath().normalize();
+            if (jars.contains(jar)) {
+                result.add(describe(type, description));
+            }
+        }
+        return result;
+    }
+
+    static Map<String, Object> describe(Class<?> type, Object instance) throws ReflectiveOperationException {
+        // sorted so manifest is reproducible
+        Map<String, Object> values = new TreeMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers())) {
+                values.put(method.getName(), toJson(method.getReturnType(), method.invoke(instance)));
+            }
+        }
+        return values;
+    }
+
+    private static Object toJson(Class<?> type, Object value) throws ReflectiveOperationException {
+        if (value == null) {
+            return null;
+        } else if (type.isArray()) {
+            List<Object> items = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                items.add(toJson(type.getComponentType(), Array.get(value, i)));
+            }
+            return items;
+        } else if (value instanceof Class) {
+            return ((Class<?>) value).getName();
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        } else if (type.isInterface()) {
+            return describe(type, value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,144 @@
+package nl.esciencecenter.xenon.cli.adaptors;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import nl.esciencecenter.xenon.AdaptorDescription;
+import nl.esciencecenter.xenon.UnknownAdaptorException;
+import nl.esciencecenter.xenon.XenonRuntimeException;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.FileSystemAdaptorDescription;
+import nl.esciencecenter.xenon.schedulers.Scheduler;
+import nl.esciencecenter.xenon.schedulers.SchedulerAdaptorDescription;
+
+/**
+ * Adaptor discovery, where heavyweight adaptor families like the cloud adaptors are loaded on demand.
+ *
+ * The jars of on demand adaptors are in the `xenon-adaptors-cloud` directory next to the jar of xenon-cli instead of on the class path.
+ * Until they are loaded, their descriptions come from the {@link AdaptorManifest}.
+ * Xenon discovers adaptors with a service loader the first time an adaptor is used,
+ * so {@link #loadOnDemandAdaptors()} must be called before that to make the on demand adaptors available.
+ */
+public class Adaptors {
+    private static final String ON_DEMAND_DIRECTORY = "xenon-adaptors-cloud";
+    private static AdaptorManifest manifest = null;
+    private static boolean loaded = false;
+
+    Adaptors() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    private static synchronized AdaptorManifest getManifest() {
+        if (manifest == null) {
+            manifest = AdaptorManifest.read();
+        }
+        return manifest;
+    }
+
+    /**
+     * @param adaptorName Name of filesystem or scheduler adaptor
+     * @return true when the adaptor is loaded on demand and has not been loaded yet
+     */
+    public static synchronized boolean isOnDemand(String adaptorName) {
+        return !loaded && getManifest().contains(adaptorName);
+    }
+
+    /**
+     * Make the on demand adaptors available, by adding their jars to the context class loader of the current thread.
+     *
+     * Threads started afterwards inherit the class loader.
+     */
+    public static synchronized void loadOnDemandAdaptors() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path directory = getOnDemandDirectory();
+        if (directory == null || !Files.isDirectory(directory)) {
+            // for example when run from an IDE, all adaptors are on the class path
+            return;
+        }
+        List<URL> jars = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jar")) {
+            for (Path jar : stream) {
+                jars.add(jar.toUri().toURL());
+            }
+        } catch (MalformedURLException e) {
+            throw new XenonRuntimeException("adaptors", "Invalid adaptor jar", e);
+        } catch (IOException e) {
+            throw new XenonRuntimeException("adaptors", "Unable to list adaptor jars in " + directory, e);
+        }
+        ClassLoader loader = new URLClassLoader(jars.toArray(new URL[0]), Adaptors.class.getClassLoader());
+        Thread.currentThread().setContextClassLoader(loader);
+    }
+
+    private static Path getOnDemandDirectory() {
+        CodeSource source = Adaptors.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return null;
+        }
+        try {
+            return Paths.get(source.getLocation().toURI()).resolveSibling(ON_DEMAND_DIRECTORY);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    public static FileSystemAdaptorDescription[] getFileSystemAdaptorDescriptions() {
+        List<FileSystemAdaptorDescription> descriptions = new ArrayList<>(Arrays.asList(FileSystem.getAdaptorDescriptions()));
+        if (!isLoaded()) {
+            descriptions.addAll(notIn(descriptions, getManifest().getFileSystemAdaptors()));
+        }
+        return descriptions.toArray(new FileSystemAdaptorDescription[0]);
+    }
+
+    public static SchedulerAdaptorDescription[] getSchedulerAdaptorDescriptions() {
+        List<SchedulerAdaptorDescription> descriptions = new ArrayList<>(Arrays.asList(Scheduler.getAdaptorDescriptions()));
+        if (!isLoaded()) {
+            descriptions.addAll(notIn(descriptions, getManifest().getSchedulerAdaptors()));
+        }
+        return descriptions.toArray(new SchedulerAdaptorDescription[0]);
+    }
+
+    public static FileSystemAdaptorDescription getFileSystemAdaptorDescription(String adaptorName) throws UnknownAdaptorException {
+        if (isOnDemand(adaptorName)) {
+            FileSystemAdaptorDescription description = getManifest().getFileSystemAdaptor(adaptorName);
+            if (description != null) {
+                return description;
+            }
+        }
+        return FileSystem.getAdaptorDescription(adaptorName);
+    }
+
+    public static SchedulerAdaptorDescription getSchedulerAdaptorDescription(String adaptorName) throws UnknownAdaptorException {
+        if (isOnDemand(adaptorName)) {
+            SchedulerAdaptorDescription description = getManifest().getSchedulerAdaptor(adaptorName);
+            if (description != null) {
+                return description;
+            }
+        }
+        return Scheduler.getAdaptorDescription(adaptorName);
+    }
+
+    private static synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    private static <T extends AdaptorDescription> List<T> notIn(List<T> descriptions, List<T> candidates) {
+        Set<String> names = descriptions.stream().map(AdaptorDescription::getName).collect(Collectors.toSet());
+        return candidates.stream().filter(d -> !names.contains(d.getName())).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,220 @@
+package nl.esciencecenter.xenon.cli.batch;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.ICommand;
+import nl.esciencecenter.xenon.cli.JsonLinesWriter;
+import nl.esciencecenter.xenon.cli.Main;
+import nl.esciencecenter.xenon.cli.PartialFailure;
+import nl.esciencecenter.xenon.cli.SessionPool;
+import nl.esciencecenter.xenon.cli.StreamingOutput;
+import nl.esciencecenter.xenon.cli.Utils;
+import nl.esciencecenter.xenon.cli.XenonCommand;
+import nl.esciencecenter.xenon.cli.exec.ExecCommand;
+import nl.esciencecenter.xenon.cli.serve.ServeCommand;
+
+/**
+ * Command to run commands from a file against shared filesystems and schedulers
+ */
+public class BatchCommand extends XenonCommand {
+    private static final List<String> STREAM_PATH_KEYS = Arrays.asList("source", "target", "source_path", "target_path", "files_from");
+    private final Gson gson = new GsonBuilder().registerTypeHierarchyAdapter(StreamingOutput.class, new StreamingOutput.Adapter()).create();
+
+    @Override
+    public Object run(Namespace res) throws XenonException {
+        String file = res.getString("file");
+        int parallel = res.getInt("parallel");
+        if (parallel < 1) {
+            throw new XenonException("batch", "Parallel must be at least 1");
+        }
+        int maxSessionsPerHost = res.getInt("max_sessions_per_host");
+        if (maxSessionsPerHost < 1) {
+            throw new XenonException("batch", "Maximum sessions per host must be at least 1");
+        }
+
+        // inside `xenon serve` the sessions of the daemon are used
+        SessionPool ownPool = null;
+        SessionPool previousPool = null;
+        if (!Utils.getSessionPool().keepsIdleSessions()) {
+            ownPool = new SessionPool(SessionPool.KEEP_WHEN_IDLE, maxSessionsPerHost);
+            previousPool = Utils.setSessionPool(ownPool);
+        }
+        // each result is serialized straight to stdout, so a streamed output like a sorted listing is never held in memory as a whole
+        JsonLinesWriter out = new JsonLinesWriter(System.out, gson);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger commands = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        // limit number of read but not yet completed commands, so files of any size can be used
+        Semaphore slots = new Semaphore(parallel * 2);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(openInput(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            int lineNumber = 1;
+            while (line != null) {
+                String commandLine = line.trim();
+                if (!commandLine.isEmpty() && !commandLine.startsWith("#")) {
+                    int number = lineNumber;
+                    slots.acquire();
+                    commands.incrementAndGet();
+                    executor.execute(() -> {
+                        try {
+                            BatchOutput result = runLine(number, commandLine);
+                            if (!result.success) {
+                                failures.incrementAndGet();
+                            }
+                            out.write(result);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+                line = reader.readLine();
+                lineNumber++;
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (IOException e) {
+            throw new XenonException("batch", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XenonException("batch", "Interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            if (ownPool != null) {
+                Utils.setSessionPool(previousPool);
+                ownPool.close();
+            }
+        }
+        if (failures.get() > 0) {
+            throw new XenonException("batch", failures.get() + " of " + commands.get() + " commands failed");
+        }
+        return null;
+    }
+
+    private static InputStream openInput(String file) throws IOException {
+        if ("-".equals(file)) {
+            return System.in;
+        }
+        return new FileInputStream(file);
+    }
+
+    BatchOutput runLine(int lineNumber, String commandLine) {
+        try {
+            String[] args = parseLine(commandLine);
+            Namespace commandRes = new Main().buildArgumentParser(args).parseArgs(args);
+            ICommand command = commandRes.get("command");
+            if (!isSupported(command, commandRes)) {
+                return BatchOutput.failed(lineNumber, "Command is not supported in a batch");
+            }
+            Object output = command.run(commandRes);
+            if (output instanceof PartialFailure && ((PartialFailure) output).getFailure() != null) {
+                return BatchOutput.failed(lineNumber, output, ((PartialFailure) output).getFailure());
+            }
+            return BatchOutput.succeeded(lineNumber, output);
+        } catch (ArgumentParserException | XenonException e) {
+            return BatchOutput.failed(lineNumber, e.getMessage());
+        } catch (RuntimeException e) {
+            // for example invalid JSON or an I/O error while copying
+            return BatchOutput.failed(lineNumber, e.toString());
+        }
+    }
+
+    private static boolean isSupported(ICommand command, Namespace res) {
+        if (command == null || command instanceof ExecCommand || command instanceof ServeCommand || command instanceof BatchCommand) {
+            return false;
+        }
+        if (JsonLinesWriter.isEnabled(res) || Boolean.TRUE.equals(res.getBoolean("unsorted"))) {
+            // items written while listing would interleave with the results
+            return false;
+        }
+        // stdin is the batch file and stdout holds the results
+        return STREAM_PATH_KEYS.stream().map(res::getString).noneMatch("-"::equals);
+    }
+
+    /**
+     * Arguments of a line, which is a JSON array, a JSON object with an args array or a command line
+     */
+    String[] parseLine(String line) {
+        String[] args;
+        if (line.startsWith("[")) {
+            args = gson.fromJson(line, String[].class);
+        } else if (line.startsWith("{")) {
+            args = gson.fromJson(line, JsonLine.class).args;
+        } else {
+            args = splitCommandLine(line);
+        }
+        if (args == null) {
+            throw new JsonParseException("No arguments in: " + line);
+        }
+        if (args.length > 0 && "xenon".equals(args[0])) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        return args;
+    }
+
+    /**
+     * Split command line into arguments on whitespace, with support for single quotes, double quotes and backslash escapes
+     */
+    static String[] splitCommandLine(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+                    current.append(line.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inArg = true;
+            } else if (c == '\\' && i + 1 < line.length()) {
+                current.append(line.charAt(++i));
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                current.append(c);
+                inArg = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("Unterminated quote in: " + line);
+        }
+        if (inArg) {
+            args.add(current.toString());
+        }
+        return args.toArray(new String[0]);
+    }
+
+    private static class JsonLine {
+        String[] args;
+    }
+}
@@ -0,0 +1,30 @@
+package nl.esciencecenter.xenon.cli.batch;
+
+/**
+ * Result of a single command of a batch
+ */
+public class BatchOutput {
+    public final int line;
+    public final boolean success;
+    public final Object output;
+    public final String error;
+
+    private BatchOutput(int line, boolean success, Object output, String error) {
+        this.line = line;
+        this.success = success;
+        this.output = output;
+        this.error = error;
+    }
+
+    static BatchOutput succeeded(int line, Object output) {
+        return new BatchOutput(line, true, output, null);
+    }
+
+    static BatchOutput failed(int line, String error) {
+        return new BatchOutput(line, false, null, error);
+    }
+
+    static BatchOutput failed(int line, Object output, String error) {
+        return new BatchOutput(line, false, output, error);
+    }
+}
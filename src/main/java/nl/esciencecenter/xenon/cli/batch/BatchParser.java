@@ -0,0 +1,42 @@
+package nl.esciencecenter.xenon.cli.batch;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Subparser;
+import net.sourceforge.argparse4j.inf.Subparsers;
+import nl.esciencecenter.xenon.cli.IParser;
+import nl.esciencecenter.xenon.cli.SessionPool;
+
+public class BatchParser implements IParser {
+    @Override
+    public Subparser buildArgumentParser(Subparsers subparsers) {
+        String sep = System.getProperty("line.separator");
+        String epilog = "Each line of the file is a xenon command line without the leading `xenon`," + sep +
+                "for example `filesystem sftp --location localhost list /etc`, or a JSON array of arguments" + sep +
+                "or a JSON object with an `args` array. Empty lines and lines starting with '#' are skipped." + sep +
+                sep +
+                "Commands with the same adaptor, location, credential and properties share a connection." + sep +
+                "For each command a JSON object is written to stdout as soon as the command completes," + sep +
+                "with the `line` number in the file, `success` and the command `output` or `error` message." + sep +
+                sep +
+                "The exec command and copying from stdin or to stdout are not supported in a batch." + sep;
+        Subparser subparser = subparsers.addParser("batch")
+            .setDefault("command", new BatchCommand())
+            .defaultHelp(true)
+            .help("Run commands from a file, one per line")
+            .description("Run commands from a file, one per line")
+            .epilog(epilog);
+        subparser.addArgument("file")
+            .type(Arguments.fileType().acceptSystemIn().verifyCanRead())
+            .help("File with commands, use '-' for stdin")
+            .required(true);
+        subparser.addArgument("--parallel")
+            .type(Integer.class)
+            .setDefault(1)
+            .help("Number of commands to run concurrently, only use more than 1 when commands do not depend on each other");
+        subparser.addArgument("--max-sessions-per-host")
+            .type(Integer.class)
+            .setDefault(SessionPool.DEFAULT_MAX_SESSIONS_PER_HOST)
+            .help("Maximum number of open filesystems and schedulers per host, commands wait when reached");
+        return subparser;
+    }
+}
@@ -0,0 +1,137 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Token bucket which limits the bytes per second of all streams of a copy together.
+ *
+ * Each stream takes tokens for the bytes it transferred, the bucket is refilled at the rate of the schedule.
+ * A stream which takes more tokens than there are, leaves the bucket in debt and waits until it is paid off,
+ * so the streams share the bandwidth without a thread of their own.
+ * A copy without limit has no limiter at all, so its streams are not wrapped.
+ */
+class BandwidthLimiter {
+    /**
+     * Smallest number of bytes which may be transferred at once after an idle period
+     */
+    private static final long MIN_BURST = 64 * 1024;
+    /**
+     * Largest number of bytes read or written at once, so a slow limit is spread evenly
+     */
+    private static final int MAX_CHUNK = 64 * 1024;
+    /**
+     * Longest sleep before the schedule is consulted again
+     */
+    private static final long MAX_SLEEP_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final BandwidthSchedule schedule;
+    private final Supplier<LocalTime> clock;
+    // full bucket, capped at the burst of the rate on the first take
+    private double tokens = Double.POSITIVE_INFINITY;
+    private long refilled = 0;
+
+    BandwidthLimiter(BandwidthSchedule schedule) {
+        this(schedule, LocalTime::now);
+    }
+
+    /**
+     * @param clock Time of day at which the schedule is looked up
+     */
+    BandwidthLimiter(BandwidthSchedule schedule, Supplier<LocalTime> clock) {
+        this.schedule = schedule;
+        this.clock = clock;
+    }
+
+    /**
+     * Take tokens for bytes which were transferred
+     *
+     * @param now Time in nanoseconds
+     * @return Nanoseconds to wait until the debt of the bucket is paid off, 0 when there is no debt
+     */
+    synchronized long take(long bytes, long now) {
+        long rate = schedule.rateAt(clock.get());
+        if (rate == BandwidthSchedule.UNLIMITED) {
+            tokens = Double.POSITIVE_INFINITY;
+            return 0;
+        }
+        double burst = Math.max(MIN_BURST, rate / 10.0);
+        tokens = Math.min(burst, tokens + (now - refilled) * (rate / 1e9));
+        refilled = now;
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * 1e9);
+    }
+
+    /**
+     * Take tokens for bytes which were transferred and wait until the rate allows more
+     */
+    void acquire(long bytes) throws InterruptedIOException {
+        long wait = take(bytes, System.nanoTime());
+        while (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(wait, MAX_SLEEP_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth limit");
+            }
+            // the schedule may have changed while sleeping
+            wait = take(0, System.nanoTime());
+        }
+    }
+
+    /**
+     * @return Stream which reads from in no faster than the limit
+     */
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b != -1) {
+                    acquire(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, Math.min(len, MAX_CHUNK));
+                if (n > 0) {
+                    acquire(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * @return Stream which writes to out no faster than the limit
+     */
+    OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                acquire(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                int written = 0;
+                while (written < len) {
+                    int n = Math.min(len - written, MAX_CHUNK);
+                    out.write(b, off + written, n);
+                    acquire(n);
+                    written += n;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nl.esciencecenter.xenon.cli.SizeArgumentType;
+
+/**
+ * Bandwidth limit in bytes per second which can change with the time of day.
+ *
+ * Either a single rate like `10M`, or a timetable of start times and rates like `08:00,512K 18:00,10M 23:00,off`.
+ * A rate applies from its start time until the next start time, the last one wraps around to the first one of the next day.
+ */
+public class BandwidthSchedule {
+    /**
+     * Rate of `off`, no limit
+     */
+    static final long UNLIMITED = 0;
+    private static final String OFF = "off";
+
+    private final TreeMap<LocalTime, Long> rates;
+
+    private BandwidthSchedule(TreeMap<LocalTime, Long> rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * @param value Rate like `10M` or timetable like `08:00,512K 18:00,10M 23:00,off`
+     * @return Schedule
+     * @throws IllegalArgumentException when value is not a rate or timetable
+     */
+    public static BandwidthSchedule parse(String value) {
+        TreeMap<LocalTime, Long> rates = new TreeMap<>();
+        String[] entries = value.trim().split("\\s+");
+        if (entries.length == 1 && !entries[0].contains(",")) {
+            rates.put(LocalTime.MIDNIGHT, parseRate(entries[0]));
+            return new BandwidthSchedule(rates);
+        }
+        for (String entry : entries) {
+            String[] parts = entry.split(",", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid bandwidth timetable entry '" + entry + "', expected HH:MM,RATE");
+            }
+            LocalTime start;
+            try {
+                start = LocalTime.parse(parts[0]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid time '" + parts[0] + "' in bandwidth timetable, expected HH:MM");
+            }
+            if (rates.put(start, parseRate(parts[1])) != null) {
+                throw new IllegalArgumentException("Time " + parts[0] + " appears twice in bandwidth timetable");
+            }
+        }
+        return new BandwidthSchedule(rates);
+    }
+
+    private static long parseRate(String value) {
+        if (OFF.equals(value.toLowerCase(Locale.ROOT))) {
+            return UNLIMITED;
+        }
+        long rate = SizeArgumentType.parseSize(value);
+        if (rate < 1) {
+            throw new IllegalArgumentException("Bandwidth limit must be at least 1 byte per second, use 'off' for no limit");
+        }
+        return rate;
+    }
+
+    /**
+     * @return Bytes per second allowed at time of day or {@link #UNLIMITED}
+     */
+    long rateAt(LocalTime time) {
+        Map.Entry<LocalTime, Long> entry = rates.floorEntry(time);
+        if (entry == null) {
+            // before the first start time, so the last rate of the previous day still applies
+            entry = rates.lastEntry();
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * @return Whether there is no limit at any time of day
+     */
+    boolean isUnlimited() {
+        return rates.values().stream().allMatch(rate -> rate == UNLIMITED);
+    }
+}
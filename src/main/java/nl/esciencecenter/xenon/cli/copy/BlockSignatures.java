@@ -0,0 +1,123 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.filesystems.Path;
+
+/**
+ * Weak and strong checksum of each whole block of a file, to find blocks of the file in another file.
+ *
+ * The weak checksum is the POSIX `cksum` of a block, which {@link RollingChecksum} computes at every offset of the other file,
+ * the strong checksum is the MD5 digest of a block.
+ */
+class BlockSignatures {
+    private static final String SEPARATOR = "---";
+
+    private final int blockSize;
+    private final List<byte[]> strong = new ArrayList<>();
+    private final Map<Long, List<Integer>> blocksByWeak = new HashMap<>();
+
+    BlockSignatures(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Checksums of file on host of sftp location, computed there with GNU coreutils
+     */
+    static BlockSignatures fetch(CopyInput input, Path file, int blockSize) throws XenonException, IOException {
+        String quoted = RemoteShell.quote(file.toString());
+        String script = "split -b " + blockSize + " --filter=cksum -- " + quoted +
+            " && echo " + SEPARATOR +
+            " && split -b " + blockSize + " --filter=md5sum -- " + quoted;
+        BlockSignatures signatures = new BlockSignatures(blockSize);
+        RemoteShell.run(input, script, signatures.parser());
+        return signatures;
+    }
+
+    /**
+     * @return Parser of `cksum` lines of each block, a separator line and `md5sum` lines of each block
+     */
+    Consumer<String> parser() {
+        List<Long> weak = new ArrayList<>();
+        return new Consumer<String>() {
+            private boolean digests = false;
+            private int block = 0;
+
+            @Override
+            public void accept(String line) {
+                if (SEPARATOR.equals(line)) {
+                    digests = true;
+                    return;
+                }
+                String[] fields = line.trim().split("\\s+");
+                if (!digests) {
+                    // a last block which is not whole can not be found in another file
+                    weak.add(Long.parseLong(fields[1]) == blockSize ? Long.parseLong(fields[0]) : null);
+                } else if (block < weak.size()) {
+                    Long checksum = weak.get(block++);
+                    if (checksum != null) {
+                        add(checksum, parseHex(fields[0]));
+                    }
+                }
+            }
+        };
+    }
+
+    private static byte[] parseHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Add checksums of next block
+     */
+    void add(long weak, byte[] digest) {
+        blocksByWeak.computeIfAbsent(weak, key -> new ArrayList<>(1)).add(strong.size());
+        strong.add(digest);
+    }
+
+    boolean contains(long weak) {
+        return blocksByWeak.containsKey(weak);
+    }
+
+    /**
+     * @param preferred Block to return when several blocks match, so runs of blocks stay together
+     * @return Index of block with checksums or -1 when there is none
+     */
+    int find(long weak, byte[] digest, int preferred) {
+        List<Integer> candidates = blocksByWeak.get(weak);
+        if (candidates == null) {
+            return -1;
+        }
+        int found = -1;
+        for (int block : candidates) {
+            if (Arrays.equals(strong.get(block), digest)) {
+                if (block == preferred) {
+                    return block;
+                }
+                if (found == -1) {
+                    found = block;
+                }
+            }
+        }
+        return found;
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    int getBlockCount() {
+        return strong.size();
+    }
+}
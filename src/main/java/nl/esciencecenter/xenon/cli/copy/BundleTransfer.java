@@ -0,0 +1,386 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.filesystems.CopyMode;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.InvalidPathException;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAlreadyExistsException;
+import nl.esciencecenter.xenon.schedulers.Scheduler;
+
+/**
+ * Uploads a local directory tree to a sftp location as tar archives, which are extracted with tar over ssh on its host.
+ *
+ * A tree of many small files is slow to upload a file at a time, as each file costs several round trips.
+ * Here the calling thread walks the tree and cuts it into bundles of about the bundle size,
+ * which workers stream each through the stdin of their own `tar -x` process.
+ * A bundle which fails is recorded as error and does not stop the upload of other bundles.
+ */
+class BundleTransfer {
+    /**
+     * Bytes of an entry in the archive on top of its content
+     */
+    private static final long ENTRY_OVERHEAD = TarWriter.BLOCK_SIZE;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CopyInput source;
+    private final CopyInput target;
+    private final CopyOptions options;
+    private final int parallel;
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong filesCopied = new AtomicLong();
+    private final List<CopyError> errors = Collections.synchronizedList(new ArrayList<>());
+    private final BandwidthLimiter limiter;
+    private CopyProgress progress = null;
+
+    /**
+     * File, directory or symbolic link in a bundle
+     */
+    private static class Entry {
+        final java.nio.file.Path file;
+        final String name;
+        final BasicFileAttributes attributes;
+
+        Entry(java.nio.file.Path file, String name, BasicFileAttributes attributes) {
+            this.file = file;
+            this.name = name;
+            this.attributes = attributes;
+        }
+    }
+
+    private static class Bundle {
+        static final Bundle DONE = new Bundle(-1);
+
+        final long number;
+        final List<Entry> entries = new ArrayList<>();
+        long size = 0;
+
+        Bundle(long number) {
+            this.number = number;
+        }
+    }
+
+    BundleTransfer(CopyInput source, CopyInput target, CopyOptions options) {
+        this.source = source;
+        this.target = target;
+        this.options = options;
+        this.parallel = options.getParallel();
+        this.limiter = options.getBwlimit() == null ? null : new BandwidthLimiter(options.getBwlimit());
+    }
+
+    /**
+     * A local source can be walked and a sftp target has a shell with tar
+     */
+    static boolean supports(CopyInput source, CopyInput target) {
+        return source.isLocal() && !source.isStream() && "sftp".equals(target.getAdaptorName());
+    }
+
+    /**
+     * @return Bytes and files copied and errors of files and bundles which failed to copy
+     * @throws XenonException when source is not a directory or target directory can not be created
+     */
+    CopyOutput copy() throws XenonException {
+        if (parallel < 1) {
+            throw new XenonException(source.getAdaptorName(), "Parallel must be at least 1");
+        }
+        if (options.getBundleSize() < 1) {
+            throw new XenonException(source.getAdaptorName(), "Bundle size must be at least 1 byte");
+        }
+        CopyEngine.warnAboveSessionLimit("--parallel", parallel);
+        java.nio.file.Path sourceDirectory;
+        Path targetPath;
+        try (
+            Session<FileSystem> sourceSession = source.openFileSystem();
+            Session<FileSystem> targetSession = target.openFileSystem()
+        ) {
+            sourceDirectory = localPath(sourceSession.get(), source.getPath());
+            if (!Files.isDirectory(sourceDirectory)) {
+                throw new InvalidPathException(source.getAdaptorName(), "Source path is not a directory, --bundle uploads a directory: " + sourceDirectory);
+            }
+            FileSystem targetFS = targetSession.get();
+            targetPath = target.getPath().isAbsolute() ? target.getPath() : targetFS.getWorkingDirectory().resolve(target.getPath());
+            if (targetFS.exists(targetPath)) {
+                if (options.getCopymode() == CopyMode.CREATE) {
+                    throw new PathAlreadyExistsException(target.getAdaptorName(), "Target directory already exists: " + targetPath);
+                } else if (options.getCopymode() == CopyMode.IGNORE) {
+                    return new CopyOutput(source, target, 0, 0L, new ArrayList<>());
+                }
+            } else {
+                targetFS.createDirectories(targetPath);
+            }
+        }
+        progress = CopyProgress.start(options.getProgress());
+        try {
+            copyBundles(sourceDirectory, targetPath);
+        } finally {
+            if (progress != null) {
+                progress.close();
+            }
+        }
+        return new CopyOutput(source, target, bytesCopied.get(), filesCopied.get(), new ArrayList<>(errors));
+    }
+
+    private static java.nio.file.Path localPath(FileSystem fs, Path path) {
+        Path absolutePath = path.isAbsolute() ? path : fs.getWorkingDirectory().resolve(path);
+        return Paths.get(absolutePath.toString());
+    }
+
+    private void copyBundles(java.nio.file.Path sourceDirectory, Path targetPath) throws XenonException {
+        // a bundle is queued while the workers are busy with theirs
+        BlockingQueue<Bundle> queue = new ArrayBlockingQueue<>(parallel);
+        String script = "cd " + RemoteShell.quote(targetPath.toString()) + " && tar -x -o -f -";
+        List<Thread> workers = new ArrayList<>();
+        for (int slot = 0; slot < parallel; slot++) {
+            Thread worker = new Thread(new Worker(slot, queue, script), "xenon-bundle-" + slot);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        try {
+            try {
+                walk(sourceDirectory, queue);
+            } finally {
+                for (int i = 0; i < parallel; i++) {
+                    queue.put(Bundle.DONE);
+                }
+                // also when walking failed, as the caller closes the progress the workers still report to
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(Thread::interrupt);
+            throw new XenonException(source.getAdaptorName(), "Interrupted while copying", e);
+        }
+    }
+
+    /**
+     * Cut tree into bundles, directories come before their content
+     */
+    private void walk(java.nio.file.Path sourceDirectory, BlockingQueue<Bundle> queue) throws XenonException, InterruptedException {
+        Bundle[] bundle = {new Bundle(1)};
+        long bundleSize = options.getBundleSize();
+        try {
+            Files.walkFileTree(sourceDirectory, new SimpleFileVisitor<java.nio.file.Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attributes) throws IOException {
+                    if (!dir.equals(sourceDirectory)) {
+                        add(dir, attributes);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attributes) throws IOException {
+                    if (attributes.isRegularFile() || attributes.isSymbolicLink()) {
+                        add(file, attributes);
+                    } else {
+                        errors.add(new CopyError(file.toString(), "Not a regular file, directory or symbolic link"));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(java.nio.file.Path file, IOException e) {
+                    errors.add(new CopyError(file.toString(), e.getMessage()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void add(java.nio.file.Path file, BasicFileAttributes attributes) throws IOException {
+                    Entry entry = new Entry(file, name(sourceDirectory.relativize(file)), attributes);
+                    bundle[0].entries.add(entry);
+                    bundle[0].size += ENTRY_OVERHEAD + (attributes.isRegularFile() ? attributes.size() : 0);
+                    if (bundle[0].size >= bundleSize) {
+                        put(queue, bundle[0]);
+                        bundle[0] = new Bundle(bundle[0].number + 1);
+                    }
+                }
+            });
+        } catch (InterruptedIOException e) {
+            throw new InterruptedException(e.getMessage());
+        } catch (IOException e) {
+            throw new XenonException(source.getAdaptorName(), "Unable to walk " + sourceDirectory + ": " + e.getMessage(), e);
+        }
+        if (!bundle[0].entries.isEmpty()) {
+            queue.put(bundle[0]);
+        }
+    }
+
+    private static void put(BlockingQueue<Bundle> queue, Bundle bundle) throws InterruptedIOException {
+        try {
+            queue.put(bundle);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while walking source directory");
+        }
+    }
+
+    /**
+     * @return Name in archive, with / as separator whatever the local separator is
+     */
+    private static String name(java.nio.file.Path relative) {
+        StringBuilder name = new StringBuilder();
+        for (java.nio.file.Path part : relative) {
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(part.toString());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Uploads bundles from queue, each through its own tar process over its own connection
+     */
+    private class Worker implements Runnable {
+        private final int slot;
+        private final BlockingQueue<Bundle> queue;
+        private final String script;
+        private Session<Scheduler> session;
+
+        Worker(int slot, BlockingQueue<Bundle> queue, String script) {
+            this.slot = slot;
+            this.queue = queue;
+            this.script = script;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Bundle bundle = queue.take();
+                while (bundle != Bundle.DONE) {
+                    copy(bundle);
+                    bundle = queue.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (session != null) {
+                    try {
+                        session.close();
+                    } catch (XenonException e) {
+                        // bundles have been copied, so failing to disconnect is harmless
+                    }
+                }
+            }
+        }
+
+        private void copy(Bundle bundle) {
+            List<CopyError> fileErrors = new ArrayList<>();
+            long[] copied = new long[2];
+            try {
+                if (session == null) {
+                    // opened by the worker, as the pool tracks which thread holds a session
+                    session = RemoteShell.openScheduler(target, slot);
+                }
+                RemoteShell.run(session.get(), target, script, stdin -> {
+                    OutputStream out = stdin;
+                    if (progress != null) {
+                        out = progress.wrap(out);
+                    }
+                    if (limiter != null) {
+                        out = limiter.wrap(out);
+                    }
+                    TarWriter tar = new TarWriter(new BufferedOutputStream(out, BUFFER_SIZE));
+                    for (Entry entry : bundle.entries) {
+                        copied[0] += write(tar, entry, fileErrors);
+                        copied[1] += entry.attributes.isDirectory() ? 0 : 1;
+                    }
+                    tar.finish();
+                });
+                errors.addAll(fileErrors);
+                bytesCopied.addAndGet(copied[0]);
+                filesCopied.addAndGet(copied[1] - fileErrors.size());
+                if (progress != null) {
+                    for (long i = fileErrors.size(); i < copied[1]; i++) {
+                        progress.fileCopied();
+                    }
+                }
+            } catch (XenonException | IOException | RuntimeException e) {
+                // a worker which died would leave the walk blocked on a full queue
+                Entry first = bundle.entries.get(0);
+                errors.add(new CopyError(first.file.toString(), "Bundle " + bundle.number + " of " + bundle.entries.size() +
+                    " entries starting at this path failed: " + (e.getMessage() == null ? e.toString() : e.getMessage())));
+            }
+        }
+
+        /**
+         * @return Bytes of content written, files which can not be read are recorded in errors and left out
+         */
+        private long write(TarWriter tar, Entry entry, List<CopyError> fileErrors) throws IOException {
+            BasicFileAttributes attributes = entry.attributes;
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (attributes.isDirectory()) {
+                tar.writeDirectory(entry.name, mode(entry.file, 0755), modified);
+                return 0;
+            }
+            if (attributes.isSymbolicLink()) {
+                java.nio.file.Path link;
+                try {
+                    link = Files.readSymbolicLink(entry.file);
+                } catch (IOException e) {
+                    fileErrors.add(new CopyError(entry.file.toString(), e.getMessage()));
+                    return 0;
+                }
+                tar.writeSymbolicLink(entry.name, link.toString().replace(link.getFileSystem().getSeparator(), "/"), modified);
+                return 0;
+            }
+            InputStream in;
+            try {
+                in = Files.newInputStream(entry.file);
+            } catch (IOException e) {
+                // removed since the walk
+                fileErrors.add(new CopyError(entry.file.toString(), e.getMessage()));
+                return 0;
+            }
+            try (InputStream file = in) {
+                tar.writeFile(entry.name, mode(entry.file, 0644), modified, attributes.size(), file);
+            } catch (EOFException e) {
+                // shrunk since the walk, the rest of its entry is zeros
+                fileErrors.add(new CopyError(entry.file.toString(), e.getMessage()));
+                return 0;
+            }
+            return attributes.size();
+        }
+    }
+
+    /**
+     * @return Permission bits of file or fallback on filesystems without posix permissions
+     */
+    private static int mode(java.nio.file.Path file, int fallback) {
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(file, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException | IOException e) {
+            return fallback;
+        }
+        int mode = 0;
+        for (PosixFilePermission permission : permissions) {
+            // OWNER_READ is the highest bit, OTHERS_EXECUTE the lowest
+            mode |= 1 << (8 - permission.ordinal());
+        }
+        return mode;
+    }
+}
@@ -0,0 +1,67 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksum of the content of a file, formatted like the output of the command line tool of the algorithm
+ */
+abstract class ContentDigest {
+    static final String CRC32C = "crc32c";
+    static final String SHA256 = "sha256";
+
+    /**
+     * @param algorithm {@link #CRC32C} or {@link #SHA256}
+     */
+    static ContentDigest of(String algorithm) {
+        if (CRC32C.equals(algorithm)) {
+            // intrinsic on modern CPUs
+            CRC32C crc = new CRC32C();
+            return new ContentDigest() {
+                @Override
+                void update(byte[] bytes, int offset, int length) {
+                    crc.update(bytes, offset, length);
+                }
+
+                @Override
+                String hex() {
+                    return String.format("%08x", crc.getValue());
+                }
+            };
+        } else if (SHA256.equals(algorithm)) {
+            MessageDigest digest = messageDigest("SHA-256");
+            return new ContentDigest() {
+                @Override
+                void update(byte[] bytes, int offset, int length) {
+                    digest.update(bytes, offset, length);
+                }
+
+                @Override
+                String hex() {
+                    StringBuilder sb = new StringBuilder();
+                    for (byte b : digest.digest()) {
+                        sb.append(String.format("%02x", b));
+                    }
+                    return sb.toString();
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unknown checksum algorithm: " + algorithm);
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is always available", e);
+        }
+    }
+
+    abstract void update(byte[] bytes, int offset, int length);
+
+    /**
+     * @return Checksum of bytes so far in hexadecimal
+     */
+    abstract String hex();
+}
@@ -3,6 +3,8 @@ package nl.esciencecenter.xenon.cli.copy;
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
 import nl.esciencecenter.xenon.XenonRuntimeException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.cli.StandardStreams;
 import nl.esciencecenter.xenon.cli.Utils;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.credentials.Credential;
@@ -11,7 +13,12 @@ import nl.esciencecenter.xenon.filesystems.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
 
 import static nl.esciencecenter.xenon.cli.Utils.buildTargetXenonProperties;
 import static nl.esciencecenter.xenon.cli.Utils.buildXenonProperties;
@@ -24,8 +31,21 @@ public class CopyCommand extends XenonCommand {
      * Default timeout for copy operation is a week
      */
     private static final long DEFAULT_COPY_TIMEOUT = 1000 * 60 * 60 * 24 * 7L;
+    private static final int DECOMPRESS_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Interval in milliseconds at which the status of a copy of the adaptor is polled for progress
+     */
+    private static final long PROGRESS_POLL_INTERVAL = 1000;
 
     protected CopyOutput copy(CopyInput source, CopyInput target, Boolean recursive, CopyMode copymode) throws XenonException {
+        return copy(source, target, recursive, new CopyOptions().setCopymode(copymode));
+    }
+
+    /**
+     * @param options Copy mode and options which select the client side copy engine instead of the copy of the adaptor
+     */
+    protected CopyOutput copy(CopyInput source, CopyInput target, Boolean recursive, CopyOptions options) throws XenonException {
+        CopyMode copymode = options.getCopymode();
         if (recursive && source.isStream()) {
             throw new NoSuchCopyException(source.getAdaptorName(), "Unable to do recursive copy from stdin");
         }
@@ -33,27 +53,110 @@ public class CopyCommand extends XenonCommand {
             throw new NoSuchCopyException(target.getAdaptorName(), "Unable to do recursive copy to stdout");
         }
 
+        if (options.getVerify() != null && (source.isStream() || target.isStream())) {
+            throw new NoSuchCopyException(source.getAdaptorName(), "Unable to verify copy from stdin or to stdout");
+        }
+
+        if (options.getFilesFrom() != null && (source.isStream() || target.isStream() || recursive)) {
+            throw new NoSuchCopyException(source.getAdaptorName(), "Unable to copy list of files from stdin, to stdout or recursively");
+        }
+
+        boolean compression = options.isCompress() || options.isDecompress();
+        if (options.isBundle()) {
+            return copyBundles(source, target, recursive, options);
+        }
+        if (compression && recursive) {
+            throw new NoSuchCopyException(source.getAdaptorName(), "Unable to compress or decompress a recursive copy");
+        }
+        if (compression && options.usesEngine()) {
+            throw new NoSuchCopyException(source.getAdaptorName(), "Unable to compress or decompress with copy engine options");
+        }
+
+        // a copy of the adaptor can not be limited, a single file is limited below
+        boolean limitedRecursive = recursive && options.getBwlimit() != null;
+        if (options.getFilesFrom() != null) {
+            return copyFilesFrom(source, target, options);
+        }
+        if ((options.usesEngine() || limitedRecursive) && !source.isStream() && !target.isStream()) {
+            return new CopyEngine(source, target, options).copy(recursive);
+        }
+        BandwidthLimiter limiter = options.getBwlimit() == null ? null : new BandwidthLimiter(options.getBwlimit());
+
         Path sourcePath = source.getPath();
         Path targetPath = target.getPath();
         try (
-            FileSystem sourceFS = source.getFileSystem();
-            FileSystem targetFS = target.getFileSystem()
+            Session<FileSystem> sourceSession = source.openFileSystem();
+            Session<FileSystem> targetSession = target.openFileSystem();
+            CopyProgress progress = CopyProgress.start(options.getProgress())
             ) {
+            FileSystem sourceFS = sourceSession.get();
+            FileSystem targetFS = targetSession.get();
+            if (progress != null && !recursive) {
+                progress.setFilesToCopy(1);
+                if (!source.isStream() && !options.isDecompress()) {
+                    progress.setBytesToCopy(sizeOf(sourceFS, sourcePath));
+                }
+            }
             long bytesCopied;
             if (source.isStream() && !target.isStream()) {
-                bytesCopied = copyFromSystemIn(targetPath, targetFS, copymode, recursive);
+                bytesCopied = copyFromSystemIn(targetPath, targetFS, copymode, recursive, options, target, progress, limiter);
             } else if (!source.isStream() && target.isStream()) {
-                bytesCopied = copyToSystemOut(sourcePath, sourceFS);
+                bytesCopied = copyToSystemOut(sourcePath, sourceFS, options, source, progress, limiter);
+            } else if (compression || limiter != null) {
+                bytesCopied = copyThroughClient(sourcePath, sourceFS, targetPath, targetFS, source, target, options, progress, limiter);
+            } else if (!recursive && isLocalFileCopy(source, sourceFS, sourcePath, target, targetFS, targetPath)) {
+                bytesCopied = copyLocal(localPath(sourceFS, sourcePath), localPath(targetFS, targetPath), target, copymode, progress);
+            } else if (!recursive && isLocalFileUpload(source, sourceFS, sourcePath, target)) {
+                bytesCopied = copyThroughClient(sourcePath, sourceFS, targetPath, targetFS, source, target, options, progress, null);
             } else {
-                bytesCopied = copy(sourcePath, sourceFS, targetPath, targetFS, recursive, copymode).bytesCopied();
+                bytesCopied = copy(sourcePath, sourceFS, targetPath, targetFS, recursive, copymode, progress).bytesCopied();
+            }
+            if (progress != null && !recursive) {
+                progress.fileCopied();
             }
             return new CopyOutput(source, target, bytesCopied);
         }
     }
 
-    private CopyStatus copy(Path sourcePath, FileSystem sourceFS, Path targetPath, FileSystem targetFS, Boolean recursive, CopyMode copymode) throws XenonException {
+    private static CopyOutput copyBundles(CopyInput source, CopyInput target, Boolean recursive, CopyOptions options) throws XenonException {
+        if (!BundleTransfer.supports(source, target)) {
+            throw new NoSuchCopyException(target.getAdaptorName(), "Unable to bundle, --bundle uploads a local directory to a sftp location");
+        }
+        if (!recursive) {
+            throw new NoSuchCopyException(source.getAdaptorName(), "Unable to bundle without --recursive");
+        }
+        if (options.getStreams() > 1 || options.isResume() || options.getVerify() != null || options.isDelta()
+            || options.isCompress() || options.isDecompress() || options.getFilesFrom() != null) {
+            throw new NoSuchCopyException(source.getAdaptorName(), "Unable to bundle with --streams, --resume, --verify, --delta, --compress, --decompress or --files-from");
+        }
+        return new BundleTransfer(source, target, options).copy();
+    }
+
+    private static CopyOutput copyFilesFrom(CopyInput source, CopyInput target, CopyOptions options) throws XenonException {
+        try (FileManifest manifest = FileManifest.open(options.getFilesFrom())) {
+            return new CopyEngine(source, target, options).copy(manifest);
+        } catch (IOException e) {
+            throw new XenonException(source.getAdaptorName(), "Unable to read list of files " + options.getFilesFrom() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param progress Reporter which is fed from the status of the copy or null to wait silently
+     */
+    private CopyStatus copy(Path sourcePath, FileSystem sourceFS, Path targetPath, FileSystem targetFS, Boolean recursive, CopyMode copymode, CopyProgress progress) throws XenonException {
         String copyId = sourceFS.copy(sourcePath, targetFS, targetPath, copymode, recursive);
-        CopyStatus status = sourceFS.waitUntilDone(copyId, DEFAULT_COPY_TIMEOUT);
+        CopyStatus status;
+        if (progress == null) {
+            status = sourceFS.waitUntilDone(copyId, DEFAULT_COPY_TIMEOUT);
+        } else {
+            long deadline = System.currentTimeMillis() + DEFAULT_COPY_TIMEOUT;
+            status = sourceFS.waitUntilDone(copyId, PROGRESS_POLL_INTERVAL);
+            while (!status.isDone() && System.currentTimeMillis() < deadline) {
+                updateProgress(progress, status);
+                status = sourceFS.waitUntilDone(copyId, PROGRESS_POLL_INTERVAL);
+            }
+            updateProgress(progress, status);
+        }
         if (status.hasException()) {
             Throwable e = status.getException();
             if (e != null) {
@@ -63,29 +166,196 @@ public class CopyCommand extends XenonCommand {
         return status;
     }
 
-    private long copyToSystemOut(Path sourcePath, FileSystem sourceFS) throws XenonException {
-        InputStream in = sourceFS.readFromFile(sourcePath);
-        OutputStream out = System.out;
+    private static void updateProgress(CopyProgress progress, CopyStatus status) {
+        // adaptors report -1 while the size is not known yet
+        if (status.bytesToCopy() >= 0) {
+            progress.setBytesToCopy(status.bytesToCopy());
+        }
+        progress.setBytesCopied(Math.max(0, status.bytesCopied()));
+    }
+
+    /**
+     * @return Size of regular file or -1 when it is not a regular file or does not exist
+     */
+    private static long sizeOf(FileSystem fs, Path path) {
+        try {
+            PathAttributes attributes = fs.getAttributes(path);
+            return attributes.isRegular() ? attributes.getSize() : -1;
+        } catch (XenonException e) {
+            // reported by the copy itself
+            return -1;
+        }
+    }
+
+    /**
+     * @return Stream which reports bytes written to it as progress
+     */
+    private static OutputStream counted(OutputStream out, CopyProgress progress) {
+        return progress == null ? out : progress.wrap(out);
+    }
+
+    /**
+     * @return Stream which is read no faster than the bandwidth limit
+     */
+    private static InputStream throttled(InputStream in, BandwidthLimiter limiter) {
+        return limiter == null ? in : limiter.wrap(in);
+    }
+
+    /**
+     * @return Consumer which reports bytes as progress
+     */
+    private static LongConsumer counter(CopyProgress progress) {
+        return progress == null ? bytes -> { } : progress::addBytes;
+    }
+
+    /**
+     * Local path of a file on a local filesystem, relative paths are relative to its working directory
+     */
+    private static java.nio.file.Path localPath(FileSystem fs, Path path) {
+        Path absolutePath = path.isAbsolute() ? path : fs.getWorkingDirectory().resolve(path);
+        return Paths.get(absolutePath.toString());
+    }
+
+    /**
+     * Whether a local file is copied to a local file, other cases are left to the adaptor, which reports their errors
+     */
+    private static boolean isLocalFileCopy(CopyInput source, FileSystem sourceFS, Path sourcePath, CopyInput target, FileSystem targetFS, Path targetPath) {
+        if (!source.isLocal() || !target.isLocal()) {
+            return false;
+        }
+        java.nio.file.Path sourceFile = localPath(sourceFS, sourcePath);
+        java.nio.file.Path targetFile = localPath(targetFS, targetPath);
+        java.nio.file.Path targetDir = targetFile.getParent();
+        return Files.isRegularFile(sourceFile) && !Files.isDirectory(targetFile) && targetDir != null && Files.isDirectory(targetDir);
+    }
+
+    private static boolean isLocalFileUpload(CopyInput source, FileSystem sourceFS, Path sourcePath, CopyInput target) {
+        return source.isLocal() && !target.isLocal() && Files.isRegularFile(localPath(sourceFS, sourcePath));
+    }
+
+    private long copyLocal(java.nio.file.Path sourceFile, java.nio.file.Path targetFile, CopyInput target, CopyMode copymode, CopyProgress progress) throws XenonException {
+        if (Files.exists(targetFile)) {
+            if (CopyMode.IGNORE.equals(copymode)) {
+                return 0;
+            } else if (CopyMode.CREATE.equals(copymode)) {
+                throw new PathAlreadyExistsException(target.getAdaptorName(), "Target file already exists: " + targetFile);
+            }
+        }
         try {
-            return Utils.pipe(in, out);
+            return LocalTransfer.copy(sourceFile, targetFile, CopyMode.REPLACE.equals(copymode), counter(progress));
         } catch (IOException e) {
             throw new XenonRuntimeException("file", e.getMessage(), e);
         }
     }
 
-    private long copyFromSystemIn(Path targetPath, FileSystem targetFS, CopyMode copymode, Boolean recursive) throws XenonException {
+    private long copyToSystemOut(Path sourcePath, FileSystem sourceFS, CopyOptions options, CopyInput source, CopyProgress progress, BandwidthLimiter limiter) throws XenonException {
+        boolean plain = !options.isCompress() && !options.isDecompress() && limiter == null;
+        if (source.isLocal() && plain && Files.isRegularFile(localPath(sourceFS, sourcePath))) {
+            FileChannel stdout = StandardStreams.outChannel();
+            if (stdout != null) {
+                try {
+                    return LocalTransfer.toStdout(localPath(sourceFS, sourcePath), stdout, counter(progress));
+                } catch (IOException e) {
+                    throw new XenonRuntimeException("file", e.getMessage(), e);
+                }
+            }
+        }
+        // stdout stays open, a pooled filesystem may outlive the command so the source stream is closed here
+        try (InputStream in = throttled(sourceFS.readFromFile(sourcePath), limiter)) {
+            if (options.isCompress()) {
+                return compress(in, StandardStreams.out(), progress);
+            }
+            return Utils.pipe(decompressed(in, options), counted(StandardStreams.out(), progress));
+        } catch (IOException e) {
+            throw new XenonRuntimeException("file", e.getMessage(), e);
+        }
+    }
+
+    private long copyFromSystemIn(Path targetPath, FileSystem targetFS, CopyMode copymode, Boolean recursive, CopyOptions options, CopyInput target, CopyProgress progress, BandwidthLimiter limiter) throws XenonException {
         if (CopyMode.REPLACE.equals(copymode) && targetFS.exists(targetPath)) {
             targetFS.delete(targetPath, recursive);
         }
-        InputStream in = System.in;
-        OutputStream out = targetFS.writeToFile(targetPath);
-        try {
-            return Utils.pipe(in, out);
+        boolean plain = !options.isCompress() && !options.isDecompress() && limiter == null;
+        if (target.isLocal() && plain && !targetFS.exists(targetPath)) {
+            FileChannel stdin = StandardStreams.inChannel();
+            if (stdin != null) {
+                try {
+                    return LocalTransfer.fromStdin(stdin, StandardStreams.in(), localPath(targetFS, targetPath), counter(progress));
+                } catch (IOException e) {
+                    throw new XenonRuntimeException("file", e.getMessage(), e);
+                }
+            }
+        }
+        InputStream in = throttled(StandardStreams.in(), limiter);
+        // stdin stays open, the target is closed so its tail is flushed also when the filesystem is kept open by the pool
+        try (OutputStream out = targetFS.writeToFile(targetPath)) {
+            if (options.isCompress()) {
+                return compress(in, out, progress);
+            }
+            return Utils.pipe(decompressed(in, options), counted(out, progress));
         } catch (IOException e) {
             throw new XenonRuntimeException("file", e.getMessage(), e);
         }
     }
 
+    /**
+     * Copy a single file through the client, so it can be compressed or decompressed on the way, its bandwidth can be limited
+     * and a local regular file is read memory mapped
+     *
+     * @param limiter Bandwidth limit or null when there is no limit
+     * @return Number of uncompressed bytes copied
+     */
+    private long copyThroughClient(Path sourcePath, FileSystem sourceFS, Path targetPath, FileSystem targetFS, CopyInput source, CopyInput target, CopyOptions options, CopyProgress progress, BandwidthLimiter limiter) throws XenonException {
+        CopyMode copymode = options.getCopymode();
+        if (targetFS.exists(targetPath)) {
+            if (CopyMode.IGNORE.equals(copymode)) {
+                return 0;
+            } else if (CopyMode.REPLACE.equals(copymode)) {
+                targetFS.delete(targetPath, false);
+            } else {
+                throw new PathAlreadyExistsException(target.getAdaptorName(), "Target file already exists: " + targetPath);
+            }
+        }
+        boolean mapped = source.isLocal() && Files.isRegularFile(localPath(sourceFS, sourcePath));
+        try (
+            InputStream in = throttled(mapped ? new MappedInputStream(localPath(sourceFS, sourcePath)) : sourceFS.readFromFile(sourcePath), limiter);
+            OutputStream out = targetFS.writeToFile(targetPath)
+        ) {
+            if (options.isCompress()) {
+                return compress(in, out, progress);
+            }
+            return Utils.pipe(decompressed(in, options), counted(out, progress));
+        } catch (IOException e) {
+            throw new XenonRuntimeException("file", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compress in to out and leave out open, on failure the deflating threads are stopped and no gzip trailer is written
+     *
+     * @return Number of uncompressed bytes copied
+     */
+    private static long compress(InputStream in, OutputStream out, CopyProgress progress) throws IOException {
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, Runtime.getRuntime().availableProcessors());
+        try {
+            long bytes = Utils.pipe(in, counted(gzip, progress));
+            gzip.finish();
+            return bytes;
+        } finally {
+            gzip.abort();
+        }
+    }
+
+    /**
+     * Inflating is sequential by nature, also in pigz, but it is fast enough to keep up with a network
+     */
+    private static InputStream decompressed(InputStream in, CopyOptions options) throws IOException {
+        if (options.isDecompress()) {
+            return new GZIPInputStream(in, DECOMPRESS_BUFFER_SIZE);
+        }
+        return in;
+    }
+
     @Override
     public CopyOutput run(Namespace res) throws XenonException {
         String adaptor = res.getString("adaptor");
@@ -98,8 +368,8 @@ public class CopyCommand extends XenonCommand {
         }
         String targetPath = res.getString("target_path");
         Credential targetCredential = buildCredential(res, "target_");
-        CopyMode copymode = res.get("copymode");
         Boolean recursive = res.getBoolean("recursive");
+        CopyOptions options = CopyOptions.of(res);
 
         Map<String, String> sourceProps = buildXenonProperties(res);
         Map<String, String> targetProps = buildTargetXenonProperties(res);
@@ -110,7 +380,7 @@ public class CopyCommand extends XenonCommand {
         CopyInput source = new CopyInput(adaptor, sourceLocation, sourcePath, sourceCredential, sourceProps);
         CopyInput target = new CopyInput(adaptor, targetLocation, targetPath, targetCredential, targetProps);
 
-        CopyOutput result = this.copy(source, target, recursive, copymode);
+        CopyOutput result = this.copy(source, target, recursive, options);
 
         if (target.isStream()) {
             return null;
@@ -0,0 +1,792 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.cli.Utils;
+import nl.esciencecenter.xenon.filesystems.CopyMode;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.InvalidPathException;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAlreadyExistsException;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+import static nl.esciencecenter.xenon.cli.Utils.pipe;
+
+/**
+ * Client side copy of a file or directory tree.
+ *
+ * The source is listed and target directories are created by the calling thread,
+ * files are copied by workers which each have their own connection to source and target location.
+ * A file which fails to copy is recorded as error and does not stop the copy of other files.
+ * A resumable copy records its progress in a {@link CopyJournal}, so a rerun skips completed files and appends to partial files.
+ */
+public class CopyEngine {
+    /**
+     * Number of files listed ahead of the workers
+     */
+    private static final int QUEUED_FILES_PER_WORKER = 64;
+    /**
+     * Number of bytes written between checkpoints in the journal
+     */
+    private static final long CHECKPOINT_INTERVAL = 16L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CopyInput source;
+    private final CopyInput target;
+    private final CopyOptions options;
+    private final CopyMode copymode;
+    private final int parallel;
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong filesCopied = new AtomicLong();
+    private final List<CopyError> errors = Collections.synchronizedList(new ArrayList<>());
+    private final TransferRate rate = new TransferRate();
+    private final AtomicLong filesVerified = new AtomicLong();
+    private final Verifier verifier;
+    private final BandwidthLimiter limiter;
+    /**
+     * Target directories of files of a manifest which are known to exist
+     */
+    private final Set<Path> targetDirectories = ConcurrentHashMap.newKeySet();
+    private CopyJournal journal = null;
+    private CopyProgress progress = null;
+
+    /**
+     * @param source Source file or directory
+     * @param target Target file or directory
+     * @param options Copy mode, number of files to copy at once and segmentation of large files
+     */
+    public CopyEngine(CopyInput source, CopyInput target, CopyOptions options) {
+        this.source = source;
+        this.target = target;
+        this.options = options;
+        this.copymode = options.getCopymode();
+        this.parallel = options.getParallel();
+        this.verifier = options.getVerify() == null ? null : new Verifier(options.getVerify(), source, target);
+        // shared by all workers and streams
+        this.limiter = options.getBwlimit() == null ? null : new BandwidthLimiter(options.getBwlimit());
+    }
+
+    /**
+     * @param recursive Whether source may be a directory
+     * @return Bytes and files copied and errors of files which failed to copy
+     * @throws XenonException when source can not be listed or target directory can not be created
+     */
+    public CopyOutput copy(boolean recursive) throws XenonException {
+        return run((sourceFS, sourcePath, targetFS, targetPath) -> {
+            PathAttributes attributes = sourceFS.getAttributes(sourcePath);
+            if (attributes.isDirectory() && !recursive) {
+                throw new InvalidPathException(source.getAdaptorName(), "Source path is a directory, use --recursive to copy it: " + sourcePath);
+            }
+            if (attributes.isDirectory()) {
+                copyDirectory(sourceFS, sourcePath, targetFS, targetPath);
+            } else {
+                if (progress != null) {
+                    progress.setBytesToCopy(attributes.getSize());
+                    progress.setFilesToCopy(1);
+                }
+                copyFiles(Collections.singletonList(new FileTask(attributes, targetPath, sourcePath.getFileNameAsString())));
+            }
+        });
+    }
+
+    /**
+     * Copy files chosen by selector from source directory to the same relative path in target directory
+     *
+     * @param selector Selects files to copy, target directories must be created by the selector
+     * @return Bytes and files copied and errors of files which failed to copy
+     * @throws XenonException when selector fails
+     */
+    public CopyOutput copy(FileSelector selector) throws XenonException {
+        return run((sourceFS, sourcePath, targetFS, targetPath) -> {
+            Iterator<PathAttributes> files = selector.select(sourceFS, sourcePath, targetFS, targetPath);
+            copyFiles(() -> new Iterator<FileTask>() {
+                @Override
+                public boolean hasNext() {
+                    return files.hasNext();
+                }
+
+                @Override
+                public FileTask next() {
+                    PathAttributes item = files.next();
+                    Path relative = sourcePath.relativize(item.getPath());
+                    return new FileTask(item, targetPath.resolve(relative), relative.toString());
+                }
+            });
+        });
+    }
+
+    /**
+     * Copy the files of a manifest, the calling thread reads it while workers copy the files.
+     * Each worker looks up its source files and creates missing target directories
+     *
+     * @param manifest Files to copy, relative paths are relative to source and target
+     * @return Bytes and files copied and errors of files which failed to copy and of lines which could not be parsed
+     * @throws XenonException when manifest can not be read
+     */
+    CopyOutput copy(FileManifest manifest) throws XenonException {
+        return run((sourceFS, sourcePath, targetFS, targetPath) -> {
+            try {
+                copyFiles(() -> new ManifestIterator(manifest, sourcePath, targetPath));
+            } catch (UncheckedIOException e) {
+                throw new XenonException(source.getAdaptorName(), "Unable to read list of files: " + e.getCause().getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Warn when the session pool can not open as many connections to a host as the copy would use,
+     * the other transfers then wait for a connection to be released
+     */
+    static void warnAboveSessionLimit(String arguments, int connections) {
+        int max = Utils.getSessionPool().getMaxSessionsPerHost();
+        if (connections > max) {
+            System.err.println("Warning: " + arguments + " use up to " + connections + " connections per host, but at most " + max
+                + " are open at once, the other transfers wait for a free connection");
+        }
+    }
+
+    /**
+     * Copy of source path to target path, given the filesystems and absolute paths
+     */
+    private interface Transfer {
+        void run(FileSystem sourceFS, Path sourcePath, FileSystem targetFS, Path targetPath) throws XenonException;
+    }
+
+    private CopyOutput run(Transfer transfer) throws XenonException {
+        if (parallel < 1) {
+            throw new XenonException(source.getAdaptorName(), "Parallel must be at least 1");
+        }
+        if (options.getStreams() < 1) {
+            throw new XenonException(source.getAdaptorName(), "Streams must be at least 1");
+        }
+        if (options.getSegmentSize() < 1) {
+            throw new XenonException(source.getAdaptorName(), "Segment size must be at least 1 byte");
+        }
+        // each worker has its own connection and segments of a file have a connection per stream
+        warnAboveSessionLimit("--parallel and --streams", options.getStreams() > 1 ? parallel * (1 + options.getStreams()) : parallel);
+        try (
+            Session<FileSystem> sourceSession = source.openFileSystem();
+            Session<FileSystem> targetSession = target.openFileSystem()
+        ) {
+            FileSystem sourceFS = sourceSession.get();
+            FileSystem targetFS = targetSession.get();
+            Path sourcePath = toAbsolutePath(sourceFS, source.getPath());
+            Path targetPath = toAbsolutePath(targetFS, target.getPath());
+            if (options.isResume()) {
+                journal = openJournal(sourcePath, targetPath);
+            }
+            progress = CopyProgress.start(options.getProgress());
+            boolean completed = false;
+            try {
+                transfer.run(sourceFS, sourcePath, targetFS, targetPath);
+                completed = true;
+            } finally {
+                if (progress != null) {
+                    progress.close();
+                }
+                if (journal != null) {
+                    closeJournal(completed);
+                }
+            }
+        }
+        if (verifier != null) {
+            return new CopyOutput(source, target, bytesCopied.get(), filesCopied.get(), new ArrayList<>(errors), verifier.getAlgorithm(), filesVerified.get());
+        }
+        return new CopyOutput(source, target, bytesCopied.get(), filesCopied.get(), new ArrayList<>(errors));
+    }
+
+    private CopyJournal openJournal(Path sourcePath, Path targetPath) throws XenonException {
+        String copy = source.getAdaptorName() + "://" + source.getLocation() + sourcePath + " -> " +
+            target.getAdaptorName() + "://" + target.getLocation() + targetPath;
+        java.nio.file.Path file = options.getJournal() == null ? CopyJournal.defaultFile(copy) : Paths.get(options.getJournal());
+        try {
+            return new CopyJournal(file, copy);
+        } catch (IOException e) {
+            throw new XenonException(source.getAdaptorName(), "Unable to open journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param completed Whether the transfer ran to its end, a journal of a copy which was cut short is kept like one with errors
+     */
+    private void closeJournal(boolean completed) throws XenonException {
+        try {
+            if (completed && errors.isEmpty()) {
+                journal.delete();
+            } else {
+                // kept for the next attempt
+                journal.close();
+            }
+        } catch (IOException e) {
+            throw new XenonException(source.getAdaptorName(), "Unable to close journal " + journal.getFile() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Path toAbsolutePath(FileSystem fs, Path path) {
+        if (path.isAbsolute()) {
+            return path;
+        }
+        // listed items are absolute, so they can only be made relative to an absolute path
+        return fs.getWorkingDirectory().resolve(path);
+    }
+
+    private void copyDirectory(FileSystem sourceFS, Path sourcePath, FileSystem targetFS, Path targetPath) throws XenonException {
+        if (targetFS.exists(targetPath)) {
+            // a resumed copy continues in the directory it created earlier, the copy mode applies to its files
+            if (journal == null && copymode == CopyMode.CREATE) {
+                throw new PathAlreadyExistsException(target.getAdaptorName(), "Target directory already exists: " + targetPath);
+            } else if (journal == null && copymode == CopyMode.IGNORE) {
+                return;
+            }
+        } else {
+            targetFS.createDirectories(targetPath);
+        }
+        Iterable<PathAttributes> listing = sourceFS.list(sourcePath, true);
+        // directories are listed before their content
+        Iterable<FileTask> files = () -> new FileTaskIterator(listing.iterator(), sourcePath, targetFS, targetPath);
+        copyFiles(files);
+    }
+
+    /**
+     * Target of each listed file, directories are created while iterating
+     */
+    private class FileTaskIterator implements Iterator<FileTask> {
+        private final Iterator<PathAttributes> listing;
+        private final Path sourcePath;
+        private final FileSystem targetFS;
+        private final Path targetPath;
+        private FileTask next;
+
+        FileTaskIterator(Iterator<PathAttributes> listing, Path sourcePath, FileSystem targetFS, Path targetPath) {
+            this.listing = listing;
+            this.sourcePath = sourcePath;
+            this.targetFS = targetFS;
+            this.targetPath = targetPath;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && listing.hasNext()) {
+                PathAttributes item = listing.next();
+                Path relative = sourcePath.relativize(item.getPath());
+                Path destination = targetPath.resolve(relative);
+                if (item.isDirectory()) {
+                    createDirectory(item.getPath(), destination);
+                } else {
+                    next = new FileTask(item, destination, relative.toString());
+                }
+            }
+            return next != null;
+        }
+
+        private void createDirectory(Path directory, Path destination) {
+            try {
+                if (!targetFS.exists(destination)) {
+                    targetFS.createDirectory(destination);
+                }
+            } catch (XenonException e) {
+                errors.add(new CopyError(directory.toString(), e.getMessage()));
+            }
+        }
+
+        @Override
+        public FileTask next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            FileTask task = next;
+            next = null;
+            return task;
+        }
+    }
+
+    /**
+     * Task of each entry of a manifest, of which the source is looked up by the worker
+     */
+    private class ManifestIterator implements Iterator<FileTask> {
+        private final FileManifest manifest;
+        private final Path sourcePath;
+        private final Path targetPath;
+        private FileTask next;
+
+        ManifestIterator(FileManifest manifest, Path sourcePath, Path targetPath) {
+            this.manifest = manifest;
+            this.sourcePath = sourcePath;
+            this.targetPath = targetPath;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && manifest.hasNext()) {
+                FileManifest.Entry entry = manifest.next();
+                if (entry.error != null) {
+                    errors.add(new CopyError("line " + entry.line, entry.error));
+                } else {
+                    next = new FileTask(resolve(sourcePath, entry.source), resolve(targetPath, entry.target), entry.source);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public FileTask next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            FileTask task = next;
+            next = null;
+            return task;
+        }
+    }
+
+    private static Path resolve(Path directory, String path) {
+        Path other = new Path(directory.getSeparator(), path);
+        return other.isAbsolute() ? other : directory.resolve(other);
+    }
+
+    private void copyFiles(Iterable<FileTask> files) throws XenonException {
+        BlockingQueue<FileTask> queue = new ArrayBlockingQueue<>(parallel * QUEUED_FILES_PER_WORKER);
+        List<Thread> workers = new ArrayList<>();
+        for (int slot = 0; slot < parallel; slot++) {
+            Thread worker = new Thread(new Worker(slot, queue), "xenon-copy-" + slot);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        try {
+            try {
+                for (FileTask file : files) {
+                    queue.put(file);
+                }
+            } finally {
+                for (int i = 0; i < parallel; i++) {
+                    queue.put(FileTask.DONE);
+                }
+                // also when listing failed, as the caller closes sessions, progress and journal the workers still use
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(Thread::interrupt);
+            throw new XenonException(source.getAdaptorName(), "Interrupted while copying", e);
+        }
+    }
+
+    /**
+     * Copies files from queue with own connections
+     */
+    private class Worker implements Runnable {
+        private final int slot;
+        private final BlockingQueue<FileTask> queue;
+        private Session<FileSystem> sourceSession;
+        private Session<FileSystem> targetSession;
+        private PipelinedChecksum checksum;
+
+        Worker(int slot, BlockingQueue<FileTask> queue) {
+            this.slot = slot;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                FileTask file = queue.take();
+                while (file != FileTask.DONE) {
+                    copy(file);
+                    file = queue.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeSessions();
+                if (checksum != null) {
+                    checksum.close();
+                }
+            }
+        }
+
+        private void copy(FileTask file) {
+            Path sourceFile = file.sourcePath;
+            try {
+                openSessions();
+                if (verifier != null && checksum == null) {
+                    checksum = new PipelinedChecksum(verifier.getAlgorithm());
+                }
+                if (file.source == null) {
+                    file = lookup(sourceSession.get(), file, targetSession.get());
+                    if (file == null) {
+                        return;
+                    }
+                }
+                long bytes = copyFile(sourceSession.get(), file, targetSession.get(), checksum, slot);
+                if (bytes >= 0) {
+                    bytesCopied.addAndGet(bytes);
+                    filesCopied.incrementAndGet();
+                    if (progress != null) {
+                        progress.fileCopied();
+                    }
+                }
+            } catch (XenonException | IOException e) {
+                errors.add(new CopyError(sourceFile.toString(), e.getMessage()));
+            } catch (RuntimeException e) {
+                // a worker which died would leave the listing blocked on a full queue
+                errors.add(new CopyError(sourceFile.toString(), e.getMessage() == null ? e.toString() : e.getMessage()));
+            }
+        }
+
+        private void openSessions() throws XenonException {
+            // sessions are opened by the worker, as the pool tracks which thread holds a session
+            if (sourceSession == null) {
+                sourceSession = source.openFileSystem(slot);
+            }
+            if (targetSession == null) {
+                targetSession = target.openFileSystem(slot);
+            }
+        }
+
+        private void closeSessions() {
+            for (Session<FileSystem> session : Arrays.asList(sourceSession, targetSession)) {
+                if (session != null) {
+                    try {
+                        session.close();
+                    } catch (XenonException e) {
+                        // files have been copied, so failing to disconnect is harmless
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up source of manifest entry and create directory of its target
+     *
+     * @return Task with attributes of source or null when source is a directory, which is created without its content like rsync
+     */
+    private FileTask lookup(FileSystem sourceFS, FileTask file, FileSystem targetFS) throws XenonException {
+        PathAttributes attributes = sourceFS.getAttributes(file.sourcePath);
+        if (attributes.isDirectory()) {
+            createTargetDirectory(targetFS, file.target);
+            return null;
+        }
+        createTargetDirectory(targetFS, file.target.getParent());
+        return new FileTask(attributes, file.target, file.name);
+    }
+
+    private void createTargetDirectory(FileSystem targetFS, Path directory) throws XenonException {
+        if (directory != null && !targetDirectories.contains(directory)) {
+            // one worker at a time, so a worker does not write into a directory which another worker is still creating
+            synchronized (targetDirectories) {
+                if (!targetDirectories.contains(directory)) {
+                    if (!targetFS.exists(directory)) {
+                        targetFS.createDirectories(directory);
+                    }
+                    targetDirectories.add(directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param checksum Hashes source while it is copied or null when copies are not verified
+     * @param slot Slot of the connections of the worker
+     * @return Number of bytes copied or -1 when target exists and is ignored or was completed by the copy which is resumed
+     */
+    private long copyFile(FileSystem sourceFS, FileTask file, FileSystem targetFS, PipelinedChecksum checksum, int slot) throws XenonException, IOException {
+        PathAttributes sourceFile = file.source;
+        Path targetFile = file.target;
+        boolean segmented = options.isSegmented(sourceFile.getSize()) && SegmentedTransfer.supports(target);
+        long segmentSize = segmented ? options.getSegmentSize() : 0;
+        CopyJournal.FileState resumed = resumedState(file, targetFS, segmentSize);
+        if (resumed != null && resumed.done) {
+            return -1;
+        }
+        if (sourceFile.isSymbolicLink()) {
+            long bytes = copySymbolicLink(sourceFS, sourceFile.getPath(), targetFS, targetFile);
+            if (journal != null && bytes >= 0) {
+                journal.started(file.name, sourceFile.getSize(), sourceFile.getLastModifiedTime());
+                journal.done(file.name);
+            }
+            return bytes;
+        }
+        if (resumed == null && isDeltaCandidate(sourceFile, targetFS, targetFile)) {
+            long bytes = copyDelta(sourceFS, file, targetFS);
+            if (bytes >= 0) {
+                return bytes;
+            }
+        }
+        if (resumed == null) {
+            if (journal != null && journal.get(file.name) != null) {
+                // written by the copy which is resumed, but the source changed since
+                deleteIfExists(targetFS, targetFile);
+            } else if (!prepareTarget(targetFS, targetFile)) {
+                return -1;
+            }
+            if (journal != null) {
+                journal.started(file.name, sourceFile.getSize(), sourceFile.getLastModifiedTime(), segmentSize);
+            }
+        } else if (!segmented) {
+            long offset = resumeOffset(resumed, sourceFile, targetFS, targetFile);
+            if (offset >= 0) {
+                return append(sourceFS, file, targetFS, offset);
+            }
+            // partial target which can not be appended to
+            deleteIfExists(targetFS, targetFile);
+            journal.started(file.name, sourceFile.getSize(), sourceFile.getLastModifiedTime());
+        }
+        long bytes;
+        String sourceChecksum = null;
+        long started = System.nanoTime();
+        if (segmented) {
+            // slots after those of the workers, so segments do not share connections with copies of other workers
+            int firstSlot = parallel + slot * options.getStreams();
+            bytes = new SegmentedTransfer(source, target, options, journal, file.name, limiter, firstSlot).copy(sourceFile, targetFile, resumed);
+            addProgress(bytes);
+        } else if (source.isLocal() && target.isLocal() && journal == null && checksum == null && limiter == null) {
+            // target was prepared above
+            bytes = LocalTransfer.copy(Paths.get(sourceFile.getPath().toString()), Paths.get(targetFile.toString()), false, this::addProgress);
+        } else {
+            try (
+                InputStream in = throttled(SegmentedTransfer.openAt(source, sourceFS, sourceFile.getPath(), 0));
+                OutputStream targetOut = counted(targetFS.writeToFile(targetFile, sourceFile.getSize()));
+                OutputStream out = checksum == null ? targetOut : checksum.wrap(targetOut)
+            ) {
+                bytes = journal == null ? pipe(in, out) : transfer(in, out, file.name, 0);
+            }
+            if (checksum != null) {
+                sourceChecksum = checksum.finish();
+            }
+        }
+        rate.record(bytes, System.nanoTime() - started);
+        completed(sourceFS, file, targetFS, sourceChecksum);
+        return bytes;
+    }
+
+    private boolean isDeltaCandidate(PathAttributes sourceFile, FileSystem targetFS, Path targetFile) throws XenonException {
+        if (!options.isDelta() || copymode != CopyMode.REPLACE || !DeltaTransfer.supports(source, target)) {
+            return false;
+        }
+        if (!DeltaTransfer.isWorthwhile(sourceFile.getSize(), rate.getBytesPerSecond())) {
+            return false;
+        }
+        return targetFS.exists(targetFile) && targetFS.getAttributes(targetFile).isRegular();
+    }
+
+    /**
+     * @return Number of bytes sent or -1 when the delta failed and the file should be copied in full
+     */
+    private long copyDelta(FileSystem sourceFS, FileTask file, FileSystem targetFS) throws XenonException, IOException {
+        if (journal != null) {
+            journal.started(file.name, file.source.getSize(), file.source.getLastModifiedTime());
+        }
+        long bytes;
+        try {
+            bytes = new DeltaTransfer(target, limiter).copy(targetFS, file.source, file.target);
+        } catch (XenonException | IOException e) {
+            // for example no GNU coreutils on target host, the target is left as it was
+            return -1;
+        }
+        addProgress(bytes);
+        completed(sourceFS, file, targetFS, null);
+        return bytes;
+    }
+
+    /**
+     * @param sourceChecksum Checksum of source computed while copying or null when it has to be read again for verification
+     */
+    private void completed(FileSystem sourceFS, FileTask file, FileSystem targetFS, String sourceChecksum) throws XenonException, IOException {
+        if (verifier != null) {
+            verifier.verify(sourceFS, file.source.getPath(), targetFS, file.target, sourceChecksum);
+            filesVerified.incrementAndGet();
+        }
+        if (options.isPreserveModified() && target.isLocal()) {
+            // Xenon filesystems have no way to set the time of a remote file
+            Files.setLastModifiedTime(Paths.get(file.target.toString()), FileTime.fromMillis(file.source.getLastModifiedTime()));
+        }
+        if (journal != null) {
+            journal.done(file.name);
+        }
+    }
+
+    /**
+     * @param segmentSize Size of segments of this copy of the file, 0 when it is copied as a whole
+     * @return Progress of file by the copy which is resumed or null when the file has to be copied from the start
+     */
+    private CopyJournal.FileState resumedState(FileTask file, FileSystem targetFS, long segmentSize) throws XenonException {
+        if (journal == null) {
+            return null;
+        }
+        CopyJournal.FileState state = journal.get(file.name);
+        if (state == null || !state.matches(file.source.getSize(), file.source.getLastModifiedTime())) {
+            // not started or source changed since
+            return null;
+        }
+        if (!state.done && state.segmentSize != segmentSize) {
+            // done segments cover other byte ranges, and a partial segmented target has holes instead of a confirmed prefix
+            return null;
+        }
+        if (target.isLocal() || state.done) {
+            // a local segmented target is written in place and a completed target must still be there
+            return targetFS.exists(file.target) ? state : null;
+        }
+        return state;
+    }
+
+    /**
+     * @return Size of partial target to continue from or -1 when it can not be appended to
+     */
+    private static long resumeOffset(CopyJournal.FileState resumed, PathAttributes sourceFile, FileSystem targetFS, Path targetFile) throws XenonException {
+        if (!targetFS.exists(targetFile)) {
+            return -1;
+        }
+        PathAttributes partial = targetFS.getAttributes(targetFile);
+        // bytes up to the checkpoint were confirmed, the rest were written but not yet journalled
+        if (!partial.isRegular() || partial.getSize() < resumed.offset || partial.getSize() > sourceFile.getSize()) {
+            return -1;
+        }
+        return partial.getSize();
+    }
+
+    private static void deleteIfExists(FileSystem targetFS, Path targetFile) throws XenonException {
+        if (targetFS.exists(targetFile)) {
+            targetFS.delete(targetFile, false);
+        }
+    }
+
+    private long append(FileSystem sourceFS, FileTask file, FileSystem targetFS, long offset) throws XenonException, IOException {
+        try (
+            InputStream in = throttled(SegmentedTransfer.openAt(source, sourceFS, file.source.getPath(), offset));
+            OutputStream out = counted(targetFS.appendToFile(file.target))
+        ) {
+            transfer(in, out, file.name, offset);
+        }
+        completed(sourceFS, file, targetFS, null);
+        return file.source.getSize() - offset;
+    }
+
+    /**
+     * @return Stream which reports bytes written to it as progress
+     */
+    private OutputStream counted(OutputStream out) {
+        return progress == null ? out : progress.wrap(out);
+    }
+
+    /**
+     * @return Stream which is read no faster than the bandwidth limit
+     */
+    private InputStream throttled(InputStream in) {
+        return limiter == null ? in : limiter.wrap(in);
+    }
+
+    /**
+     * Report bytes copied without a stream which counts them
+     */
+    private void addProgress(long bytes) {
+        if (progress != null) {
+            progress.addBytes(bytes);
+        }
+    }
+
+    /**
+     * Copy stream and record a checkpoint in the journal every {@link #CHECKPOINT_INTERVAL} bytes
+     *
+     * @param offset Number of bytes of file already in target
+     * @return Number of bytes copied
+     */
+    private long transfer(InputStream in, OutputStream out, String name, long offset) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = offset;
+        long checkpoint = offset + CHECKPOINT_INTERVAL;
+        int read = in.read(buffer);
+        while (read != -1) {
+            out.write(buffer, 0, read);
+            position += read;
+            if (position >= checkpoint) {
+                // only bytes which left the client count as confirmed
+                out.flush();
+                journal.checkpoint(name, position);
+                checkpoint = position + CHECKPOINT_INTERVAL;
+            }
+            read = in.read(buffer);
+        }
+        return position - offset;
+    }
+
+    private long copySymbolicLink(FileSystem sourceFS, Path sourceLink, FileSystem targetFS, Path targetLink) throws XenonException {
+        if (!prepareTarget(targetFS, targetLink)) {
+            return -1;
+        }
+        targetFS.createSymbolicLink(targetLink, sourceFS.readSymbolicLink(sourceLink));
+        return 0;
+    }
+
+    /**
+     * @return false when existing target should be left alone
+     */
+    private boolean prepareTarget(FileSystem targetFS, Path targetFile) throws XenonException {
+        if (targetFS.exists(targetFile)) {
+            if (copymode == CopyMode.CREATE) {
+                throw new PathAlreadyExistsException(target.getAdaptorName(), "Target file already exists: " + targetFile);
+            } else if (copymode == CopyMode.IGNORE) {
+                return false;
+            }
+            targetFS.delete(targetFile, false);
+        }
+        return true;
+    }
+
+    /**
+     * Source file and where to copy it to
+     */
+    private static class FileTask {
+        /**
+         * Signals worker to stop
+         */
+        static final FileTask DONE = new FileTask((PathAttributes) null, null, null);
+
+        /**
+         * Attributes of source or null when the worker has to look them up
+         */
+        final PathAttributes source;
+        final Path sourcePath;
+        final Path target;
+        /**
+         * Path relative to copy source, which identifies the file in the journal
+         */
+        final String name;
+
+        FileTask(PathAttributes source, Path target, String name) {
+            this.source = source;
+            this.sourcePath = source == null ? null : source.getPath();
+            this.target = target;
+            this.name = name;
+        }
+
+        FileTask(Path sourcePath, Path target, String name) {
+            this.source = null;
+            this.sourcePath = sourcePath;
+            this.target = target;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+/**
+ * Path which failed to copy
+ */
+public class CopyError {
+    public final String path;
+    public final String error;
+
+    CopyError(String path, String error) {
+        this.path = path;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Failed to copy '%s': %s", path, error);
+    }
+}
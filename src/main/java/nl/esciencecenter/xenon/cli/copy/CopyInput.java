@@ -3,6 +3,8 @@ package nl.esciencecenter.xenon.cli.copy;
 import java.util.Map;
 
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.cli.Utils;
 import nl.esciencecenter.xenon.credentials.Credential;
 import nl.esciencecenter.xenon.filesystems.FileSystem;
 import nl.esciencecenter.xenon.filesystems.Path;
@@ -51,7 +53,7 @@ public class CopyInput {
         return stream;
     }
 
-    private Map<String, String> getProperties() {
+    Map<String, String> getProperties() {
         return properties;
     }
 
@@ -66,4 +68,17 @@ public class CopyInput {
     public FileSystem getFileSystem() throws XenonException {
         return FileSystem.create(getAdaptorName(), getLocation(), getCredential(), getProperties());
     }
+
+    public Session<FileSystem> openFileSystem() throws XenonException {
+        return Utils.openFileSystem(getAdaptorName(), getLocation(), getCredential(), getProperties());
+    }
+
+    /**
+     * @param slot Slot of connection, each slot is a separate connection to the location
+     * @return Session which must be closed when done with the filesystem
+     * @throws XenonException when filesystem could not be created
+     */
+    public Session<FileSystem> openFileSystem(int slot) throws XenonException {
+        return Utils.openFileSystem(getAdaptorName(), getLocation(), getCredential(), getProperties(), slot);
+    }
 }
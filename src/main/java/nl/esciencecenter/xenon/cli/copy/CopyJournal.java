@@ -0,0 +1,272 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Append-only record of the progress of a copy, so an interrupted copy can be resumed.
+ *
+ * Each line is a JSON object about a file relative to the copy source:
+ * `started` with size and last modified time of the source and the segment size of a segmented copy,
+ * a `checkpoint` with a confirmed byte offset, a completed `segment` of a segmented file and `done`.
+ * A line which was cut off when the copy was interrupted is ignored and removed before new lines are appended.
+ */
+class CopyJournal implements Closeable {
+    private static final String STARTED = "started";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String SEGMENT = "segment";
+    private static final String DONE = "done";
+
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final Map<String, FileState> files = new HashMap<>();
+    private final Writer writer;
+
+    /**
+     * Line of journal, fields which do not apply to the event are left out
+     */
+    private static class Record {
+        String copy;
+        String file;
+        String event;
+        Long size;
+        Long modified;
+        Long segmentSize;
+        Long offset;
+        Long segment;
+    }
+
+    /**
+     * Progress of a file according to the journal
+     */
+    static class FileState {
+        long size;
+        long modified;
+        /**
+         * Size of the segments which are done, 0 when the file was copied as a whole
+         */
+        long segmentSize;
+        long offset;
+        boolean done;
+        final BitSet segments = new BitSet();
+
+        /**
+         * @return Whether source file is unchanged since the journalled copy started
+         */
+        boolean matches(long sourceSize, long sourceModified) {
+            return size == sourceSize && modified == sourceModified;
+        }
+    }
+
+    /**
+     * @param file Journal file, created when it does not exist
+     * @param copy Identity of source and target, a journal of another copy is refused
+     * @throws IOException when journal can not be read or written or belongs to another copy
+     */
+    CopyJournal(Path file, String copy) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            read(copy);
+            truncateTornLine();
+        } else if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+        writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (isNew) {
+            Record header = new Record();
+            header.copy = copy;
+            append(header);
+        }
+    }
+
+    /**
+     * Default journal location for a copy, in `~/.xenon/journals`
+     */
+    static Path defaultFile(String copy) {
+        return Paths.get(System.getProperty("user.home"), ".xenon", "journals", sha256(copy) + ".jsonl");
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    private void read(String copy) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            boolean first = true;
+            while (line != null) {
+                Record record = parse(line);
+                if (first && record != null && record.copy != null && !record.copy.equals(copy)) {
+                    throw new IOException("Journal " + file + " belongs to another copy: " + record.copy);
+                }
+                first = false;
+                if (record != null && record.file != null) {
+                    apply(record);
+                }
+                line = reader.readLine();
+            }
+        }
+    }
+
+    /**
+     * Remove a last line without newline, otherwise the first record appended would be glued to it and lost on the next resume
+     */
+    private void truncateTornLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long position = end;
+            while (position > 0) {
+                int length = (int) Math.min(buffer.capacity(), position);
+                position -= length;
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) != -1) {
+                    // read whole block
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        if (position + i + 1 < end) {
+                            channel.truncate(position + i + 1);
+                        }
+                        return;
+                    }
+                }
+            }
+            channel.truncate(0);
+        }
+    }
+
+    private Record parse(String line) {
+        try {
+            return gson.fromJson(line, Record.class);
+        } catch (JsonParseException e) {
+            // last line is incomplete when the copy was interrupted while writing it
+            return null;
+        }
+    }
+
+    private void apply(Record record) {
+        if (STARTED.equals(record.event)) {
+            FileState state = new FileState();
+            state.size = record.size == null ? -1 : record.size;
+            state.modified = record.modified == null ? -1 : record.modified;
+            state.segmentSize = record.segmentSize == null ? 0 : record.segmentSize;
+            files.put(record.file, state);
+            return;
+        }
+        FileState state = files.get(record.file);
+        if (state == null) {
+            return;
+        }
+        if (CHECKPOINT.equals(record.event) && record.offset != null) {
+            state.offset = Math.max(state.offset, record.offset);
+        } else if (SEGMENT.equals(record.event) && record.segment != null) {
+            state.segments.set(Math.toIntExact(record.segment));
+        } else if (DONE.equals(record.event)) {
+            state.done = true;
+        }
+    }
+
+    /**
+     * @param file Path relative to copy source
+     * @return Progress of file in an earlier run or null when it was not started
+     */
+    FileState get(String file) {
+        return files.get(file);
+    }
+
+    void started(String file, long size, long modified) throws IOException {
+        started(file, size, modified, 0);
+    }
+
+    /**
+     * @param segmentSize Size of the segments of a segmented copy, 0 when the file is copied as a whole
+     */
+    void started(String file, long size, long modified, long segmentSize) throws IOException {
+        Record record = record(file, STARTED);
+        record.size = size;
+        record.modified = modified;
+        if (segmentSize > 0) {
+            record.segmentSize = segmentSize;
+        }
+        append(record);
+    }
+
+    /**
+     * @param offset Number of bytes of file which have been written to the target
+     */
+    void checkpoint(String file, long offset) throws IOException {
+        Record record = record(file, CHECKPOINT);
+        record.offset = offset;
+        append(record);
+    }
+
+    void segmentDone(String file, long segment) throws IOException {
+        Record record = record(file, SEGMENT);
+        record.segment = segment;
+        append(record);
+    }
+
+    void done(String file) throws IOException {
+        append(record(file, DONE));
+    }
+
+    private static Record record(String file, String event) {
+        Record record = new Record();
+        record.file = file;
+        record.event = event;
+        return record;
+    }
+
+    private synchronized void append(Record record) throws IOException {
+        writer.write(gson.toJson(record));
+        writer.write('\n');
+        // a line is only useful when it survives the process
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Close and remove journal, after the copy has completed
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,283 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import nl.esciencecenter.xenon.filesystems.CopyMode;
+
+/**
+ * Options of a copy command
+ */
+public class CopyOptions {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_SEGMENT_THRESHOLD = 1024L * 1024 * 1024;
+    public static final long DEFAULT_BUNDLE_SIZE = 64L * 1024 * 1024;
+
+    private CopyMode copymode = CopyMode.CREATE;
+    private Integer parallel = null;
+    private int streams = 1;
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+    private boolean resume = false;
+    private String journal = null;
+    private boolean preserveModified = false;
+    private boolean delta = false;
+    private String verify = null;
+    private boolean compress = false;
+    private boolean decompress = false;
+    private String progress = null;
+    private BandwidthSchedule bwlimit = null;
+    private String filesFrom = null;
+    private boolean bundle = false;
+    private long bundleSize = DEFAULT_BUNDLE_SIZE;
+
+    /**
+     * @param res Parsed arguments of copy, upload or download command
+     * @return Options from arguments
+     */
+    public static CopyOptions of(Namespace res) {
+        CopyOptions options = new CopyOptions();
+        CopyMode copymode = res.get("copymode");
+        if (copymode != null) {
+            options.copymode = copymode;
+        }
+        options.parallel = res.getInt("parallel");
+        Integer streams = res.getInt("streams");
+        if (streams != null) {
+            options.streams = streams;
+        }
+        Long segmentSize = res.getLong("segment_size");
+        if (segmentSize != null) {
+            options.segmentSize = segmentSize;
+        }
+        Long segmentThreshold = res.getLong("segment_threshold");
+        if (segmentThreshold != null) {
+            options.segmentThreshold = segmentThreshold;
+        }
+        options.resume = Boolean.TRUE.equals(res.getBoolean("resume"));
+        options.journal = res.getString("journal");
+        options.delta = Boolean.TRUE.equals(res.getBoolean("delta"));
+        options.verify = res.getString("verify");
+        options.compress = Boolean.TRUE.equals(res.getBoolean("compress"));
+        options.decompress = Boolean.TRUE.equals(res.getBoolean("decompress"));
+        options.progress = res.getString("progress");
+        options.filesFrom = res.getString("files_from");
+        options.bundle = Boolean.TRUE.equals(res.getBoolean("bundle"));
+        Long bundleSize = res.getLong("bundle_size");
+        if (bundleSize != null) {
+            options.bundleSize = bundleSize;
+        }
+        BandwidthSchedule bwlimit = res.get("bwlimit");
+        if (bwlimit != null && !bwlimit.isUnlimited()) {
+            options.bwlimit = bwlimit;
+        }
+        return options;
+    }
+
+    public CopyMode getCopymode() {
+        return copymode;
+    }
+
+    public CopyOptions setCopymode(CopyMode copymode) {
+        this.copymode = copymode;
+        return this;
+    }
+
+    /**
+     * @return Number of files to copy at once
+     */
+    public int getParallel() {
+        return parallel == null ? 1 : parallel;
+    }
+
+    public CopyOptions setParallel(Integer parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @return Number of connections to copy segments of a large file with
+     */
+    public int getStreams() {
+        return streams;
+    }
+
+    public CopyOptions setStreams(int streams) {
+        this.streams = streams;
+        return this;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public CopyOptions setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * @return Minimum file size in bytes to copy in segments
+     */
+    public long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    public CopyOptions setSegmentThreshold(long segmentThreshold) {
+        this.segmentThreshold = segmentThreshold;
+        return this;
+    }
+
+    /**
+     * @return Whether to record progress in a journal and continue from an earlier interrupted copy
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public CopyOptions setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * @return Journal file of resumable copy or null for a file in `~/.xenon/journals` named after source and target
+     */
+    public String getJournal() {
+        return journal;
+    }
+
+    public CopyOptions setJournal(String journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * @return Whether to set last modified time of a local target file to the time of its source
+     */
+    public boolean isPreserveModified() {
+        return preserveModified;
+    }
+
+    public CopyOptions setPreserveModified(boolean preserveModified) {
+        this.preserveModified = preserveModified;
+        return this;
+    }
+
+    /**
+     * @return Whether to send only the differences of a local file replacing a large file on a sftp location
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public CopyOptions setDelta(boolean delta) {
+        this.delta = delta;
+        return this;
+    }
+
+    /**
+     * @return Checksum algorithm to verify copied files with, crc32c or sha256, or null to not verify
+     */
+    public String getVerify() {
+        return verify;
+    }
+
+    public CopyOptions setVerify(String verify) {
+        this.verify = verify;
+        return this;
+    }
+
+    /**
+     * @return Whether to gzip the bytes written to the target
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public CopyOptions setCompress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * @return Whether to gunzip the bytes read from the source
+     */
+    public boolean isDecompress() {
+        return decompress;
+    }
+
+    public CopyOptions setDecompress(boolean decompress) {
+        this.decompress = decompress;
+        return this;
+    }
+
+    /**
+     * @return Format of progress reported on stderr, text or jsonl, or null when no progress is reported
+     */
+    public String getProgress() {
+        return progress;
+    }
+
+    public CopyOptions setProgress(String progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * @return Bandwidth limit of all streams of the copy together or null when there is no limit
+     */
+    public BandwidthSchedule getBwlimit() {
+        return bwlimit;
+    }
+
+    public CopyOptions setBwlimit(BandwidthSchedule bwlimit) {
+        this.bwlimit = bwlimit;
+        return this;
+    }
+
+    /**
+     * @return File with list of files to copy, `-` for stdin, or null when source is copied
+     */
+    public String getFilesFrom() {
+        return filesFrom;
+    }
+
+    public CopyOptions setFilesFrom(String filesFrom) {
+        this.filesFrom = filesFrom;
+        return this;
+    }
+
+    /**
+     * @return Whether to upload a directory as tar archives which are extracted on the host of a sftp target
+     */
+    public boolean isBundle() {
+        return bundle;
+    }
+
+    public CopyOptions setBundle(boolean bundle) {
+        this.bundle = bundle;
+        return this;
+    }
+
+    /**
+     * @return Size in bytes at which a tar archive of a bundled upload is cut off and the next one started
+     */
+    public long getBundleSize() {
+        return bundleSize;
+    }
+
+    public CopyOptions setBundleSize(long bundleSize) {
+        this.bundleSize = bundleSize;
+        return this;
+    }
+
+    /**
+     * @return Whether the client side copy engine is needed instead of the copy of the adaptor
+     */
+    boolean usesEngine() {
+        return parallel != null || streams > 1 || resume || delta || verify != null || filesFrom != null;
+    }
+
+    boolean isSegmented(long size) {
+        return streams > 1 && size >= segmentThreshold && size > segmentSize;
+    }
+}
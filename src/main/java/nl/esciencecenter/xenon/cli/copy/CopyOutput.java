@@ -1,17 +1,43 @@
 package nl.esciencecenter.xenon.cli.copy;
 
+import java.util.List;
+
+import nl.esciencecenter.xenon.cli.PartialFailure;
+
 /**
  * Results of a copy command
  */
-public class CopyOutput {
+public class CopyOutput implements PartialFailure {
     private final CopyInput target;
     private final CopyInput source;
     private final long bytesCopied;
+    /**
+     * Only set by copy engine
+     */
+    private final Long filesCopied;
+    private final List<CopyError> errors;
+    /**
+     * Only set when copied files are verified
+     */
+    private final String verify;
+    private final Long filesVerified;
 
     CopyOutput(CopyInput source, CopyInput target, long bytesCopied) {
+        this(source, target, bytesCopied, null, null);
+    }
+
+    CopyOutput(CopyInput source, CopyInput target, long bytesCopied, Long filesCopied, List<CopyError> errors) {
+        this(source, target, bytesCopied, filesCopied, errors, null, null);
+    }
+
+    CopyOutput(CopyInput source, CopyInput target, long bytesCopied, Long filesCopied, List<CopyError> errors, String verify, Long filesVerified) {
         this.source = source;
         this.target = target;
         this.bytesCopied = bytesCopied;
+        this.filesCopied = filesCopied;
+        this.errors = errors;
+        this.verify = verify;
+        this.filesVerified = filesVerified;
     }
 
     @Override
@@ -24,7 +50,20 @@ public class CopyOutput {
         if (target.isLocal() && targetLocation == null) {
             targetLocation = "file";
         }
-        return String.format("Copied '%s' from location '%s' to '%s' at location '%s', %d bytes copied", source.getPath(), sourceLocation, target.getPath(), targetLocation, bytesCopied);
+        StringBuilder sb = new StringBuilder(String.format("Copied '%s' from location '%s' to '%s' at location '%s', %d bytes copied", source.getPath(), sourceLocation, target.getPath(), targetLocation, bytesCopied));
+        if (filesCopied != null) {
+            sb.append(String.format(" in %d files", filesCopied));
+        }
+        if (filesVerified != null) {
+            sb.append(String.format(", %d files verified with %s", filesVerified, verify));
+        }
+        if (errors != null) {
+            String sep = System.getProperty("line.separator");
+            for (CopyError error : errors) {
+                sb.append(sep).append(error);
+            }
+        }
+        return sb.toString();
     }
 
     public CopyInput getTarget() {
@@ -34,4 +73,34 @@ public class CopyOutput {
     public CopyInput getSource() {
         return source;
     }
+
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    /**
+     * @return Number of files copied or null when copied by the adaptor
+     */
+    public Long getFilesCopied() {
+        return filesCopied;
+    }
+
+    /**
+     * @return Number of files whose checksum matched their source or null when copied files were not verified
+     */
+    public Long getFilesVerified() {
+        return filesVerified;
+    }
+
+    public List<CopyError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String getFailure() {
+        if (errors == null || errors.isEmpty()) {
+            return null;
+        }
+        return errors.size() + " paths failed to copy";
+    }
 }
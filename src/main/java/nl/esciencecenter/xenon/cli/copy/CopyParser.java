@@ -1,6 +1,11 @@
 package nl.esciencecenter.xenon.cli.copy;
 
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addBandwidthLimitArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCompressionArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyEngineArguments;
 import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyModeArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addFilesFromArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addProgressArguments;
 import static nl.esciencecenter.xenon.cli.ParserHelpers.addTargetCredentialArguments;
 import static nl.esciencecenter.xenon.cli.ParserHelpers.getSupportedLocationHelp;
 import static nl.esciencecenter.xenon.utils.LocalFileSystemUtils.isWindows;
@@ -68,6 +73,11 @@ public class CopyParser implements IParser {
 
         subparser.addArgument("--recursive").help("Copy directories recursively").action(Arguments.storeTrue());
         addCopyModeArguments(subparser);
+        addCopyEngineArguments(subparser);
+        addCompressionArguments(subparser);
+        addFilesFromArguments(subparser);
+        addBandwidthLimitArguments(subparser);
+        addProgressArguments(subparser);
         return subparser;
     }
 
@@ -0,0 +1,230 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.esciencecenter.xenon.cli.JsonLinesWriter;
+
+import static nl.esciencecenter.xenon.cli.SizeArgumentType.formatSize;
+
+/**
+ * Reports progress of a copy on stderr every second, as a line of text or as a JSON line which tools can watch for stalls.
+ *
+ * Progress is fed by the copy, bytes as they are written or as polled from the copy status of the adaptor.
+ * The total number of bytes and files is only known for some copies, the ETA is left out otherwise.
+ */
+class CopyProgress implements AutoCloseable {
+    static final String TEXT = "text";
+    static final String JSONL = "jsonl";
+    private static final long INTERVAL_MILLIS = 1000;
+    /**
+     * Number of reports the average rate is computed over
+     */
+    private static final int AVERAGE_REPORTS = 10;
+
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong filesCopied = new AtomicLong();
+    private volatile long bytesToCopy = -1;
+    private volatile long filesToCopy = -1;
+
+    private final PrintStream err;
+    private final JsonLinesWriter jsonl;
+    private final boolean overwrite;
+    private final ScheduledExecutorService timer;
+
+    // bytes and times of the last reports, oldest first
+    private final long[] reportBytes = new long[AVERAGE_REPORTS + 1];
+    private final long[] reportTimes = new long[AVERAGE_REPORTS + 1];
+    private int reports = 0;
+    private long lastChange;
+    private boolean closed = false;
+
+    /**
+     * Progress event written as JSON line, fields which are unknown are left out
+     */
+    static class Event {
+        String event;
+        long time;
+        long bytesCopied;
+        Long bytesToCopy;
+        long filesCopied;
+        Long filesToCopy;
+        long bytesPerSecond;
+        long averageBytesPerSecond;
+        Long etaSeconds;
+        long stalledSeconds;
+    }
+
+    /**
+     * @param format {@link #TEXT} or {@link #JSONL}
+     * @param err Stream to report on
+     * @param interactive Whether a text report replaces the previous one on the same line
+     * @param started Time in nanoseconds at which the copy started
+     */
+    CopyProgress(String format, PrintStream err, boolean interactive, long started) {
+        this.err = err;
+        this.jsonl = JSONL.equals(format) ? new JsonLinesWriter(err) : null;
+        this.overwrite = jsonl == null && interactive;
+        reportTimes[0] = started;
+        lastChange = started;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "xenon-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param format Format of `--progress` or null when progress is not reported
+     * @return Started reporter on stderr or null
+     */
+    static CopyProgress start(String format) {
+        if (format == null) {
+            return null;
+        }
+        CopyProgress progress = new CopyProgress(format, System.err, System.console() != null, System.nanoTime());
+        progress.timer.scheduleAtFixedRate(() -> progress.report("progress"), INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return progress;
+    }
+
+    void addBytes(long bytes) {
+        bytesCopied.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes Number of bytes copied so far, for copies which are polled
+     */
+    void setBytesCopied(long bytes) {
+        bytesCopied.set(bytes);
+    }
+
+    void setBytesToCopy(long bytes) {
+        bytesToCopy = bytes;
+    }
+
+    void fileCopied() {
+        filesCopied.incrementAndGet();
+    }
+
+    void setFilesToCopy(long files) {
+        filesToCopy = files;
+    }
+
+    /**
+     * @return Stream which counts bytes written to out as copied
+     */
+    OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                addBytes(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                addBytes(len);
+            }
+        };
+    }
+
+    synchronized Event report(String name) {
+        if (closed) {
+            return null;
+        }
+        Event event = sample(name, System.nanoTime());
+        if (jsonl != null) {
+            jsonl.write(event);
+        } else {
+            String line = format(event);
+            if (overwrite) {
+                // pad over the end of a longer previous line
+                err.print(String.format("\r%-79s", line));
+                if ("done".equals(name)) {
+                    err.println();
+                }
+            } else {
+                err.println(line);
+            }
+            err.flush();
+        }
+        return event;
+    }
+
+    Event sample(String name, long now) {
+        long bytes = bytesCopied.get();
+        int last = Math.min(reports, AVERAGE_REPORTS);
+        if (bytes != reportBytes[last]) {
+            lastChange = now;
+        }
+        if (reports >= AVERAGE_REPORTS) {
+            System.arraycopy(reportBytes, 1, reportBytes, 0, AVERAGE_REPORTS);
+            System.arraycopy(reportTimes, 1, reportTimes, 0, AVERAGE_REPORTS);
+        }
+        reports++;
+        int current = Math.min(reports, AVERAGE_REPORTS);
+        reportBytes[current] = bytes;
+        reportTimes[current] = now;
+
+        Event event = new Event();
+        event.event = name;
+        event.time = System.currentTimeMillis();
+        event.bytesCopied = bytes;
+        event.bytesToCopy = bytesToCopy < 0 ? null : bytesToCopy;
+        event.filesCopied = filesCopied.get();
+        event.filesToCopy = filesToCopy < 0 ? null : filesToCopy;
+        event.bytesPerSecond = rate(reportBytes[current - 1], reportTimes[current - 1], bytes, now);
+        event.averageBytesPerSecond = rate(reportBytes[0], reportTimes[0], bytes, now);
+        if (bytesToCopy >= 0 && event.averageBytesPerSecond > 0) {
+            event.etaSeconds = Math.max(0, bytesToCopy - bytes) / event.averageBytesPerSecond;
+        }
+        event.stalledSeconds = TimeUnit.NANOSECONDS.toSeconds(now - lastChange);
+        return event;
+    }
+
+    private static long rate(long fromBytes, long fromTime, long toBytes, long toTime) {
+        long nanos = toTime - fromTime;
+        return nanos <= 0 ? 0 : (long) ((toBytes - fromBytes) * 1e9 / nanos);
+    }
+
+    static String format(Event event) {
+        StringBuilder sb = new StringBuilder(formatSize(event.bytesCopied));
+        if (event.bytesToCopy != null) {
+            sb.append(" of ").append(formatSize(event.bytesToCopy));
+        }
+        sb.append(", ").append(formatSize(event.bytesPerSecond)).append("/s");
+        sb.append(" (average ").append(formatSize(event.averageBytesPerSecond)).append("/s)");
+        if (event.filesToCopy != null) {
+            sb.append(", ").append(event.filesCopied).append('/').append(event.filesToCopy).append(" files");
+        } else if (event.filesCopied > 0) {
+            sb.append(", ").append(event.filesCopied).append(" files");
+        }
+        if (event.etaSeconds != null && !"done".equals(event.event)) {
+            long eta = event.etaSeconds;
+            sb.append(String.format(", ETA %d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60));
+        }
+        if (event.stalledSeconds >= 10 && !"done".equals(event.event)) {
+            sb.append(", stalled for ").append(event.stalledSeconds).append("s");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stop reporting, with a final report
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        report("done");
+        synchronized (this) {
+            closed = true;
+        }
+    }
+}
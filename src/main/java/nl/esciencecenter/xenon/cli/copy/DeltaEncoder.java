@@ -0,0 +1,166 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes a new file as blocks of an old file and literal bytes, like rsync.
+ *
+ * A window of a block is moved over the new file, at each offset its rolling checksum is looked up in the signatures of the old file.
+ * When a block matches the window jumps over it, otherwise the first byte of the window is a literal.
+ */
+class DeltaEncoder {
+    private final BlockSignatures signatures;
+    private final int blockSize;
+    private final MessageDigest blockDigest = md5();
+    private final MessageDigest fileDigest = md5();
+    private final List<Instruction> instructions = new ArrayList<>();
+    private long literalBytes = 0;
+
+    /**
+     * Copy blocks of old file or literal bytes
+     */
+    static class Instruction {
+        /**
+         * First block of old file or -1 for literal bytes
+         */
+        final long block;
+        /**
+         * Number of blocks or literal bytes
+         */
+        long count;
+
+        Instruction(long block, long count) {
+            this.block = block;
+            this.count = count;
+        }
+
+        boolean isLiteral() {
+            return block < 0;
+        }
+    }
+
+    DeltaEncoder(BlockSignatures signatures) {
+        this.signatures = signatures;
+        this.blockSize = signatures.getBlockSize();
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is always available", e);
+        }
+    }
+
+    /**
+     * @param in New file
+     * @param literals Receives bytes of the new file which are not in the old file, in order
+     * @return Instructions to build the new file
+     */
+    List<Instruction> encode(InputStream in, OutputStream literals) throws IOException {
+        byte[] buffer = new byte[Math.max(4 * blockSize, 256 * 1024)];
+        RollingChecksum rolling = new RollingChecksum(blockSize);
+        boolean rolled = false;
+        int start = 0;
+        int end = 0;
+        int literalStart = 0;
+        boolean eof = false;
+        while (true) {
+            if (end - start <= blockSize && !eof) {
+                // keep the literal bytes and the window, read after them
+                literals.write(buffer, literalStart, start - literalStart);
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+                literalStart = 0;
+                while (end <= blockSize && !eof) {
+                    int read = in.read(buffer, end, buffer.length - end);
+                    if (read == -1) {
+                        eof = true;
+                    } else {
+                        fileDigest.update(buffer, end, read);
+                        end += read;
+                    }
+                }
+            }
+            if (end - start < blockSize) {
+                break;
+            }
+            if (!rolled) {
+                rolling.reset(buffer, start);
+                rolled = true;
+            }
+            int block = find(rolling.value(), buffer, start);
+            if (block >= 0) {
+                literals.write(buffer, literalStart, start - literalStart);
+                copy(block);
+                start += blockSize;
+                literalStart = start;
+                rolled = false;
+                continue;
+            }
+            literal(1);
+            if (end - start > blockSize) {
+                rolling.roll(buffer[start], buffer[start + blockSize]);
+            } else {
+                rolled = false;
+            }
+            start++;
+        }
+        literal(end - start);
+        literals.write(buffer, literalStart, end - literalStart);
+        return instructions;
+    }
+
+    private int find(long weak, byte[] buffer, int offset) {
+        if (!signatures.contains(weak)) {
+            return -1;
+        }
+        blockDigest.update(buffer, offset, blockSize);
+        Instruction last = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+        int preferred = last != null && !last.isLiteral() ? (int) (last.block + last.count) : -1;
+        return signatures.find(weak, blockDigest.digest(), preferred);
+    }
+
+    private void copy(long block) {
+        Instruction last = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+        if (last != null && !last.isLiteral() && last.block + last.count == block) {
+            last.count++;
+        } else {
+            instructions.add(new Instruction(block, 1));
+        }
+    }
+
+    private void literal(long count) {
+        if (count == 0) {
+            return;
+        }
+        literalBytes += count;
+        Instruction last = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+        if (last != null && last.isLiteral()) {
+            last.count += count;
+        } else {
+            instructions.add(new Instruction(-1, count));
+        }
+    }
+
+    /**
+     * @return Number of bytes of new file which are not in old file
+     */
+    long getLiteralBytes() {
+        return literalBytes;
+    }
+
+    /**
+     * @return MD5 digest of whole new file, after encoding
+     */
+    byte[] getDigest() {
+        return fileDigest.digest();
+    }
+}
@@ -0,0 +1,186 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+/**
+ * Replaces a file on a sftp location with a local file by sending only the parts which differ, like rsync.
+ *
+ * The block signatures of the existing target are computed on the target host over ssh,
+ * the local source is encoded against them as block references and literal bytes.
+ * The literal bytes and a script of `dd` commands which assemble the new file are uploaded and run over ssh,
+ * the assembled file replaces the target when its MD5 digest equals the digest of the source.
+ * Needs GNU coreutils on the target host.
+ */
+class DeltaTransfer {
+    /**
+     * Smaller files are copied in full, as the delta costs a few round trips
+     */
+    static final long MIN_SIZE = 16L * 1024 * 1024;
+    private static final int MIN_BLOCK_SIZE = 8 * 1024;
+    private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+    /**
+     * Time spent on round trips of a delta transfer
+     */
+    private static final double OVERHEAD_SECONDS = 3.0;
+    /**
+     * Assumed speed of reading a file from disk, the target is read twice and the source once
+     */
+    private static final double DISK_BYTES_PER_SECOND = 300.0 * 1024 * 1024;
+    private static final int LITERAL_BUFFER_SIZE = 64 * 1024;
+    private static final String DELTA_SUFFIX = ".xenon-delta";
+    private static final String SCRIPT_SUFFIX = ".xenon-delta.sh";
+    private static final String NEW_SUFFIX = ".xenon-new";
+
+    private final CopyInput target;
+    private final BandwidthLimiter limiter;
+
+    /**
+     * @param limiter Limits the rate at which literals are sent or null when there is no limit
+     */
+    DeltaTransfer(CopyInput target, BandwidthLimiter limiter) {
+        this.target = target;
+        this.limiter = limiter;
+    }
+
+    /**
+     * A local source can be read at any offset and a sftp target has a shell to compute signatures and assemble the file
+     */
+    static boolean supports(CopyInput source, CopyInput target) {
+        return source.isLocal() && "sftp".equals(target.getAdaptorName());
+    }
+
+    /**
+     * @param size Size of file
+     * @param bytesPerSecond Measured throughput of full copies or negative when unknown
+     * @return Whether sending a delta is expected to be faster than copying the whole file
+     */
+    static boolean isWorthwhile(long size, double bytesPerSecond) {
+        if (size < MIN_SIZE) {
+            return false;
+        }
+        if (bytesPerSecond <= 0) {
+            // large files are worth a try until the bandwidth is known
+            return true;
+        }
+        double fullSeconds = size / bytesPerSecond;
+        double deltaSeconds = OVERHEAD_SECONDS + 3 * size / DISK_BYTES_PER_SECOND;
+        return fullSeconds > deltaSeconds;
+    }
+
+    /**
+     * Block size around the square root of the file size, as rsync does
+     */
+    static int blockSize(long size) {
+        int blockSize = MIN_BLOCK_SIZE;
+        while (blockSize < MAX_BLOCK_SIZE && (long) blockSize * blockSize < size) {
+            blockSize *= 2;
+        }
+        return blockSize;
+    }
+
+    /**
+     * @param targetFS Filesystem of target
+     * @param sourceFile Local file to copy
+     * @param targetFile Existing regular file to replace
+     * @return Number of bytes sent
+     */
+    long copy(FileSystem targetFS, PathAttributes sourceFile, Path targetFile) throws XenonException, IOException {
+        Path delta = sibling(targetFile, DELTA_SUFFIX);
+        Path script = sibling(targetFile, SCRIPT_SUFFIX);
+        Path assembled = sibling(targetFile, NEW_SUFFIX);
+        try {
+            long targetSize = targetFS.getAttributes(targetFile).getSize();
+            BlockSignatures signatures = BlockSignatures.fetch(target, targetFile, blockSize(targetSize));
+            DeltaEncoder encoder = new DeltaEncoder(signatures);
+            List<DeltaEncoder.Instruction> instructions;
+            deleteIfExists(targetFS, delta);
+            try (
+                InputStream in = Files.newInputStream(Paths.get(sourceFile.getPath().toString()));
+                OutputStream literals = new BufferedOutputStream(throttled(targetFS.writeToFile(delta)), LITERAL_BUFFER_SIZE)
+            ) {
+                instructions = encoder.encode(in, literals);
+            }
+            byte[] commands = script(instructions, signatures.getBlockSize(), targetFile, delta, assembled, toHex(encoder.getDigest()))
+                .getBytes(StandardCharsets.UTF_8);
+            deleteIfExists(targetFS, script);
+            try (OutputStream out = targetFS.writeToFile(script, commands.length)) {
+                out.write(commands);
+            }
+            RemoteShell.run(target, "sh " + RemoteShell.quote(script.toString()), line -> { });
+            return encoder.getLiteralBytes() + commands.length;
+        } finally {
+            remove(targetFS, delta, script, assembled);
+        }
+    }
+
+    private OutputStream throttled(OutputStream out) {
+        return limiter == null ? out : limiter.wrap(out);
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return new Path(file.getSeparator(), file.toString() + suffix);
+    }
+
+    /**
+     * @return Shell script which assembles new file from blocks of target and literals, and replaces target with it when it is intact
+     */
+    static String script(List<DeltaEncoder.Instruction> instructions, int blockSize, Path targetFile, Path delta, Path assembled, String digest) {
+        String target = RemoteShell.quote(targetFile.toString());
+        String literals = RemoteShell.quote(delta.toString());
+        String output = RemoteShell.quote(assembled.toString());
+        StringBuilder sb = new StringBuilder("set -e\n{\n");
+        long literalOffset = 0;
+        for (DeltaEncoder.Instruction instruction : instructions) {
+            if (instruction.isLiteral()) {
+                sb.append("dd if=").append(literals).append(" bs=").append(LITERAL_BUFFER_SIZE)
+                    .append(" iflag=skip_bytes,count_bytes skip=").append(literalOffset)
+                    .append(" count=").append(instruction.count).append(" status=none\n");
+                literalOffset += instruction.count;
+            } else {
+                sb.append("dd if=").append(target).append(" bs=").append(blockSize)
+                    .append(" skip=").append(instruction.block)
+                    .append(" count=").append(instruction.count).append(" status=none\n");
+            }
+        }
+        sb.append("} > ").append(output).append('\n');
+        sb.append("printf '%s  %s\\n' ").append(digest).append(' ').append(output).append(" | md5sum -c --status\n");
+        sb.append("mv -f ").append(output).append(' ').append(target).append('\n');
+        return sb.toString();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static void remove(FileSystem fs, Path... paths) {
+        for (Path path : paths) {
+            try {
+                deleteIfExists(fs, path);
+            } catch (XenonException e) {
+                // leftover is harmless, the target itself is intact
+            }
+        }
+    }
+
+    private static void deleteIfExists(FileSystem fs, Path path) throws XenonException {
+        if (fs.exists(path)) {
+            fs.delete(path, false);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package nl.esciencecenter.xenon.cli.copy;
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
 import nl.esciencecenter.xenon.credentials.Credential;
-import nl.esciencecenter.xenon.filesystems.CopyMode;
 
 import java.util.Map;
 
@@ -20,14 +19,14 @@ public class DownloadCommand extends CopyCommand {
         String sourcePath = res.getString("source");
         Credential sourceCredential = buildCredential(res);
         String targetPath = res.getString("target");
-        CopyMode copymode = res.get("copymode");
         Boolean recursive = res.getBoolean("recursive");
+        CopyOptions options = CopyOptions.of(res);
         Map<String, String> sourceProps = buildXenonProperties(res);
 
         CopyInput source = new CopyInput(sourceAdaptorName, sourceLocation, sourcePath, sourceCredential, sourceProps);
         CopyInput target = new CopyInput("file", null, targetPath, null);
 
-        CopyOutput result = this.copy(source, target, recursive, copymode);
+        CopyOutput result = this.copy(source, target, recursive, options);
 
         if (target.isStream()) {
             return null;
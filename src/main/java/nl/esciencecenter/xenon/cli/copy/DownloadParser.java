@@ -4,7 +4,12 @@ import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Subparser;
 import net.sourceforge.argparse4j.inf.Subparsers;
 
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addBandwidthLimitArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCompressionArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyEngineArguments;
 import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyModeArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addFilesFromArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addProgressArguments;
 
 public class DownloadParser extends CopyParser {
     @Override
@@ -21,6 +26,11 @@ public class DownloadParser extends CopyParser {
             .required(true);
         subparser.addArgument("--recursive").help("Copy directories recursively").action(Arguments.storeTrue());
         addCopyModeArguments(subparser);
+        addCopyEngineArguments(subparser);
+        addCompressionArguments(subparser);
+        addFilesFromArguments(subparser);
+        addBandwidthLimitArguments(subparser);
+        addProgressArguments(subparser);
 
         return subparser;
     }
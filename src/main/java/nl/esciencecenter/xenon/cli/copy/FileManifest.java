@@ -0,0 +1,160 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import nl.esciencecenter.xenon.cli.StandardStreams;
+
+/**
+ * List of files to copy of `--files-from`, read a line at a time while the files are copied, so it can be larger than memory.
+ *
+ * Each line is one of
+ * - a path
+ * - a source and target path separated by a tab
+ * - a JSON string with a path, like a line of `list` with `--jsonl`
+ * - a JSON object with `source` and optional `target`, or with `relativePath` like a line of `list --long` with `--jsonl`
+ *
+ * Empty lines are skipped. A line which can not be parsed is returned as entry with an error.
+ */
+class FileManifest implements Iterator<FileManifest.Entry>, Closeable {
+    private static final Gson GSON = new Gson();
+
+    private final BufferedReader reader;
+    private long lineNumber = 0;
+    private Entry next = null;
+
+    /**
+     * File to copy, relative paths are relative to source and target of the copy
+     */
+    static class Entry {
+        final String source;
+        final String target;
+        final long line;
+        final String error;
+
+        Entry(String source, String target, long line) {
+            this.source = source;
+            this.target = target;
+            this.line = line;
+            this.error = null;
+        }
+
+        Entry(long line, String error) {
+            this.source = null;
+            this.target = null;
+            this.line = line;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Line of JSON lines manifest
+     */
+    private static class Record {
+        String source;
+        String target;
+        String relativePath;
+    }
+
+    FileManifest(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * @param file Path of file or `-` for stdin
+     */
+    static FileManifest open(String file) throws IOException {
+        if ("-".equals(file)) {
+            return new FileManifest(new InputStreamReader(StandardStreams.in(), StandardCharsets.UTF_8));
+        }
+        return new FileManifest(Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws UncheckedIOException when manifest can not be read
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                next = parse(line, lineNumber);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry entry = next;
+        next = null;
+        return entry;
+    }
+
+    /**
+     * @return Entry or null when line is skipped
+     */
+    static Entry parse(String line, long lineNumber) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        char first = line.charAt(0);
+        if (first == '{' || first == '"') {
+            return parseJson(line, lineNumber);
+        }
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+            return new Entry(line, line, lineNumber);
+        }
+        String source = line.substring(0, tab);
+        String target = line.substring(tab + 1);
+        if (source.isEmpty() || target.isEmpty() || target.indexOf('\t') >= 0) {
+            return new Entry(lineNumber, "Expected source and target path separated by a tab");
+        }
+        return new Entry(source, target, lineNumber);
+    }
+
+    private static Entry parseJson(String line, long lineNumber) {
+        try {
+            if (line.charAt(0) == '"') {
+                String path = GSON.fromJson(line, String.class);
+                return new Entry(path, path, lineNumber);
+            }
+            Record record = GSON.fromJson(line, Record.class);
+            if (record.source == null && record.relativePath != null) {
+                return new Entry(record.relativePath, record.relativePath, lineNumber);
+            }
+            if (record.source == null) {
+                return new Entry(lineNumber, "Expected JSON object with source or relativePath");
+            }
+            return new Entry(record.source, record.target == null ? record.source : record.target, lineNumber);
+        } catch (JsonParseException e) {
+            return new Entry(lineNumber, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,25 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.util.Iterator;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+/**
+ * Chooses which files of a source directory the {@link CopyEngine} copies
+ */
+public interface FileSelector {
+    /**
+     * Called once by the thread which started the copy, the returned iterator is consumed by the same thread while files are being copied
+     *
+     * @param sourceFS Filesystem of source
+     * @param sourcePath Absolute source directory
+     * @param targetFS Filesystem of target
+     * @param targetPath Absolute target directory
+     * @return Files below source directory to copy
+     * @throws XenonException when files can not be selected
+     */
+    Iterator<PathAttributes> select(FileSystem sourceFS, Path sourcePath, FileSystem targetFS, Path targetPath) throws XenonException;
+}
@@ -0,0 +1,151 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+import nl.esciencecenter.xenon.cli.PipelinedCopy;
+
+/**
+ * Copy of local files with channel transfers, which the kernel does without copying the bytes through the JVM,
+ * with copy_file_range or sendfile on Linux.
+ */
+final class LocalTransfer {
+    /**
+     * Largest transfer at once, so progress can be reported in between
+     */
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final LongConsumer NO_PROGRESS = bytes -> { };
+
+    private LocalTransfer() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * @param replace Whether to overwrite an existing target, otherwise the target must not exist
+     * @return Number of bytes copied
+     */
+    static long copy(Path source, Path target, boolean replace) throws IOException {
+        return copy(source, target, replace, NO_PROGRESS);
+    }
+
+    /**
+     * @param progress Called with number of bytes after each transferred chunk
+     */
+    static long copy(Path source, Path target, boolean replace, LongConsumer progress) throws IOException {
+        try (
+            FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel out = openTarget(target, replace)
+        ) {
+            return transfer(in, out, progress);
+        }
+    }
+
+    /**
+     * @param stdout Channel of standard output, which is left open
+     * @param progress Called with number of bytes after each transferred chunk
+     * @return Number of bytes copied
+     */
+    static long toStdout(Path source, FileChannel stdout, LongConsumer progress) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            return transfer(in, stdout, progress);
+        }
+    }
+
+    /**
+     * @param stdin Channel of standard input, which is left open
+     * @param stdinStream Standard input as stream, read when standard input is a pipe or terminal
+     * @param target File to create
+     * @param progress Called with number of bytes after each transferred chunk, or with each write of a stream
+     * @return Number of bytes copied
+     */
+    static long fromStdin(FileChannel stdin, InputStream stdinStream, Path target, LongConsumer progress) throws IOException {
+        try (FileChannel out = openTarget(target, false)) {
+            if (!isSeekable(stdin)) {
+                return PipelinedCopy.copy(stdinStream, Channels.newOutputStream(new ProgressChannel(out, progress)));
+            }
+            // redirected from a file, copied from where the shell left its position
+            long bytes = 0;
+            long transferred = out.transferFrom(stdin, bytes, CHUNK_SIZE);
+            while (transferred > 0) {
+                progress.accept(transferred);
+                bytes += transferred;
+                transferred = out.transferFrom(stdin, bytes, CHUNK_SIZE);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Channel which reports the number of bytes of each write
+     */
+    private static class ProgressChannel implements WritableByteChannel {
+        private final WritableByteChannel channel;
+        private final LongConsumer progress;
+
+        ProgressChannel(WritableByteChannel channel, LongConsumer progress) {
+            this.channel = channel;
+            this.progress = progress;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = channel.write(src);
+            progress.accept(written);
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static FileChannel openTarget(Path target, boolean replace) throws IOException {
+        if (replace) {
+            return FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        return FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Pipes, terminals and sockets have no position, their size says nothing about what can be read
+     */
+    private static boolean isSeekable(FileChannel channel) {
+        try {
+            channel.position();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Transfer file as it was when the copy started, at the current position of the target
+     */
+    private static long transfer(FileChannel in, WritableByteChannel out, LongConsumer progress) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            long transferred = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+            if (transferred <= 0) {
+                // file was truncated while copying
+                break;
+            }
+            progress.accept(transferred);
+            position += transferred;
+        }
+        return position;
+    }
+}
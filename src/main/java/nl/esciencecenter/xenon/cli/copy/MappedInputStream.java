@@ -0,0 +1,152 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stream of a local file which is memory mapped in windows, so reading takes no system call per chunk.
+ *
+ * A window is unmapped as soon as it has been read, so a file larger than memory does not pile up mappings
+ * until the garbage collector gets to them.
+ * Reads and close are synchronized, a window must never be read after it was unmapped.
+ */
+class MappedInputStream extends InputStream {
+    static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Unmaps a buffer, null when the runtime does not allow it, then the garbage collector unmaps
+     */
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private long position;
+    private MappedByteBuffer window = null;
+    private boolean closed = false;
+
+    MappedInputStream(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * @param offset Position in file to start reading from
+     */
+    MappedInputStream(Path file, long offset) throws IOException {
+        this(file, offset, WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize Number of bytes mapped at once
+     */
+    MappedInputStream(Path file, long offset, long windowSize) throws IOException {
+        this.windowSize = windowSize;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        if (offset > size) {
+            channel.close();
+            throw new EOFException("File " + file + " is shorter than " + offset + " bytes");
+        }
+        position = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= size) {
+            return -1;
+        }
+        MappedByteBuffer current = window();
+        int n = Math.min(len, current.remaining());
+        try {
+            current.get(b, off, n);
+        } catch (InternalError e) {
+            // the JVM reports a fault in a mapping of a file which was truncated this way
+            throw new IOException("File changed while reading it: " + e.getMessage(), e);
+        }
+        position += n;
+        return n;
+    }
+
+    private MappedByteBuffer window() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return window;
+        }
+        unmap();
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+        return window;
+    }
+
+    @Override
+    public synchronized long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, size - position));
+        if (skipped > 0) {
+            position += skipped;
+            unmap();
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    private void unmap() {
+        if (window != null && INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, window);
+            } catch (ReflectiveOperationException e) {
+                // left to the garbage collector
+            }
+        }
+        window = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unmap();
+        channel.close();
+    }
+}
@@ -0,0 +1,180 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compressing stream which deflates blocks on several threads, like pigz.
+ *
+ * Input is cut in blocks which are deflated independently, each primed with the last 32K of the previous block as dictionary,
+ * so the ratio is close to a single deflate stream.
+ * Every block but the last ends with a sync flush, so the compressed blocks written in order form one valid gzip member.
+ */
+class ParallelGzipOutputStream extends OutputStream {
+    static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int length = 0;
+    private byte[] dictionary = null;
+    private long size = 0;
+    private boolean finished = false;
+
+    /**
+     * @param out Stream to write gzip data to
+     * @param threads Number of threads which deflate blocks
+     */
+    ParallelGzipOutputStream(OutputStream out, int threads) throws IOException {
+        this.out = out;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "xenon-deflate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // enough blocks in flight to keep all threads busy while the oldest is written
+        this.maxPending = 2 * threads;
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) throws IOException {
+        if (finished) {
+            throw new IOException("Stream is finished");
+        }
+        while (count > 0) {
+            int n = Math.min(count, BLOCK_SIZE - length);
+            System.arraycopy(bytes, offset, block, length, n);
+            length += n;
+            offset += n;
+            count -= n;
+            if (length == BLOCK_SIZE) {
+                submit(false);
+            }
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        byte[] input = block;
+        int inputLength = length;
+        byte[] previous = dictionary;
+        crc.update(input, 0, inputLength);
+        size += inputLength;
+        if (inputLength >= DICTIONARY_SIZE) {
+            dictionary = Arrays.copyOfRange(input, inputLength - DICTIONARY_SIZE, inputLength);
+        }
+        block = new byte[BLOCK_SIZE];
+        length = 0;
+        pending.add(executor.submit(() -> deflate(input, inputLength, previous, last)));
+        while (pending.size() > (last ? 0 : maxPending)) {
+            writeOldest();
+        }
+    }
+
+    private static byte[] deflate(byte[] input, int inputLength, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, inputLength);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(inputLength / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            out.write(pending.remove().get());
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to compress: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        }
+    }
+
+    /**
+     * Write the remaining data and gzip trailer without closing the underlying stream
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            submit(true);
+            writeInt((int) crc.getValue());
+            // gzip records the size modulo 2^32
+            writeInt((int) size);
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stop deflating after a failure, without the trailer a partial copy is not mistaken for a complete gzip file
+     */
+    void abort() {
+        finished = true;
+        executor.shutdownNow();
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Computes checksum of bytes written to a stream on its own thread, so hashing overlaps with the I/O of the copy.
+ *
+ * Written bytes are copied to one of a few buffers which are handed to the hashing thread,
+ * a writer only waits when all buffers are still being hashed.
+ * One instance is used by a single copy worker for file after file.
+ * When hashing fails the thread keeps handing back buffers without hashing them, so writers get the failure instead of waiting forever.
+ */
+class PipelinedChecksum implements AutoCloseable {
+    private static final int BUFFERS = 4;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Supplier<ContentDigest> digests;
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final BlockingQueue<String> results = new ArrayBlockingQueue<>(1);
+    private final Thread thread;
+    private ContentDigest digest;
+    private volatile Throwable failure = null;
+
+    /**
+     * Bytes to hash into digest of a file, without data it marks the end of the file.
+     * The digest travels with the bytes, so bytes of a failed copy never end up in the digest of the next file
+     */
+    private static class Chunk {
+        final byte[] data;
+        ContentDigest digest;
+        int length;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private static final Chunk STOP = new Chunk(null);
+
+    PipelinedChecksum(String algorithm) {
+        this(() -> ContentDigest.of(algorithm));
+    }
+
+    /**
+     * @param digests Creates digest of each file
+     */
+    PipelinedChecksum(Supplier<ContentDigest> digests) {
+        this.digests = digests;
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new Chunk(new byte[BUFFER_SIZE]));
+        }
+        thread = new Thread(this::run, "xenon-checksum");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            Chunk chunk = full.take();
+            while (chunk != STOP) {
+                String result = null;
+                try {
+                    if (failure == null && chunk.data == null) {
+                        result = chunk.digest.hex();
+                    } else if (failure == null) {
+                        chunk.digest.update(chunk.data, 0, chunk.length);
+                    }
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                }
+                if (chunk.data == null) {
+                    // finish checks for a failure once it has a result
+                    results.put(result == null ? "" : result);
+                } else {
+                    free.put(chunk);
+                }
+                chunk = full.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param out Stream of target
+     * @return Stream which hashes bytes written to it before writing them to out
+     */
+    OutputStream wrap(OutputStream out) {
+        digest = digests.get();
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                update(bytes, offset, length);
+                out.write(bytes, offset, length);
+            }
+        };
+    }
+
+    private void update(byte[] bytes, int offset, int length) throws IOException {
+        int position = offset;
+        int remaining = length;
+        try {
+            while (remaining > 0) {
+                Chunk chunk = free.take();
+                if (failure != null) {
+                    // keep buffer for later writes, which fail the same way
+                    free.add(chunk);
+                    checkFailure();
+                }
+                chunk.digest = digest;
+                chunk.length = Math.min(remaining, chunk.data.length);
+                System.arraycopy(bytes, position, chunk.data, 0, chunk.length);
+                full.put(chunk);
+                position += chunk.length;
+                remaining -= chunk.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing");
+        }
+    }
+
+    /**
+     * @return Checksum of all bytes written to the stream returned by the last {@link #wrap(OutputStream)}
+     */
+    String finish() throws IOException {
+        String result;
+        try {
+            Chunk end = new Chunk(null);
+            end.digest = digest;
+            full.put(end);
+            result = results.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing");
+        }
+        checkFailure();
+        return result;
+    }
+
+    /**
+     * @throws IOException when the hashing thread failed, for this or an earlier file
+     */
+    private void checkFailure() throws IOException {
+        Throwable error = failure;
+        if (error != null) {
+            throw new IOException("Unable to compute checksum: " + error, error);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            full.put(STOP);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
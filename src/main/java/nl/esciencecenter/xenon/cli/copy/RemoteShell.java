@@ -0,0 +1,169 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.cli.Utils;
+import nl.esciencecenter.xenon.schedulers.JobDescription;
+import nl.esciencecenter.xenon.schedulers.JobStatus;
+import nl.esciencecenter.xenon.schedulers.Scheduler;
+import nl.esciencecenter.xenon.schedulers.Streams;
+
+/**
+ * Runs shell scripts over ssh on the host of a sftp location, for work Xenon filesystems can not do, like writing at an offset
+ */
+final class RemoteShell {
+    private static final long TIMEOUT = 1000L * 60 * 60 * 24;
+    private static final String SFTP_PROPERTY_PREFIX = "xenon.adaptors.filesystems.sftp.";
+    private static final String SSH_PROPERTY_PREFIX = "xenon.adaptors.schedulers.ssh.";
+
+    /**
+     * Writes stdin of a script
+     */
+    interface StdinWriter {
+        void write(OutputStream stdin) throws IOException;
+    }
+
+    private RemoteShell() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * @param input Sftp location
+     * @param slot Slot of connection, see {@link Utils#openScheduler(String, String, nl.esciencecenter.xenon.credentials.Credential, Map, int)}
+     * @return Ssh scheduler on host of location, with the credential and properties of the location
+     */
+    static Session<Scheduler> openScheduler(CopyInput input, int slot) throws XenonException {
+        return Utils.openScheduler("ssh", input.getLocation(), input.getCredential(), toSshProperties(input.getProperties()), slot);
+    }
+
+    /**
+     * @param input Sftp location to run script on
+     * @param script Shell script
+     * @param stdout Called with each line the script writes to stdout
+     * @throws XenonException when script could not be run or exited with non-zero status
+     */
+    static void run(CopyInput input, String script, Consumer<String> stdout) throws XenonException, IOException {
+        try (Session<Scheduler> session = openScheduler(input, 0)) {
+            Scheduler scheduler = session.get();
+            Streams streams = scheduler.submitInteractiveJob(describe(script));
+            streams.getStdin().close();
+            // read concurrently, so a script which writes a lot to one stream does not block on the other
+            CompletableFuture<String> stderr = drain(streams.getStderr());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(streams.getStdout(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    stdout.accept(line);
+                    line = reader.readLine();
+                }
+            }
+            awaitSuccess(scheduler, streams, input, stderr);
+        }
+    }
+
+    /**
+     * Run script with stdin written by the caller, on a scheduler which the caller opened, so it can be reused
+     *
+     * @param scheduler Scheduler from {@link #openScheduler(CopyInput, int)}
+     * @param stdin Writes stdin of the script, which is closed afterwards
+     * @throws XenonException when script could not be run or exited with non-zero status
+     * @throws IOException when stdin could not be written while the script succeeded
+     */
+    static void run(Scheduler scheduler, CopyInput input, String script, StdinWriter stdin) throws XenonException, IOException {
+        Streams streams = scheduler.submitInteractiveJob(describe(script));
+        CompletableFuture<String> stderr = drain(streams.getStderr());
+        CompletableFuture<String> stdout = drain(streams.getStdout());
+        try (OutputStream out = streams.getStdin()) {
+            stdin.write(out);
+        } catch (IOException e) {
+            // a script which failed stops reading its stdin, its error says why
+            awaitSuccess(scheduler, streams, input, stderr);
+            throw e;
+        }
+        stdout.join();
+        awaitSuccess(scheduler, streams, input, stderr);
+    }
+
+    private static JobDescription describe(String script) {
+        JobDescription description = new JobDescription();
+        description.setExecutable("sh");
+        description.setArguments("-c", script);
+        return description;
+    }
+
+    private static void awaitSuccess(Scheduler scheduler, Streams streams, CopyInput input, CompletableFuture<String> stderr) throws XenonException {
+        JobStatus status = scheduler.waitUntilDone(streams.getJobIdentifier(), TIMEOUT);
+        if (status.hasException()) {
+            throw new XenonException("ssh", "Unable to run script on " + input.getLocation(), status.getException());
+        }
+        Integer exitCode = status.getExitCode();
+        if (exitCode == null || exitCode != 0) {
+            throw new XenonException("ssh", "Script on " + input.getLocation() + " failed: " + errorOf(stderr));
+        }
+    }
+
+    private static String errorOf(CompletableFuture<String> stderr) {
+        try {
+            return stderr.get().trim();
+        } catch (ExecutionException e) {
+            return e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    /**
+     * Read stream to its end on a thread of its own, as a blocking read on a shared pool could wait behind reads of other scripts,
+     * while their scripts block on a full stream which is not read
+     */
+    private static CompletableFuture<String> drain(InputStream in) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(readAll(in));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, "xenon-remote-shell");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private static String readAll(InputStream in) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            Utils.pipe(stream, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> toSshProperties(Map<String, String> properties) {
+        Map<String, String> result = new HashMap<>();
+        if (properties != null) {
+            // the sftp filesystem and ssh scheduler adaptors share most of their properties
+            properties.forEach((key, value) -> result.put(key.replace(SFTP_PROPERTY_PREFIX, SSH_PROPERTY_PREFIX), value));
+        }
+        return result;
+    }
+
+    static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
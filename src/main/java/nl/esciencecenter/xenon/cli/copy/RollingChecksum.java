@@ -0,0 +1,91 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+/**
+ * Checksum of a window of bytes which can be moved one byte at a time, equal to the POSIX `cksum` of the window.
+ *
+ * The CRC of `cksum` has no initial value, so the CRC of a window is linear in its bytes:
+ * moving the window adds the incoming byte as usual and removes the outgoing byte by xor with the CRC of that byte followed by zeros.
+ * `cksum` then appends the length, which is the same for every window, and complements.
+ */
+class RollingChecksum {
+    private static final int POLYNOMIAL = 0x04C11DB7;
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private final int windowSize;
+    /**
+     * CRC of each byte followed by window size zeros, to remove it from the window
+     */
+    private final int[] outgoing = new int[256];
+    private int crc = 0;
+
+    RollingChecksum(int windowSize) {
+        this.windowSize = windowSize;
+        for (int b = 0; b < 256; b++) {
+            int value = update(0, (byte) b);
+            for (int i = 0; i < windowSize; i++) {
+                value = update(value, (byte) 0);
+            }
+            outgoing[b] = value;
+        }
+    }
+
+    private static int update(int crc, byte b) {
+        return (crc << 8) ^ TABLE[((crc >>> 24) ^ b) & 0xff];
+    }
+
+    /**
+     * Start window at offset of buffer
+     */
+    void reset(byte[] buffer, int offset) {
+        crc = 0;
+        for (int i = offset; i < offset + windowSize; i++) {
+            crc = update(crc, buffer[i]);
+        }
+    }
+
+    /**
+     * Move window one byte
+     *
+     * @param out First byte of current window
+     * @param in Byte after current window
+     */
+    void roll(byte out, byte in) {
+        crc = update(crc, in) ^ outgoing[out & 0xff];
+    }
+
+    /**
+     * @return `cksum` of window
+     */
+    long value() {
+        return cksum(crc, windowSize);
+    }
+
+    /**
+     * @return `cksum` of bytes
+     */
+    static long of(byte[] buffer, int offset, int length) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = update(value, buffer[i]);
+        }
+        return cksum(value, length);
+    }
+
+    private static long cksum(int crc, long length) {
+        int value = crc;
+        for (long n = length; n > 0; n >>>= 8) {
+            value = update(value, (byte) n);
+        }
+        return ~value & 0xffffffffL;
+    }
+}
@@ -0,0 +1,322 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+/**
+ * Copy of a single large file in segments, each stream copies a contiguous range of segments over its own connection.
+ *
+ * Xenon filesystems have no positional reads or writes, so a range of a remote source is read by skipping to its offset
+ * and a remote target is written as a part file per segment, which are concatenated on the target host afterwards.
+ * Local sources and targets are read and written at positions directly.
+ * With a journal each completed segment is recorded, a resumed copy only copies the other segments.
+ */
+class SegmentedTransfer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_SUFFIX = ".xenon-part-";
+
+    private final CopyInput source;
+    private final CopyInput target;
+    private final CopyOptions options;
+    private final CopyJournal journal;
+    private final String name;
+    private final BandwidthLimiter limiter;
+    private final int firstSlot;
+
+    /**
+     * @param journal Journal to record completed segments in or null when copy is not resumable
+     * @param name Name of file in journal
+     * @param limiter Limits the rate of all streams together or null when there is no limit
+     * @param firstSlot Slot of the connections of the first stream, the other streams use the slots after it
+     */
+    SegmentedTransfer(CopyInput source, CopyInput target, CopyOptions options, CopyJournal journal, String name, BandwidthLimiter limiter, int firstSlot) {
+        this.source = source;
+        this.target = target;
+        this.options = options;
+        this.journal = journal;
+        this.name = name;
+        this.limiter = limiter;
+        this.firstSlot = firstSlot;
+    }
+
+    /**
+     * Targets which can be written in segments, local files at positions or sftp as part files concatenated with ssh
+     */
+    static boolean supports(CopyInput target) {
+        return target.isLocal() || "sftp".equals(target.getAdaptorName());
+    }
+
+    /**
+     * @param sourceFile File to copy
+     * @param targetFile Target to write to, must not exist unless resumed
+     * @param resumed Progress of an earlier copy of the file or null to copy all segments
+     * @return Number of bytes copied
+     */
+    long copy(PathAttributes sourceFile, Path targetFile, CopyJournal.FileState resumed) throws XenonException, IOException {
+        long size = sourceFile.getSize();
+        long segments = (size + options.getSegmentSize() - 1) / options.getSegmentSize();
+        int streams = (int) Math.min(options.getStreams(), segments);
+        BitSet done = resumed == null ? new BitSet() : resumed.segments;
+        List<Session<FileSystem>> sessions = new ArrayList<>();
+        List<FileSystem> targetFileSystems = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(streams, runnable -> {
+            Thread thread = new Thread(runnable, "xenon-segment");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // sessions are opened and closed by this thread, as the pool tracks which thread holds a session
+        try (FileChannel targetChannel = target.isLocal() ? openLocalTarget(targetFile, resumed != null) : null) {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int stream = 0; stream < streams; stream++) {
+                long first = stream * segments / streams;
+                long last = (stream + 1) * segments / streams;
+                FileSystem sourceFS = source.isLocal() ? null : open(sessions, source, firstSlot + stream);
+                FileSystem targetFS = target.isLocal() ? null : open(sessions, target, firstSlot + stream);
+                targetFileSystems.add(targetFS);
+                futures.add(executor.submit(() -> copySegments(sourceFS, sourceFile, first, last, done, targetFS, targetChannel, targetFile)));
+            }
+            long bytes = await(futures);
+            if (!target.isLocal()) {
+                concatenate(targetFile, segments);
+            }
+            return bytes;
+        } catch (XenonException | IOException | RuntimeException e) {
+            if (journal != null) {
+                // completed segments are kept to resume from
+                throw e;
+            } else if (target.isLocal()) {
+                removeLocal(targetFile);
+            } else if (!targetFileSystems.isEmpty()) {
+                removeParts(targetFileSystems.get(0), targetFile, segments);
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            for (Session<FileSystem> session : sessions) {
+                session.close();
+            }
+        }
+    }
+
+    private static FileSystem open(List<Session<FileSystem>> sessions, CopyInput input, int slot) throws XenonException {
+        Session<FileSystem> session = input.openFileSystem(slot);
+        sessions.add(session);
+        return session.get();
+    }
+
+    private static FileChannel openLocalTarget(Path targetFile, boolean resume) throws IOException {
+        java.nio.file.Path file = Paths.get(targetFile.toString());
+        if (resume) {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static long await(List<Future<Long>> futures) throws XenonException, IOException {
+        long bytes = 0;
+        Exception error = null;
+        for (Future<Long> future : futures) {
+            try {
+                bytes += future.get();
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (error == null) {
+                    error = cause;
+                } else {
+                    error.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XenonException("copy", "Interrupted while copying segments", e);
+            }
+        }
+        if (error instanceof XenonException) {
+            throw (XenonException) error;
+        } else if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error != null) {
+            throw new XenonException("copy", error.toString(), error);
+        }
+        return bytes;
+    }
+
+    /**
+     * Copy segments [first, last) of source file, except segments which are done
+     */
+    private long copySegments(FileSystem sourceFS, PathAttributes sourceFile, long first, long last, BitSet done, FileSystem targetFS, FileChannel targetChannel, Path targetFile) throws XenonException, IOException {
+        long segmentSize = options.getSegmentSize();
+        long offset = first * segmentSize;
+        long end = Math.min(last * segmentSize, sourceFile.getSize());
+        long bytes = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = null;
+        try {
+            for (long segment = first; segment < last; segment++) {
+                long length = Math.min(segmentSize, end - offset);
+                if (done.get(Math.toIntExact(segment)) && isPresent(targetFS, targetFile, segment)) {
+                    if (in != null) {
+                        in.close();
+                        in = null;
+                    }
+                    offset += length;
+                    continue;
+                }
+                if (in == null) {
+                    in = openAt(source, sourceFS, sourceFile.getPath(), offset);
+                    if (limiter != null) {
+                        in = limiter.wrap(in);
+                    }
+                }
+                if (targetChannel != null) {
+                    writeAt(in, targetChannel, offset, length, buffer);
+                    // positional writes are only confirmed once on disk
+                    targetChannel.force(false);
+                } else {
+                    Path part = partOf(targetFile, segment);
+                    if (targetFS.exists(part)) {
+                        // left behind by an earlier copy which failed
+                        targetFS.delete(part, false);
+                    }
+                    try (OutputStream out = targetFS.writeToFile(part, length)) {
+                        transfer(in, out, length, buffer);
+                    }
+                }
+                if (journal != null) {
+                    journal.segmentDone(name, segment);
+                }
+                bytes += length;
+                offset += length;
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether a segment recorded as done in the journal is still there, a local target is written in place
+     */
+    private static boolean isPresent(FileSystem targetFS, Path targetFile, long segment) throws XenonException {
+        return targetFS == null || targetFS.exists(partOf(targetFile, segment));
+    }
+
+    /**
+     * @param input Source location, a local file is memory mapped from the offset, other files are skipped to the offset
+     * @param fs Filesystem of source, ignored for a local source
+     * @return Stream of file starting at offset
+     */
+    static InputStream openAt(CopyInput input, FileSystem fs, Path path, long offset) throws XenonException, IOException {
+        if (input.isLocal()) {
+            return new MappedInputStream(Paths.get(path.toString()), offset);
+        }
+        InputStream in = fs.readFromFile(path);
+        long remaining = offset;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip may stop early, a read tells whether the end of the file was reached
+                if (in.read() == -1) {
+                    in.close();
+                    throw new EOFException("Source file " + path + " is shorter than " + offset + " bytes");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return in;
+    }
+
+    private static void writeAt(InputStream in, FileChannel channel, long position, long length, byte[] buffer) throws IOException {
+        long written = 0;
+        while (written < length) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, length - written));
+            if (read == -1) {
+                throw new EOFException("Source file ended before " + (position + length) + " bytes");
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes, position + written + bytes.position());
+            }
+            written += read;
+        }
+    }
+
+    private static void transfer(InputStream in, OutputStream out, long length, byte[] buffer) throws IOException {
+        long written = 0;
+        while (written < length) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, length - written));
+            if (read == -1) {
+                throw new EOFException("Source file ended before segment was complete");
+            }
+            out.write(buffer, 0, read);
+            written += read;
+        }
+    }
+
+    static Path partOf(Path targetFile, long segment) {
+        // zero padded, so a shell glob lists parts in order
+        return new Path(targetFile.getSeparator(), targetFile.toString() + PART_SUFFIX + String.format("%06d", segment));
+    }
+
+    /**
+     * Concatenate part files into target on target host and remove them.
+     * Only the parts of this copy are concatenated, parts with higher numbers can be left by a copy with a smaller segment size
+     */
+    private void concatenate(Path targetFile, long segments) throws XenonException, IOException {
+        String prefix = quote(targetFile.toString() + PART_SUFFIX);
+        String script = "i=0; while [ $i -lt " + segments + " ]; do cat " + prefix + "$(printf %06d $i) || exit 1; i=$((i + 1)); done > "
+            + quote(targetFile.toString()) + " && rm -f " + prefix + "*";
+        try {
+            RemoteShell.run(target, script, line -> { });
+        } catch (XenonException e) {
+            throw new XenonException("copy", "Unable to concatenate " + segments + " parts of " + targetFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    static String quote(String value) {
+        return RemoteShell.quote(value);
+    }
+
+    private static void removeLocal(Path targetFile) {
+        try {
+            Files.deleteIfExists(Paths.get(targetFile.toString()));
+        } catch (IOException e) {
+            // incomplete target is harmless, the copy failed anyway
+        }
+    }
+
+    private static void removeParts(FileSystem targetFS, Path targetFile, long segments) {
+        for (long segment = 0; segment < segments; segment++) {
+            try {
+                Path part = partOf(targetFile, segment);
+                if (targetFS.exists(part)) {
+                    targetFS.delete(part, false);
+                }
+            } catch (XenonException e) {
+                // leftover part is harmless, the copy failed anyway
+            }
+        }
+    }
+}
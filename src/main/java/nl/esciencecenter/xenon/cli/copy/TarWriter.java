@@ -0,0 +1,180 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a tar archive in ustar format, which GNU tar and bsdtar extract.
+ *
+ * Names and link targets longer than the ustar fields and sizes of 8G or more are written in a pax extended header before the entry.
+ * Owners are left out, so extracted files belong to the user who runs tar.
+ */
+class TarWriter {
+    static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    /**
+     * Largest size which fits in 11 octal digits
+     */
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+    private static final byte REGULAR = '0';
+    private static final byte SYMBOLIC_LINK = '2';
+    private static final byte DIRECTORY = '5';
+    private static final byte PAX_HEADER = 'x';
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private long bytesWritten = 0;
+
+    TarWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param name Path relative to where the archive is extracted, with / as separator
+     * @param mode Permission bits
+     * @param modified Last modified time in milliseconds since epoch
+     */
+    void writeDirectory(String name, int mode, long modified) throws IOException {
+        writeHeader(name.endsWith("/") ? name : name + "/", mode, modified, 0, DIRECTORY, "");
+    }
+
+    void writeSymbolicLink(String name, String target, long modified) throws IOException {
+        writeHeader(name, 0777, modified, 0, SYMBOLIC_LINK, target);
+    }
+
+    /**
+     * Write file of size bytes read from in, a file which grew since its size was taken is cut off
+     *
+     * @throws EOFException when in ends before size bytes, the entry is padded with zeros so the archive stays valid
+     */
+    void writeFile(String name, int mode, long modified, long size, InputStream in) throws IOException {
+        writeHeader(name, mode, modified, size, REGULAR, "");
+        long remaining = size;
+        boolean truncated = false;
+        while (remaining > 0) {
+            int read = truncated ? -1 : in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                // keep headers of the next entries at their place
+                truncated = true;
+                Arrays.fill(buffer, (byte) 0);
+                read = (int) Math.min(buffer.length, remaining);
+            }
+            write(buffer, read);
+            remaining -= read;
+        }
+        pad(size);
+        if (truncated) {
+            throw new EOFException("File " + name + " became shorter than " + size + " bytes while it was archived");
+        }
+    }
+
+    /**
+     * Write end of archive, the stream is left open
+     */
+    void finish() throws IOException {
+        write(new byte[2 * BLOCK_SIZE], 2 * BLOCK_SIZE);
+        out.flush();
+    }
+
+    /**
+     * @return Number of bytes of archive written so far
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void writeHeader(String name, int mode, long modified, long size, byte type, String link) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] linkBytes = link.getBytes(StandardCharsets.UTF_8);
+        Map<String, String> pax = new LinkedHashMap<>();
+        if (nameBytes.length > NAME_LENGTH) {
+            pax.put("path", name);
+        }
+        if (linkBytes.length > NAME_LENGTH) {
+            pax.put("linkpath", link);
+        }
+        if (size > MAX_USTAR_SIZE) {
+            pax.put("size", Long.toString(size));
+        }
+        if (!pax.isEmpty()) {
+            byte[] records = paxRecords(pax);
+            write(header(nameBytes, 0644, modified, records.length, PAX_HEADER, new byte[0]), BLOCK_SIZE);
+            write(records, records.length);
+            pad(records.length);
+        }
+        write(header(nameBytes, mode, modified, size > MAX_USTAR_SIZE ? 0 : size, type, linkBytes), BLOCK_SIZE);
+    }
+
+    static byte[] header(byte[] name, int mode, long modified, long size, byte type, byte[] link) {
+        byte[] header = new byte[BLOCK_SIZE];
+        // fields which do not fit are cut off, their full value is in the pax header
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, NAME_LENGTH));
+        octal(header, 100, 8, mode & 07777);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, Math.max(0, modified / 1000));
+        header[156] = type;
+        System.arraycopy(link, 0, header, 157, Math.min(link.length, NAME_LENGTH));
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        // checksum is computed with its own field filled with spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * Write value as zero padded octal number followed by a NUL
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int padding = length - 1 - digits.length();
+        for (int i = 0; i < padding; i++) {
+            header[offset + i] = '0';
+        }
+        byte[] bytes = digits.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset + padding, bytes.length);
+        header[offset + length - 1] = 0;
+    }
+
+    /**
+     * @return Records like `30 path=some/long/name\n`, of which the length includes its own digits
+     */
+    static byte[] paxRecords(Map<String, String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            String record = " " + value.getKey() + "=" + value.getValue() + "\n";
+            int recordLength = record.getBytes(StandardCharsets.UTF_8).length;
+            int length = recordLength + Integer.toString(recordLength).length();
+            if (Integer.toString(length).length() != Integer.toString(recordLength).length()) {
+                // one more digit, like 99 becoming 100
+                length++;
+            }
+            sb.append(length).append(record);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder > 0) {
+            write(new byte[BLOCK_SIZE - remainder], BLOCK_SIZE - remainder);
+        }
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        bytesWritten += length;
+    }
+}
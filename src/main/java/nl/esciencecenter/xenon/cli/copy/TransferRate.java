@@ -0,0 +1,29 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+/**
+ * Throughput of files copied in full, shared by the workers of a copy
+ */
+class TransferRate {
+    /**
+     * Fewer bytes say more about latency than about bandwidth
+     */
+    private static final long MIN_MEASURED_BYTES = 1024L * 1024;
+
+    private long bytes = 0;
+    private long nanos = 0;
+
+    synchronized void record(long bytes, long nanos) {
+        this.bytes += bytes;
+        this.nanos += nanos;
+    }
+
+    /**
+     * @return Measured bytes per second or -1 when too little has been copied yet
+     */
+    synchronized double getBytesPerSecond() {
+        if (bytes < MIN_MEASURED_BYTES || nanos <= 0) {
+            return -1;
+        }
+        return bytes * 1e9 / nanos;
+    }
+}
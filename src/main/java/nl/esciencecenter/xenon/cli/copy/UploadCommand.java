@@ -3,7 +3,6 @@ package nl.esciencecenter.xenon.cli.copy;
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
 import nl.esciencecenter.xenon.credentials.Credential;
-import nl.esciencecenter.xenon.filesystems.CopyMode;
 
 import java.util.Map;
 
@@ -20,13 +19,13 @@ public class UploadCommand extends CopyCommand {
         String targetLocation = res.getString("location");
         String targetPath = res.getString("target");
         Credential targetCredential = buildCredential(res);
-        CopyMode copymode = res.get("copymode");
         Boolean recursive = res.getBoolean("recursive");
+        CopyOptions options = CopyOptions.of(res);
         Map<String, String> targetProps = buildXenonProperties(res);
 
         CopyInput source = new CopyInput("file", null, sourcePath, null);
         CopyInput target = new CopyInput(targetAdaptorName, targetLocation, targetPath, targetCredential, targetProps);
 
-        return this.copy(source, target, recursive, copymode);
+        return this.copy(source, target, recursive, options);
     }
 }
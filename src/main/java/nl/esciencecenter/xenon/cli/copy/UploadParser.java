@@ -3,8 +3,14 @@ package nl.esciencecenter.xenon.cli.copy;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Subparser;
 import net.sourceforge.argparse4j.inf.Subparsers;
+import nl.esciencecenter.xenon.cli.SizeArgumentType;
 
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addBandwidthLimitArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCompressionArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyEngineArguments;
 import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyModeArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addFilesFromArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addProgressArguments;
 
 public class UploadParser extends CopyCommand {
     public Subparser buildArgumentParser(Subparsers subparsers) {
@@ -20,6 +26,20 @@ public class UploadParser extends CopyCommand {
         subparser.addArgument("target").help("Target path").required(true);
         subparser.addArgument("--recursive").help("Upload directories recursively").action(Arguments.storeTrue());
         addCopyModeArguments(subparser);
+        addCopyEngineArguments(subparser);
+        addCompressionArguments(subparser);
+        addFilesFromArguments(subparser);
+        subparser.addArgument("--bundle")
+            .help("Upload a directory of many small files as tar archives, which are extracted with tar over ssh on the host of a sftp target. " +
+                "Up to --parallel archives are uploaded at once, each over its own connection")
+            .action(Arguments.storeTrue());
+        subparser.addArgument("--bundle-size")
+            .help("Size at which an archive of --bundle is cut off and the next one started, like 64M")
+            .type(new SizeArgumentType())
+            .metavar("SIZE")
+            .setDefault(CopyOptions.DEFAULT_BUNDLE_SIZE);
+        addBandwidthLimitArguments(subparser);
+        addProgressArguments(subparser);
         return subparser;
     }
 }
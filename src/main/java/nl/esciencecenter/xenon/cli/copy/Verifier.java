@@ -0,0 +1,67 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+
+/**
+ * Compares the checksum of a copied file with the checksum of its source.
+ *
+ * A local target is read back from disk, a sha256 checksum of a file on a sftp location is computed on its host with `sha256sum`,
+ * other targets are read back over the network.
+ */
+class Verifier {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final String algorithm;
+    private final CopyInput source;
+    private final CopyInput target;
+
+    Verifier(String algorithm, CopyInput source, CopyInput target) {
+        this.algorithm = algorithm;
+        this.source = source;
+        this.target = target;
+    }
+
+    String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param sourceChecksum Checksum of source computed while copying or null to read the source
+     * @throws XenonException when checksums differ
+     */
+    void verify(FileSystem sourceFS, Path sourceFile, FileSystem targetFS, Path targetFile, String sourceChecksum) throws XenonException, IOException {
+        String expected = sourceChecksum == null ? checksumOf(source, sourceFS, sourceFile) : sourceChecksum;
+        String actual = checksumOfTarget(targetFS, targetFile);
+        if (!expected.equals(actual)) {
+            throw new XenonException(target.getAdaptorName(), "Checksum mismatch of " + targetFile + ", " + algorithm + " of source is " + expected + " and of target is " + actual);
+        }
+    }
+
+    private String checksumOfTarget(FileSystem targetFS, Path targetFile) throws XenonException, IOException {
+        if (ContentDigest.SHA256.equals(algorithm) && "sftp".equals(target.getAdaptorName())) {
+            StringBuilder output = new StringBuilder();
+            RemoteShell.run(target, "sha256sum -- " + RemoteShell.quote(targetFile.toString()), output::append);
+            return output.toString().split("\\s+")[0];
+        }
+        return checksumOf(target, targetFS, targetFile);
+    }
+
+    private String checksumOf(CopyInput input, FileSystem fs, Path file) throws XenonException, IOException {
+        ContentDigest digest = ContentDigest.of(algorithm);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = input.isLocal() ? new MappedInputStream(Paths.get(file.toString())) : fs.readFromFile(file)) {
+            int read = in.read(buffer);
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        return digest.hex();
+    }
+}
@@ -1,9 +1,10 @@
 package nl.esciencecenter.xenon.cli.createdir;
 
-import static nl.esciencecenter.xenon.cli.Utils.createFileSystem;
+import static nl.esciencecenter.xenon.cli.Utils.openFileSystem;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.filesystems.FileSystem;
 import nl.esciencecenter.xenon.filesystems.Path;
@@ -14,7 +15,8 @@ public class CreateDirectoryCommand extends XenonCommand {
         String pathIn = res.getString("path");
         Path dir = new Path(pathIn);
         Boolean createParent = res.getBoolean("parents");
-        try (FileSystem fs = createFileSystem(res)) {
+        try (Session<FileSystem> session = openFileSystem(res)) {
+            FileSystem fs = session.get();
             if (createParent) {
                 fs.createDirectories(dir);
             } else {
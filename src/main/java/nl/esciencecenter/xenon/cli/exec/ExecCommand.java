@@ -2,6 +2,7 @@ package nl.esciencecenter.xenon.cli.exec;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.schedulers.JobDescription;
 import nl.esciencecenter.xenon.schedulers.JobStatus;
@@ -9,8 +10,8 @@ import nl.esciencecenter.xenon.schedulers.Scheduler;
 import nl.esciencecenter.xenon.schedulers.Streams;
 import nl.esciencecenter.xenon.utils.StreamForwarder;
 
-import static nl.esciencecenter.xenon.cli.Utils.createScheduler;
 import static nl.esciencecenter.xenon.cli.Utils.getJobDescription;
+import static nl.esciencecenter.xenon.cli.Utils.openScheduler;
 
 /**
  * Command to execute job in the foreground
@@ -20,7 +21,8 @@ public class ExecCommand extends XenonCommand {
     public Object run(Namespace res) throws XenonException {
         JobDescription description = getJobDescription(res);
         long waitTimeout = res.getLong("wait_timeout");
-        try (Scheduler scheduler = createScheduler(res)) {
+        try (Session<Scheduler> session = openScheduler(res)) {
+            Scheduler scheduler = session.get();
             Streams streams = scheduler.submitInteractiveJob(description);
             StreamForwarder stdinForwarder = new StreamForwarder(System.in, streams.getStdin());
             StreamForwarder stdoutForwarder = new StreamForwarder(streams.getStdout(), System.out);
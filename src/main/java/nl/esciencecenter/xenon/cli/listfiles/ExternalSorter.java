@@ -0,0 +1,246 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+import com.google.gson.Gson;
+
+/**
+ * Sorts any number of items within a memory budget.
+ *
+ * Items are kept in memory until their estimated size reaches the budget,
+ * then they are sorted and spilled as a run to a temporary file with a JSON document per line.
+ * The sorted items are read by merging the runs.
+ *
+ * @param <T> Type of item, must be serializable by Gson
+ */
+public class ExternalSorter<T> implements Closeable {
+    /**
+     * Maximum number of runs merged at once, more runs are first merged into a single run to limit the number of open files
+     */
+    static final int MAX_MERGE_FAN_IN = 128;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Gson gson = new Gson();
+    private final Class<T> type;
+    private final Comparator<T> comparator;
+    private final long memoryBudget;
+    private final ToLongFunction<T> sizeOf;
+    private final List<T> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long bufferedSize = 0L;
+    private Path directory = null;
+    private Merger merger = null;
+
+    /**
+     * @param type Class of items
+     * @param comparator Order of items
+     * @param memoryBudget Estimated number of bytes of items kept in memory before they are spilled to disk
+     * @param sizeOf Estimate of number of bytes an item takes in memory
+     */
+    public ExternalSorter(Class<T> type, Comparator<T> comparator, long memoryBudget, ToLongFunction<T> sizeOf) {
+        this.type = type;
+        this.comparator = comparator;
+        this.memoryBudget = memoryBudget;
+        this.sizeOf = sizeOf;
+    }
+
+    public void add(T item) throws IOException {
+        buffer.add(item);
+        bufferedSize += sizeOf.applyAsLong(item);
+        if (bufferedSize >= memoryBudget) {
+            spill();
+        }
+    }
+
+    boolean hasSpilled() {
+        return !runs.isEmpty();
+    }
+
+    /**
+     * @return Sorted items, when they all fit in memory
+     */
+    List<T> sortedInMemory() {
+        if (hasSpilled()) {
+            throw new IllegalStateException("Items have been spilled to disk");
+        }
+        buffer.sort(comparator);
+        return buffer;
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(comparator);
+        if (runs.size() >= MAX_MERGE_FAN_IN) {
+            Path merged = newRun();
+            List<Path> inputs = new ArrayList<>(runs);
+            try (Merger merger = new Merger(inputs, null)) {
+                write(merger, merged);
+            }
+            deleteAll(inputs);
+            runs.clear();
+            runs.add(merged);
+        }
+        Path run = newRun();
+        write(buffer.iterator(), run);
+        runs.add(run);
+        buffer.clear();
+        bufferedSize = 0L;
+    }
+
+    private Path newRun() throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory("xenon-sort");
+            directory.toFile().deleteOnExit();
+        }
+        Path run = Files.createTempFile(directory, "run", ".jsonl");
+        run.toFile().deleteOnExit();
+        return run;
+    }
+
+    private void write(Iterator<T> items, Path run) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            while (items.hasNext()) {
+                gson.toJson(items.next(), type, writer);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * All items in sorted order, merged from spilled runs and items still in memory.
+     *
+     * @return Iterator which can be used once, close the sorter after use to remove the spilled runs
+     * @throws IOException when a run can not be opened
+     */
+    public Iterator<T> iterator() throws IOException {
+        buffer.sort(comparator);
+        merger = new Merger(runs, buffer.iterator());
+        return merger;
+    }
+
+    private static void deleteAll(List<Path> paths) throws IOException {
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (merger != null) {
+            merger.close();
+            merger = null;
+        }
+        deleteAll(runs);
+        runs.clear();
+        buffer.clear();
+        if (directory != null) {
+            Files.deleteIfExists(directory);
+            directory = null;
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs and an optional sorted iterator of items in memory
+     */
+    private class Merger implements Iterator<T>, Closeable {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> comparator.compare(a.item, b.item));
+        private final List<BufferedReader> readers = new ArrayList<>();
+
+        private class Head {
+            final T item;
+            final Iterator<T> source;
+
+            Head(T item, Iterator<T> source) {
+                this.item = item;
+                this.source = source;
+            }
+        }
+
+        Merger(List<Path> runs, Iterator<T> inMemory) throws IOException {
+            try {
+                for (Path run : runs) {
+                    BufferedReader reader = new BufferedReader(Files.newBufferedReader(run, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+                    readers.add(reader);
+                    advance(new RunIterator(reader));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                close();
+                throw e;
+            }
+            if (inMemory != null) {
+                advance(inMemory);
+            }
+        }
+
+        private void advance(Iterator<T> source) {
+            if (source.hasNext()) {
+                heads.add(new Head(source.next(), source));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.source);
+            return head.item;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private class RunIterator implements Iterator<T> {
+        private final BufferedReader reader;
+        private String line;
+
+        RunIterator(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            line = reader.readLine();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return line != null;
+        }
+
+        @Override
+        public T next() {
+            if (line == null) {
+                throw new NoSuchElementException();
+            }
+            T item = gson.fromJson(line, type);
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return item;
+        }
+    }
+}
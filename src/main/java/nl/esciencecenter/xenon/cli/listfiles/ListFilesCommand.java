@@ -1,14 +1,25 @@
 package nl.esciencecenter.xenon.cli.listfiles;
 
-import static nl.esciencecenter.xenon.cli.Utils.createFileSystem;
+import static nl.esciencecenter.xenon.cli.Utils.openFileSystem;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import com.google.gson.stream.JsonWriter;
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.XenonRuntimeException;
+import nl.esciencecenter.xenon.cli.JsonLinesWriter;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.filesystems.FileSystem;
 import nl.esciencecenter.xenon.filesystems.Path;
@@ -18,25 +29,39 @@ import nl.esciencecenter.xenon.filesystems.PathAttributes;
  * Command to list objects at path of location
  */
 public class ListFilesCommand extends XenonCommand {
-    public Object run(Namespace res) throws XenonException {
-        String path = res.getString("path");
-        Boolean recursive = res.getBoolean("recursive");
-        Boolean showhidden = res.getBoolean("hidden");
-        Boolean longFormat = res.getBoolean("long");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MEBIBYTE = 1024L * 1024L;
 
-        try (FileSystem fs = createFileSystem(res)) {
-            return listObjects(fs, path, recursive, showhidden, longFormat);
+    public Object run(Namespace res) throws XenonException {
+        try (Session<FileSystem> session = openFileSystem(res)) {
+            FileSystem fs = session.get();
+            return listObjects(fs, res);
         }
     }
 
-    private Object listObjects(FileSystem fs, String pathIn, Boolean recursive, Boolean showhidden, Boolean longFormat) throws XenonException {
-        Path start = new Path(pathIn);
-        Iterable<PathAttributes> iterable = fs.list(start, recursive);
+    private Object listObjects(FileSystem fs, Namespace res) throws XenonException {
+        try {
+            return formatObjects(fs, res);
+        } catch (XenonRuntimeException e) {
+            // directories of a pruned listing are listed while iterating
+            if (e.getCause() instanceof XenonException) {
+                throw (XenonException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-        // apply filters
-        Stream<PathAttributes> stream = fsListToStream(iterable);
-        if (!showhidden) {
-            stream = filterHidden(stream);
+    private Object formatObjects(FileSystem fs, Namespace res) throws XenonException {
+        Path start = new Path(res.getString("path"));
+        boolean recursive = res.getBoolean("recursive");
+        Stream<PathAttributes> stream;
+        if (res.getBoolean("hidden")) {
+            stream = fsListToStream(fs.list(start, recursive));
+        } else if (recursive) {
+            // prune hidden directories instead of listing and then filtering them
+            stream = fsListToStream(new VisibleListing(fs, start));
+        } else {
+            stream = fsListToStream(fs.list(start, false)).filter(item -> !item.isHidden());
         }
 
         if (!start.isAbsolute()) {
@@ -44,31 +69,92 @@ public class ListFilesCommand extends XenonCommand {
             // the start must be absolute to relativize()
             start = fs.getWorkingDirectory().resolve(start);
         }
+        Path base = start;
 
         // format
-        if (longFormat) {
-            return new ListFilesLongOutput(start, stream);
+        long memoryBudget = getMemoryBudget(res);
+        if (res.getBoolean("long")) {
+            PathPrefix.Table table = new PathPrefix.Table(base);
+            Stream<LongListItem> items = stream.map(item -> new LongListItem(item, table));
+            if (writeDirectly(items, true, res)) {
+                return null;
+            }
+            ExternalSorter<LongListItem> sorter = new ExternalSorter<>(LongListItem.class, LongListItem.byRelativePath(), memoryBudget, LongListItem::estimateSize);
+            return sort(items, sorter, ListFilesLongOutput::new, true);
         }
-        return new ListFilesOutput(start, stream);
+        Stream<String> items = stream.map(item -> base.relativize(item.getPath()).toString());
+        if (writeDirectly(items, false, res)) {
+            return null;
+        }
+        ExternalSorter<String> sorter = new ExternalSorter<>(String.class, Comparator.naturalOrder(), memoryBudget, item -> 40L + 2L * item.length());
+        return sort(items, sorter, ListFilesOutput::new, false);
     }
 
-    private static Stream<PathAttributes> fsListToStream(Iterable<PathAttributes> iterable) {
-        return StreamSupport.stream(iterable.spliterator(), false);
+    private static long getMemoryBudget(Namespace res) {
+        Integer sortMemory = res.getInt("sort_memory");
+        if (sortMemory == null) {
+            return Runtime.getRuntime().maxMemory() / 4;
+        }
+        return sortMemory * MEBIBYTE;
     }
 
-    private static Stream<PathAttributes> filterHidden(Stream<PathAttributes> stream) {
-        // keep track of all hidden dirs,
-        // if path starts with one of the hidden dirs than path is also hidden
-        // only works when parent dir is given before child
-        Set<Path> hiddenDirs = new HashSet<>();
-        return stream.filter(item -> {
-            if (item.isDirectory() && item.isHidden()) {
-                hiddenDirs.add(item.getPath());
+    /**
+     * Write items to stdout in order they are listed, when `--jsonl` or `--unsorted` is given.
+     *
+     * @return true when items have been written
+     */
+    private static boolean writeDirectly(Stream<?> items, boolean longFormat, Namespace res) throws XenonException {
+        if (JsonLinesWriter.isEnabled(res)) {
+            JsonLinesWriter records = new JsonLinesWriter(System.out);
+            items.forEach(records::write);
+            return true;
+        }
+        if (!Boolean.TRUE.equals(res.getBoolean("unsorted"))) {
+            return false;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            if (Boolean.TRUE.equals(res.getBoolean("json"))) {
+                JsonWriter jsonWriter = new JsonWriter(writer);
+                jsonWriter.setIndent("  ");
+                ListingWriter.writeJson(items.iterator(), jsonWriter);
+            } else {
+                ListingWriter.writeText(items.iterator(), longFormat, writer);
             }
-            // the current item is hidden or one of its parents is hidden
-            boolean parentIsHidden = hiddenDirs.stream().anyMatch(d -> item.getPath().startsWith(d));
-            boolean itemIsHidden = item.isHidden() || parentIsHidden;
-            return !itemIsHidden;
-        });
+            writer.flush();
+        } catch (IOException e) {
+            throw new XenonException("list", "Unable to write listing: " + e.getMessage(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Sort items in memory when they fit in the memory budget of the sorter, otherwise on disk
+     */
+    private static <T> Object sort(Stream<T> items, ExternalSorter<T> sorter, Function<List<T>, Object> inMemoryOutput, boolean longFormat) throws XenonException {
+        try {
+            Iterator<T> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                sorter.add(iterator.next());
+            }
+            if (sorter.hasSpilled()) {
+                // sorter is closed after the output has been written
+                return new SortedListingOutput(sorter, longFormat);
+            }
+            Object output = inMemoryOutput.apply(sorter.sortedInMemory());
+            sorter.close();
+            return output;
+        } catch (IOException e) {
+            try {
+                sorter.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw new XenonException("list", "Unable to sort listing: " + e.getMessage(), e);
+        }
+    }
+
+    private static Stream<PathAttributes> fsListToStream(Iterable<PathAttributes> iterable) {
+        return StreamSupport.stream(iterable.spliterator(), false);
     }
 }
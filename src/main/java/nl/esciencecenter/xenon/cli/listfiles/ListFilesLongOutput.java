@@ -3,7 +3,6 @@ package nl.esciencecenter.xenon.cli.listfiles;
 import nl.esciencecenter.xenon.filesystems.Path;
 import nl.esciencecenter.xenon.filesystems.PathAttributes;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -13,7 +12,12 @@ public class ListFilesLongOutput {
     public final List<LongListItem> files;
 
     ListFilesLongOutput(Path start, Stream<PathAttributes> stream) {
-        this.files = stream.map(o -> new LongListItem(o, start)).sorted(Comparator.comparing(d -> d.relativePath)).collect(Collectors.toList());
+        PathPrefix.Table table = new PathPrefix.Table(start);
+        this.files = stream.map(o -> new LongListItem(o, table)).sorted(LongListItem.byRelativePath()).collect(Collectors.toList());
+    }
+
+    ListFilesLongOutput(List<LongListItem> sortedFiles) {
+        this.files = sortedFiles;
     }
 
     @Override
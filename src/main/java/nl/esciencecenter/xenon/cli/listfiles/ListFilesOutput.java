@@ -18,6 +18,13 @@ public class ListFilesOutput {
         files = stream.map(item -> start.relativize(item.getPath()).toString()).sorted().collect(Collectors.toList());
     }
 
+    /**
+     * @param sortedFiles Relative paths, already sorted
+     */
+    ListFilesOutput(List<String> sortedFiles) {
+        files = sortedFiles;
+    }
+
     @Override
     public String toString() {
         String sep = System.getProperty("line.separator");
@@ -9,7 +9,8 @@ import net.sourceforge.argparse4j.inf.Subparsers;
 public class ListFilesParser implements IParser {
     public Subparser buildArgumentParser(Subparsers subparsers) {
         String sep = System.getProperty("line.separator");
-        String epilog = "Listing is sorted lexicographically." + sep +
+        String epilog = "Listing is sorted lexicographically, unless `--unsorted` is given." + sep +
+                "Listings larger than the sort memory are sorted using temporary files." + sep +
                 "Listing format by default is one file/directory per line." + sep +
                 sep +
                 "The `--long` format is tab separated, includes a header and contains the following columns:" + sep +
@@ -30,6 +31,11 @@ public class ListFilesParser implements IParser {
         subparser.addArgument("--recursive", "-r").help("List directories recursively").action(Arguments.storeTrue());
         subparser.addArgument("--hidden", "-A").help("Include hidden items").action(Arguments.storeTrue());
         subparser.addArgument("--long", "-l").help("Long listing format").action(Arguments.storeTrue());
+        subparser.addArgument("--unsorted", "-U").help("Print items in order they are listed, without keeping them in memory").action(Arguments.storeTrue());
+        subparser.addArgument("--sort-memory")
+            .type(Integer.class)
+            .metavar("MIB")
+            .help("Memory in mebibytes used for sorting before temporary files are used (default: a quarter of the maximum heap)");
         return subparser;
     }
 }
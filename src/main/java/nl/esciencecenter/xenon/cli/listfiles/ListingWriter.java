@@ -0,0 +1,59 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes items of a listing one by one, in the same formats as {@link ListFilesOutput} and {@link ListFilesLongOutput}
+ */
+class ListingWriter {
+    private ListingWriter() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * @param items Relative paths or long list items
+     * @param longFormat Whether items are long list items
+     * @param writer Writer to write text to
+     * @throws IOException when writing fails
+     */
+    static void writeText(Iterator<?> items, boolean longFormat, Writer writer) throws IOException {
+        String sep = System.getProperty("line.separator");
+        if (longFormat) {
+            writer.write(LongListItem.getHeader());
+            writer.write(sep);
+        }
+        boolean empty = true;
+        while (items.hasNext()) {
+            writer.write(items.next().toString());
+            writer.write(sep);
+            empty = false;
+        }
+        if (longFormat || empty) {
+            // same line endings as when the output is printed as a single string
+            writer.write(sep);
+        }
+    }
+
+    /**
+     * @param items Relative paths or long list items
+     * @param writer Writer to write `{"files": [...]}` document to
+     * @throws IOException when writing fails
+     */
+    static void writeJson(Iterator<?> items, JsonWriter writer) throws IOException {
+        Gson gson = new Gson();
+        writer.beginObject();
+        writer.name("files");
+        writer.beginArray();
+        while (items.hasNext()) {
+            Object item = items.next();
+            gson.toJson(item, item.getClass(), writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+}
@@ -1,58 +1,186 @@
 package nl.esciencecenter.xenon.cli.listfiles;
 
+import java.io.IOException;
 import java.time.Instant;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Set;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
 import nl.esciencecenter.xenon.filesystems.AttributeNotSupportedException;
 import nl.esciencecenter.xenon.filesystems.Path;
 import nl.esciencecenter.xenon.filesystems.PathAttributes;
 import nl.esciencecenter.xenon.filesystems.PosixFilePermission;
 
+/**
+ * Item of a long listing.
+ *
+ * Kept compact as large recursive listings hold many of them:
+ * the directory is shared with other items in the same directory, owner and group are interned,
+ * permissions are a bitmask and times are kept as milliseconds since epoch.
+ * Paths and times are formatted when the item is written.
+ */
+@JsonAdapter(LongListItem.Adapter.class)
 public class LongListItem {
-    public final String relativePath;
-    public final boolean isRegular;
-    public final boolean isDirectory;
-    final Set<PosixFilePermission> permissions;
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+    private static final byte REGULAR = 1;
+    private static final byte DIRECTORY = 2;
+    private static final byte SYMBOLIC_LINK = 4;
+    private static final byte OTHER = 8;
+    private static final byte HIDDEN = 16;
+
     final String owner;
     final String group;
-    private final String absolutePath;
+    private final PathPrefix directory;
+    private final String name;
     private final long size;
-    private final String createdAt;
-    private final String lastAccessedAt;
-    private final String lastModifiedAt;
-    private final boolean isHidden;
-    private final boolean isSymbolicLink;
-    private final boolean isOther;
+    private final long createdAt;
+    private final long lastAccessedAt;
+    private final long lastModifiedAt;
+    private final short permissions;
+    private final byte flags;
 
     LongListItem(PathAttributes attribs, Path start) {
-        relativePath = start.relativize(attribs.getPath()).toString();
-        absolutePath = attribs.getPath().toString();
+        this(attribs, new PathPrefix.Table(start));
+    }
+
+    LongListItem(PathAttributes attribs, PathPrefix.Table table) {
+        Path path = attribs.getPath();
+        directory = table.directoryOf(path);
+        name = path.getFileNameAsString();
         size = attribs.getSize();
         permissions = buildPermissions(attribs);
-        owner = buildOwner(attribs);
-        group = buildGroup(attribs);
-        createdAt = buildISO8601(attribs.getCreationTime());
-        lastAccessedAt = buildISO8601(attribs.getLastAccessTime());
-        lastModifiedAt = buildISO8601(attribs.getLastModifiedTime());
-        isHidden = attribs.isHidden();
-        isRegular = attribs.isRegular();
-        isDirectory = attribs.isDirectory();
-        isSymbolicLink = attribs.isSymbolicLink();
-        isOther = attribs.isOther();
+        owner = table.intern(buildOwner(attribs));
+        group = table.intern(buildGroup(attribs));
+        createdAt = attribs.getCreationTime();
+        lastAccessedAt = attribs.getLastAccessTime();
+        lastModifiedAt = attribs.getLastModifiedTime();
+        flags = buildFlags(attribs.isRegular(), attribs.isDirectory(), attribs.isSymbolicLink(), attribs.isOther(), attribs.isHidden());
+    }
+
+    private LongListItem(Builder builder) {
+        // the relative path is kept whole, it can not be split without knowing the separator
+        String relativePath = builder.relativePath == null ? "" : builder.relativePath;
+        String absolutePath = builder.absolutePath == null ? relativePath : builder.absolutePath;
+        String absolutePrefix = "";
+        if (absolutePath.endsWith(relativePath)) {
+            absolutePrefix = absolutePath.substring(0, absolutePath.length() - relativePath.length());
+        }
+        directory = PathPrefix.root(absolutePrefix);
+        name = relativePath;
+        size = builder.size;
+        permissions = builder.permissions;
+        owner = builder.owner;
+        group = builder.group;
+        createdAt = builder.createdAt;
+        lastAccessedAt = builder.lastAccessedAt;
+        lastModifiedAt = builder.lastModifiedAt;
+        flags = buildFlags(builder.isRegular, builder.isDirectory, builder.isSymbolicLink, builder.isOther, builder.isHidden);
+    }
+
+    /**
+     * @return Estimate of number of bytes this item takes in memory
+     */
+    long estimateSize() {
+        // object header and fields plus name, the directory, owner and group are shared
+        return 96L + 2L * name.length();
     }
 
     static String getHeader() {
         return String.join("\t", "Type", "Permissions", "Hidden", "Owner", "Group", "Size", "Last modified at", "Name");
     }
 
-    private String buildISO8601(long msSinceEpoch) {
+    /**
+     * @return Comparator ordering items by relative path, instances are not thread safe
+     */
+    static Comparator<LongListItem> byRelativePath() {
+        return new RelativePathComparator();
+    }
+
+    public String getRelativePath() {
+        if (directory.isRoot()) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(directory.relativeLength() + name.length());
+        appendRelativePath(sb);
+        return sb.toString();
+    }
+
+    public String getAbsolutePath() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(directory.getAbsolutePrefix());
+        appendRelativePath(sb);
+        return sb.toString();
+    }
+
+    private void appendRelativePath(StringBuilder sb) {
+        directory.appendRelative(sb);
+        sb.append(name);
+    }
+
+    public boolean isRegular() {
+        return (flags & REGULAR) != 0;
+    }
+
+    public boolean isDirectory() {
+        return (flags & DIRECTORY) != 0;
+    }
+
+    public boolean isSymbolicLink() {
+        return (flags & SYMBOLIC_LINK) != 0;
+    }
+
+    public boolean isOther() {
+        return (flags & OTHER) != 0;
+    }
+
+    public boolean isHidden() {
+        return (flags & HIDDEN) != 0;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Set<PosixFilePermission> getPermissions() {
+        Set<PosixFilePermission> result = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PERMISSIONS) {
+            if ((permissions & (1 << permission.ordinal())) != 0) {
+                result.add(permission);
+            }
+        }
+        return result;
+    }
+
+    private static byte buildFlags(boolean isRegular, boolean isDirectory, boolean isSymbolicLink, boolean isOther, boolean isHidden) {
+        int result = 0;
+        result |= isRegular ? REGULAR : 0;
+        result |= isDirectory ? DIRECTORY : 0;
+        result |= isSymbolicLink ? SYMBOLIC_LINK : 0;
+        result |= isOther ? OTHER : 0;
+        result |= isHidden ? HIDDEN : 0;
+        return (byte) result;
+    }
+
+    private static String buildISO8601(long msSinceEpoch) {
         if (msSinceEpoch == 0) {
             return null;
         }
         return Instant.ofEpochMilli(msSinceEpoch).toString();
     }
 
+    private static long parseISO8601(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return Instant.parse(value).toEpochMilli();
+    }
+
     private String buildGroup(PathAttributes attribs) {
         try {
             return attribs.getGroup();
@@ -69,40 +197,54 @@ public class LongListItem {
         }
     }
 
-    private Set<PosixFilePermission> buildPermissions(PathAttributes attribs) {
-        Set<PosixFilePermission> newPermissions = new HashSet<>();
+    private short buildPermissions(PathAttributes attribs) {
         try {
             if (attribs.getPermissions() != null) {
-                newPermissions = attribs.getPermissions();
+                return toBitmask(attribs.getPermissions());
             }
+            return 0;
         } catch (AttributeNotSupportedException e) {
+            int result = 0;
             if (attribs.isExecutable()) {
-                newPermissions.add(PosixFilePermission.OTHERS_EXECUTE);
+                result |= toBit(PosixFilePermission.OTHERS_EXECUTE);
             }
             if (attribs.isReadable()) {
-                newPermissions.add(PosixFilePermission.OTHERS_READ);
+                result |= toBit(PosixFilePermission.OTHERS_READ);
             }
             if (attribs.isWritable()) {
-                newPermissions.add(PosixFilePermission.OTHERS_WRITE);
+                result |= toBit(PosixFilePermission.OTHERS_WRITE);
             }
+            return (short) result;
         }
-        return newPermissions;
+    }
+
+    private static short toBitmask(Iterable<PosixFilePermission> permissions) {
+        int result = 0;
+        for (PosixFilePermission permission : permissions) {
+            result |= toBit(permission);
+        }
+        return (short) result;
+    }
+
+    private static int toBit(PosixFilePermission permission) {
+        return 1 << permission.ordinal();
     }
 
     public String toString() {
-        return String.join("\t", getFileType(), permissionsAsString(), String.valueOf(isHidden), owner == null ? "" : owner, group == null ? "" : group, String.valueOf(size), lastModifiedAt == null ? "" : lastModifiedAt, relativePath);
+        String lastModified = buildISO8601(lastModifiedAt);
+        return String.join("\t", getFileType(), permissionsAsString(), String.valueOf(isHidden()), owner == null ? "" : owner, group == null ? "" : group, String.valueOf(size), lastModified == null ? "" : lastModified, getRelativePath());
     }
 
     private String permissionsAsString() {
-        return new PosixFilePermissionFormatter(permissions).toString();
+        return new PosixFilePermissionFormatter(getPermissions()).toString();
     }
 
     private String getFileType() {
-        if (isRegular) {
+        if (isRegular()) {
             return "-";
-        } else if (isDirectory) {
+        } else if (isDirectory()) {
             return "d";
-        } else if (isSymbolicLink) {
+        } else if (isSymbolicLink()) {
             return "l";
         }
         // On unix other types are named pipe, socket, device file or door
@@ -110,4 +252,163 @@ public class LongListItem {
         // As Xenon does no do those types return o for other.
         return "o";
     }
+
+    /**
+     * Compares relative paths without building them when items share a directory
+     */
+    private static class RelativePathComparator implements Comparator<LongListItem> {
+        private final StringBuilder left = new StringBuilder();
+        private final StringBuilder right = new StringBuilder();
+
+        @Override
+        public int compare(LongListItem a, LongListItem b) {
+            if (a.directory == b.directory) {
+                return a.name.compareTo(b.name);
+            }
+            left.setLength(0);
+            a.appendRelativePath(left);
+            right.setLength(0);
+            b.appendRelativePath(right);
+            int length = Math.min(left.length(), right.length());
+            for (int i = 0; i < length; i++) {
+                int difference = left.charAt(i) - right.charAt(i);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return left.length() - right.length();
+        }
+    }
+
+    private static class Builder {
+        private String relativePath;
+        private String absolutePath;
+        private boolean isRegular;
+        private boolean isDirectory;
+        private boolean isSymbolicLink;
+        private boolean isOther;
+        private boolean isHidden;
+        private short permissions;
+        private String owner;
+        private String group;
+        private long size;
+        private long createdAt;
+        private long lastAccessedAt;
+        private long lastModifiedAt;
+    }
+
+    /**
+     * Writes same document as when all fields were kept as strings
+     */
+    static class Adapter extends TypeAdapter<LongListItem> {
+        @Override
+        public void write(JsonWriter out, LongListItem item) throws IOException {
+            if (item == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("relativePath").value(item.getRelativePath());
+            out.name("isRegular").value(item.isRegular());
+            out.name("isDirectory").value(item.isDirectory());
+            out.name("permissions");
+            out.beginArray();
+            for (PosixFilePermission permission : item.getPermissions()) {
+                out.value(permission.name());
+            }
+            out.endArray();
+            writeOptional(out, "owner", item.owner);
+            writeOptional(out, "group", item.group);
+            out.name("absolutePath").value(item.getAbsolutePath());
+            out.name("size").value(item.size);
+            writeOptional(out, "createdAt", buildISO8601(item.createdAt));
+            writeOptional(out, "lastAccessedAt", buildISO8601(item.lastAccessedAt));
+            writeOptional(out, "lastModifiedAt", buildISO8601(item.lastModifiedAt));
+            out.name("isHidden").value(item.isHidden());
+            out.name("isSymbolicLink").value(item.isSymbolicLink());
+            out.name("isOther").value(item.isOther());
+            out.endObject();
+        }
+
+        private static void writeOptional(JsonWriter out, String name, String value) throws IOException {
+            if (value != null) {
+                out.name(name).value(value);
+            }
+        }
+
+        @Override
+        public LongListItem read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Builder builder = new Builder();
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                readField(in, field, builder);
+            }
+            in.endObject();
+            return new LongListItem(builder);
+        }
+
+        private static void readField(JsonReader in, String field, Builder builder) throws IOException {
+            switch (field) {
+                case "relativePath":
+                    builder.relativePath = in.nextString();
+                    break;
+                case "absolutePath":
+                    builder.absolutePath = in.nextString();
+                    break;
+                case "isRegular":
+                    builder.isRegular = in.nextBoolean();
+                    break;
+                case "isDirectory":
+                    builder.isDirectory = in.nextBoolean();
+                    break;
+                case "isSymbolicLink":
+                    builder.isSymbolicLink = in.nextBoolean();
+                    break;
+                case "isOther":
+                    builder.isOther = in.nextBoolean();
+                    break;
+                case "isHidden":
+                    builder.isHidden = in.nextBoolean();
+                    break;
+                case "permissions":
+                    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        permissions.add(PosixFilePermission.valueOf(in.nextString()));
+                    }
+                    in.endArray();
+                    builder.permissions = toBitmask(permissions);
+                    break;
+                case "owner":
+                    builder.owner = in.nextString();
+                    break;
+                case "group":
+                    builder.group = in.nextString();
+                    break;
+                case "size":
+                    builder.size = in.nextLong();
+                    break;
+                case "createdAt":
+                    builder.createdAt = parseISO8601(in.nextString());
+                    break;
+                case "lastAccessedAt":
+                    builder.lastAccessedAt = parseISO8601(in.nextString());
+                    break;
+                case "lastModifiedAt":
+                    builder.lastModifiedAt = parseISO8601(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+    }
 }
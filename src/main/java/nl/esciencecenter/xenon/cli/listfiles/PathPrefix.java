@@ -0,0 +1,137 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.esciencecenter.xenon.filesystems.Path;
+
+/**
+ * Directory of a listed item, shared by all items in the same directory.
+ *
+ * The start of the listing is the root, its name is the absolute start path including a trailing separator.
+ * Other prefixes hold a single name relative to their parent.
+ */
+class PathPrefix {
+    private final PathPrefix parent;
+    private final String name;
+    private final char separator;
+
+    private PathPrefix(PathPrefix parent, String name, char separator) {
+        this.parent = parent;
+        this.name = name;
+        this.separator = separator;
+    }
+
+    /**
+     * @param start Absolute path where listing started
+     * @return Root prefix
+     */
+    static PathPrefix root(Path start) {
+        String name = start.toString();
+        char separator = start.getSeparator();
+        if (name.isEmpty() || name.charAt(name.length() - 1) != separator) {
+            name += separator;
+        }
+        return new PathPrefix(null, name, separator);
+    }
+
+    /**
+     * @param absolutePrefix Part of absolute path before the relative path, including trailing separator
+     * @return Root prefix
+     */
+    static PathPrefix root(String absolutePrefix) {
+        return new PathPrefix(null, absolutePrefix, '/');
+    }
+
+    boolean isRoot() {
+        return parent == null;
+    }
+
+    PathPrefix getRoot() {
+        PathPrefix root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root;
+    }
+
+    /**
+     * Append path relative to root followed by a separator, nothing for the root itself
+     */
+    void appendRelative(StringBuilder sb) {
+        if (parent == null) {
+            return;
+        }
+        parent.appendRelative(sb);
+        sb.append(name).append(separator);
+    }
+
+    int relativeLength() {
+        if (parent == null) {
+            return 0;
+        }
+        return parent.relativeLength() + name.length() + 1;
+    }
+
+    String getAbsolutePrefix() {
+        return getRoot().name;
+    }
+
+    /**
+     * Directories seen during a listing, so items in the same directory share a single prefix.
+     *
+     * Also interns owner and group names, which repeat for most items.
+     */
+    static class Table {
+        private final Path start;
+        private final PathPrefix root;
+        private final Map<Path, PathPrefix> directories = new HashMap<>();
+        private final Map<String, String> names = new HashMap<>();
+        private Path lastDirectory;
+        private PathPrefix lastPrefix;
+
+        Table(Path start) {
+            this.start = start;
+            this.root = root(start);
+        }
+
+        /**
+         * @param path Absolute path of listed item
+         * @return Prefix of directory containing path
+         */
+        PathPrefix directoryOf(Path path) {
+            Path relative = start.relativize(path);
+            if (relative.getNameCount() <= 1) {
+                return root;
+            }
+            Path directory = relative.getParent();
+            // listings return items of the same directory after each other
+            if (!directory.equals(lastDirectory)) {
+                lastPrefix = lookup(directory);
+                lastDirectory = directory;
+            }
+            return lastPrefix;
+        }
+
+        private PathPrefix lookup(Path directory) {
+            if (directory == null || directory.getNameCount() == 0) {
+                return root;
+            }
+            PathPrefix prefix = directories.get(directory);
+            if (prefix == null) {
+                PathPrefix parent = lookup(directory.getParent());
+                prefix = new PathPrefix(parent, intern(directory.getFileNameAsString()), directory.getSeparator());
+                directories.put(directory, prefix);
+            }
+            return prefix;
+        }
+
+        String intern(String name) {
+            if (name == null) {
+                return null;
+            }
+            String interned = names.putIfAbsent(name, name);
+            return interned == null ? name : interned;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.stream.JsonWriter;
+
+import nl.esciencecenter.xenon.cli.StreamingOutput;
+
+/**
+ * Listing which did not fit in memory and was sorted on disk.
+ *
+ * The items are merged from disk while they are written, so the listing can only be written once.
+ * The temporary files are removed after writing.
+ */
+public class SortedListingOutput implements StreamingOutput {
+    private final ExternalSorter<?> sorter;
+    private final boolean longFormat;
+
+    SortedListingOutput(ExternalSorter<?> sorter, boolean longFormat) {
+        this.sorter = sorter;
+        this.longFormat = longFormat;
+    }
+
+    @Override
+    public void writeText(Writer writer) throws IOException {
+        try {
+            ListingWriter.writeText(sorter.iterator(), longFormat, writer);
+        } finally {
+            sorter.close();
+        }
+    }
+
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        try {
+            ListingWriter.writeJson(sorter.iterator(), writer);
+        } finally {
+            sorter.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.XenonRuntimeException;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+/**
+ * Recursive listing which skips hidden items and does not descend into hidden directories,
+ * so hidden subtrees are never fetched from the filesystem.
+ *
+ * Items are returned in the same order as {@link FileSystem#list(Path, boolean)},
+ * all items of a directory followed by the listings of its sub directories.
+ * Directories are listed one at a time while iterating,
+ * a failure to list is thrown as {@link XenonRuntimeException} with the {@link XenonException} as cause.
+ */
+class VisibleListing implements Iterable<PathAttributes> {
+    private final FileSystem fs;
+    private final Path start;
+
+    VisibleListing(FileSystem fs, Path start) {
+        this.fs = fs;
+        this.start = start;
+    }
+
+    @Override
+    public Iterator<PathAttributes> iterator() {
+        return new Walker();
+    }
+
+    private class Walker implements Iterator<PathAttributes> {
+        // sub directories still to be listed, innermost directory on top
+        private final Deque<Iterator<Path>> pending = new ArrayDeque<>();
+        private Iterator<PathAttributes> current;
+        private List<Path> directories = new ArrayList<>();
+        private PathAttributes next;
+
+        Walker() {
+            pending.push(Collections.singletonList(start).iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (current != null && current.hasNext()) {
+                    PathAttributes item = current.next();
+                    if (!item.isHidden()) {
+                        if (item.isDirectory()) {
+                            directories.add(item.getPath());
+                        }
+                        next = item;
+                    }
+                } else if (!listNextDirectory()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean listNextDirectory() {
+            if (!directories.isEmpty()) {
+                pending.push(directories.iterator());
+                directories = new ArrayList<>();
+            }
+            while (!pending.isEmpty() && !pending.peek().hasNext()) {
+                pending.pop();
+            }
+            if (pending.isEmpty()) {
+                current = null;
+                return false;
+            }
+            Path directory = pending.peek().next();
+            try {
+                current = fs.list(directory, false).iterator();
+            } catch (XenonException e) {
+                throw new XenonRuntimeException("list", "Unable to list " + directory, e);
+            }
+            return true;
+        }
+
+        @Override
+        public PathAttributes next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PathAttributes item = next;
+            next = null;
+            return item;
+        }
+    }
+}
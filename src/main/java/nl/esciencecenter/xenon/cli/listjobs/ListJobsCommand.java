@@ -1,6 +1,6 @@
 package nl.esciencecenter.xenon.cli.listjobs;
 
-import static nl.esciencecenter.xenon.cli.Utils.createScheduler;
+import static nl.esciencecenter.xenon.cli.Utils.openScheduler;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -9,6 +9,8 @@ import java.util.List;
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.JsonLinesWriter;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.schedulers.JobStatus;
 import nl.esciencecenter.xenon.schedulers.Scheduler;
@@ -21,8 +23,8 @@ public class ListJobsCommand extends XenonCommand {
     public ListJobsOutput run(Namespace res) throws XenonException {
         List<String> queues = res.getList("queue");
         List<String> identifiers = res.getList("identifier");
-        try (Scheduler scheduler = createScheduler(res)) {
-
+        try (Session<Scheduler> session = openScheduler(res)) {
+            Scheduler scheduler = session.get();
             if (identifiers == null) {
                 if (queues == null) {
                     queues = new ArrayList<>();
@@ -32,6 +34,11 @@ public class ListJobsCommand extends XenonCommand {
 
             List<JobStatus> statuses = Arrays.asList(scheduler.getJobStatuses(identifiers.toArray(new String[0])));
 
+            if (JsonLinesWriter.isEnabled(res)) {
+                JsonLinesWriter records = new JsonLinesWriter(System.out);
+                statuses.forEach(records::write);
+                return null;
+            }
             return new ListJobsOutput(statuses);
         }
     }
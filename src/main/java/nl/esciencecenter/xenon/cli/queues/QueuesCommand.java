@@ -1,10 +1,11 @@
 package nl.esciencecenter.xenon.cli.queues;
 
-import static nl.esciencecenter.xenon.cli.Utils.createScheduler;
+import static nl.esciencecenter.xenon.cli.Utils.openScheduler;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.schedulers.Scheduler;
 
@@ -14,8 +15,8 @@ import nl.esciencecenter.xenon.schedulers.Scheduler;
 public class QueuesCommand extends XenonCommand {
     @Override
     public QueuesOutput run(Namespace res) throws XenonException {
-        try (Scheduler scheduler = createScheduler(res)) {
-
+        try (Session<Scheduler> session = openScheduler(res)) {
+            Scheduler scheduler = session.get();
             String[] queues = scheduler.getQueueNames();
             String defaultQueue = scheduler.getDefaultQueueName();
 
@@ -1,9 +1,10 @@
 package nl.esciencecenter.xenon.cli.removefile;
 
-import static nl.esciencecenter.xenon.cli.Utils.createFileSystem;
+import static nl.esciencecenter.xenon.cli.Utils.openFileSystem;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.filesystems.FileSystem;
 import nl.esciencecenter.xenon.filesystems.Path;
@@ -16,7 +17,8 @@ public class RemoveFileCommand extends XenonCommand {
     public RemoveFileOutput run(Namespace res) throws XenonException {
         String path = res.getString("path");
         Boolean recursive = res.getBoolean("recursive");
-        try (FileSystem fs = createFileSystem(res)) {
+        try (Session<FileSystem> session = openFileSystem(res)) {
+            FileSystem fs = session.get();
             remove(fs, path, recursive);
             return new RemoveFileOutput(fs.getLocation(), path);
         }
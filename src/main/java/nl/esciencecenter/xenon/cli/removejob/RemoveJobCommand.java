@@ -1,10 +1,11 @@
 package nl.esciencecenter.xenon.cli.removejob;
 
-import static nl.esciencecenter.xenon.cli.Utils.createScheduler;
+import static nl.esciencecenter.xenon.cli.Utils.openScheduler;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.schedulers.Scheduler;
 
@@ -16,7 +17,8 @@ public class RemoveJobCommand extends XenonCommand {
     public RemoveJobOutput run(Namespace res) throws XenonException {
         String jobId = res.getString("job_identifier");
 
-        try (Scheduler scheduler = createScheduler(res)) {
+        try (Session<Scheduler> session = openScheduler(res)) {
+            Scheduler scheduler = session.get();
             scheduler.cancelJob(jobId);
             return new RemoveJobOutput(scheduler.getLocation(), jobId);
         }
@@ -1,9 +1,10 @@
 package nl.esciencecenter.xenon.cli.rename;
 
-import static nl.esciencecenter.xenon.cli.Utils.createFileSystem;
+import static nl.esciencecenter.xenon.cli.Utils.openFileSystem;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.filesystems.FileSystem;
 import nl.esciencecenter.xenon.filesystems.Path;
@@ -16,7 +17,8 @@ public class RenameCommand extends XenonCommand {
         Path source = new Path(sourceIn);
         Path target = new Path(targetIn);
 
-        try (FileSystem fs = createFileSystem(res)) {
+        try (Session<FileSystem> session = openFileSystem(res)) {
+            FileSystem fs = session.get();
             fs.rename(source, target);
             return new RenameOutput(fs.getLocation(), source, target);
         }
@@ -0,0 +1,45 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the stdin chunks sent by the client
+ */
+class ChunkInputStream extends InputStream {
+    private final DataInputStream in;
+    private int remaining = 0;
+    private boolean eof = false;
+
+    ChunkInputStream(DataInputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int len = read(b, 0, 1);
+        return len == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (remaining == 0) {
+            if (eof) {
+                return -1;
+            }
+            remaining = in.readInt();
+            eof = remaining == 0;
+        }
+        int read = in.read(b, off, Math.min(len, remaining));
+        if (read == -1) {
+            throw new IOException("Client closed connection before end of stdin");
+        }
+        remaining -= read;
+        return read;
+    }
+}
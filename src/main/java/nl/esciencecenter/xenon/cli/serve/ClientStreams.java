@@ -0,0 +1,305 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Standard streams of the client of each thread of the daemon, so commands of several clients can run at once.
+ *
+ * System.out, System.err and System.in are replaced once by streams which forward to the client of the current thread.
+ * Threads started by a command inherit its client, for example copy workers and the progress reporter.
+ * Once the command is done, those threads and threads without a client use the streams of the daemon.
+ */
+final class ClientStreams {
+    private static final InheritableThreadLocal<ClientStreams> CURRENT = new InheritableThreadLocal<>();
+    private static PrintStream daemonOut = null;
+    private static PrintStream daemonErr = null;
+    private static InputStream daemonIn = null;
+
+    private volatile PrintStream out;
+    private volatile PrintStream err;
+    private volatile InputStream in;
+
+    private ClientStreams(PrintStream out, PrintStream err, InputStream in) {
+        this.out = out;
+        this.err = err;
+        this.in = in;
+    }
+
+    /**
+     * Replace System.out, System.err and System.in by streams which forward to the client of the current thread
+     */
+    static synchronized void install() {
+        if (daemonOut != null) {
+            return;
+        }
+        daemonOut = System.out;
+        daemonErr = System.err;
+        daemonIn = System.in;
+        System.setOut(new ForwardingPrintStream(daemonOut, client -> client.out));
+        System.setErr(new ForwardingPrintStream(daemonErr, client -> client.err));
+        System.setIn(new ForwardingInputStream(daemonIn));
+    }
+
+    /**
+     * Put back the streams of the daemon
+     */
+    static synchronized void uninstall() {
+        if (daemonOut == null) {
+            return;
+        }
+        System.setOut(daemonOut);
+        System.setErr(daemonErr);
+        System.setIn(daemonIn);
+        daemonOut = null;
+        daemonErr = null;
+        daemonIn = null;
+    }
+
+    /**
+     * Use streams of client in current thread and threads it starts until the returned client is detached
+     */
+    static ClientStreams attach(PrintStream out, PrintStream err, InputStream in) {
+        ClientStreams client = new ClientStreams(out, err, in);
+        CURRENT.set(client);
+        return client;
+    }
+
+    /**
+     * Stop forwarding to the client, also in threads which inherited it and outlive the command
+     */
+    void detach() {
+        out = null;
+        err = null;
+        in = null;
+        CURRENT.remove();
+    }
+
+    private static <T> T current(Function<ClientStreams, T> stream, T daemon) {
+        ClientStreams client = CURRENT.get();
+        T value = client == null ? null : stream.apply(client);
+        return value == null ? daemon : value;
+    }
+
+    /**
+     * Forwards each call to the stream of the current client, without the lock of PrintStream,
+     * so a slow client does not hold up the output of others
+     */
+    private static class ForwardingPrintStream extends PrintStream {
+        private final PrintStream daemon;
+        private final Function<ClientStreams, PrintStream> stream;
+
+        ForwardingPrintStream(PrintStream daemon, Function<ClientStreams, PrintStream> stream) {
+            super(daemon, true);
+            this.daemon = daemon;
+            this.stream = stream;
+        }
+
+        private PrintStream target() {
+            return current(stream, daemon);
+        }
+
+        @Override
+        public void write(int b) {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            target().write(buf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            target().flush();
+        }
+
+        @Override
+        public void close() {
+            // streams of a client are closed by the daemon when its command is done
+            flush();
+        }
+
+        @Override
+        public boolean checkError() {
+            return target().checkError();
+        }
+
+        @Override
+        public void print(boolean b) {
+            target().print(b);
+        }
+
+        @Override
+        public void print(char c) {
+            target().print(c);
+        }
+
+        @Override
+        public void print(int i) {
+            target().print(i);
+        }
+
+        @Override
+        public void print(long l) {
+            target().print(l);
+        }
+
+        @Override
+        public void print(float f) {
+            target().print(f);
+        }
+
+        @Override
+        public void print(double d) {
+            target().print(d);
+        }
+
+        @Override
+        public void print(char[] s) {
+            target().print(s);
+        }
+
+        @Override
+        public void print(String s) {
+            target().print(s);
+        }
+
+        @Override
+        public void print(Object obj) {
+            target().print(obj);
+        }
+
+        @Override
+        public void println() {
+            target().println();
+        }
+
+        @Override
+        public void println(boolean x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(char x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(int x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(long x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(float x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(double x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(char[] x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(String x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(Object x) {
+            target().println(x);
+        }
+
+        @Override
+        public PrintStream printf(String format, Object... args) {
+            target().printf(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream printf(Locale l, String format, Object... args) {
+            target().printf(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args) {
+            target().format(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            target().format(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq) {
+            target().append(csq);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq, int start, int end) {
+            target().append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(char c) {
+            target().append(c);
+            return this;
+        }
+    }
+
+    private static class ForwardingInputStream extends InputStream {
+        private final InputStream daemon;
+
+        ForwardingInputStream(InputStream daemon) {
+            this.daemon = daemon;
+        }
+
+        private InputStream target() {
+            return current(client -> client.in, daemon);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return target().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target().close();
+        }
+    }
+}
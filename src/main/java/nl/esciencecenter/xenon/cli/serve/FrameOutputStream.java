@@ -0,0 +1,35 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sends everything written to it as stdout or stderr frames to the client
+ */
+class FrameOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final byte type;
+
+    FrameOutputStream(DataOutputStream out, byte type) {
+        this.out = out;
+        this.type = type;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            ServeProtocol.writeFrame(out, type, b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
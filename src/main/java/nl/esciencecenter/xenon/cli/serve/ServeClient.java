@@ -0,0 +1,109 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+
+/**
+ * Forwards a command to a running `xenon serve` daemon
+ */
+public class ServeClient {
+    /**
+     * Environment variable with path to endpoint file of daemon
+     */
+    public static final String ENDPOINT_ENV = "XENON_SERVE";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private final Path endpointFile;
+
+    public ServeClient(Path endpointFile) {
+        this.endpointFile = endpointFile;
+    }
+
+    /**
+     * Let daemon run command with arguments
+     *
+     * @param args Command line arguments
+     * @return Exit status of command or null when the command should be run by the client itself
+     */
+    public Integer forward(String[] args) {
+        Socket socket;
+        ServeProtocol.Endpoint endpoint;
+        try {
+            endpoint = ServeProtocol.readEndpoint(endpointFile);
+            socket = new Socket(InetAddress.getLoopbackAddress(), endpoint.port);
+        } catch (IOException | NumberFormatException e) {
+            // no daemon running
+            return null;
+        }
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeUTF(endpoint.token);
+            out.writeUTF(System.getProperty("user.dir"));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            return receive(in, out);
+        } catch (IOException e) {
+            System.err.println("Lost connection to xenon daemon: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private Integer receive(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            if (type == ServeProtocol.STDOUT) {
+                write(System.out, ServeProtocol.readPayload(in));
+            } else if (type == ServeProtocol.STDERR) {
+                write(System.err, ServeProtocol.readPayload(in));
+            } else if (type == ServeProtocol.ACCEPT) {
+                startStdinForwarder(out);
+            } else if (type == ServeProtocol.REFUSE) {
+                return null;
+            } else if (type == ServeProtocol.EXIT) {
+                int status = in.readInt();
+                System.out.flush();
+                System.err.flush();
+                return status;
+            } else {
+                throw new IOException("Unknown frame type " + type);
+            }
+        }
+    }
+
+    private static void write(PrintStream stream, byte[] payload) {
+        stream.write(payload, 0, payload.length);
+    }
+
+    private static void startStdinForwarder(DataOutputStream out) {
+        // a daemon thread, so blocking on a stdin which the command never reads does not keep the client alive
+        Thread forwarder = new Thread(() -> {
+            InputStream stdin = System.in;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try {
+                int len = stdin.read(buffer);
+                while (len != -1) {
+                    if (len > 0) {
+                        ServeProtocol.writeChunk(out, buffer, len);
+                    }
+                    len = stdin.read(buffer);
+                }
+                ServeProtocol.writeChunk(out, buffer, 0);
+            } catch (IOException e) {
+                // daemon closed connection after command completed
+            }
+        }, "xenon-stdin-forwarder");
+        forwarder.setDaemon(true);
+        forwarder.start();
+    }
+}
@@ -0,0 +1,192 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.SessionPool;
+import nl.esciencecenter.xenon.cli.Utils;
+import nl.esciencecenter.xenon.cli.XenonCommand;
+
+/**
+ * Command to run a daemon which runs commands of clients, while keeping their filesystems and schedulers open
+ */
+public class ServeCommand extends XenonCommand {
+    /**
+     * Time given to client to close the connection after the exit status has been sent
+     */
+    private static final int LINGER_TIMEOUT = 1000;
+
+    @Override
+    public Object run(Namespace res) throws XenonException {
+        Path endpointFile = Paths.get(res.getString("endpoint_file"));
+        int port = res.getInt("port");
+        long idleTimeout = res.getLong("idle_timeout");
+        long sessionIdleTimeout = res.getLong("session_idle_timeout");
+        int maxSessionsPerHost = res.getInt("max_sessions_per_host");
+        String token = newToken();
+        try (
+            ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            SessionPool pool = new SessionPool(sessionIdleTimeout, maxSessionsPerHost)
+        ) {
+            server.setSoTimeout((int) Math.min(idleTimeout, Integer.MAX_VALUE));
+            publishEndpoint(endpointFile, server.getLocalPort(), token);
+            SessionPool previous = Utils.setSessionPool(pool);
+            try {
+                serve(server, token);
+            } finally {
+                Utils.setSessionPool(previous);
+            }
+        } catch (IOException e) {
+            throw new XenonException("serve", e.getMessage(), e);
+        } finally {
+            try {
+                Files.deleteIfExists(endpointFile);
+            } catch (IOException e) {
+                // endpoint file of a stopped daemon is harmless, clients will fail to connect and run commands themselves
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Accept clients until the daemon has been idle for the idle timeout, each client is served by a thread of its own
+     */
+    private void serve(ServerSocket server, String token) {
+        AtomicInteger running = new AtomicInteger();
+        ClientStreams.install();
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (running.get() == 0) {
+                        // idle timeout reached
+                        return;
+                    }
+                    continue;
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    continue;
+                }
+                running.incrementAndGet();
+                Thread thread = new Thread(() -> {
+                    try (Socket client = socket) {
+                        handle(client, token);
+                    } catch (IOException e) {
+                        // a broken connection only affects that client
+                        System.err.println(e.getMessage());
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }, "xenon-serve-client");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } finally {
+            ClientStreams.uninstall();
+        }
+    }
+
+    private void handle(Socket socket, String token) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        byte[] clientToken = in.readUTF().getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(clientToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new IOException("Client with invalid token refused");
+        }
+        String workingDirectory = in.readUTF();
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        int status = runCommand(in, out, workingDirectory, args);
+        if (status >= 0) {
+            ServeProtocol.writeExit(out, status);
+        }
+        // let client close first, so any unread stdin chunks do not reset the connection before the client has the exit status
+        socket.shutdownOutput();
+        socket.setSoTimeout(LINGER_TIMEOUT);
+        try {
+            while (in.read() != -1) {
+                // discard
+            }
+        } catch (SocketTimeoutException e) {
+            // client did not close in time
+        }
+    }
+
+    /**
+     * Run command with stdin, stdout and stderr of the client
+     *
+     * @return Exit status or -1 when the command was refused
+     */
+    private int runCommand(DataInputStream in, DataOutputStream out, String workingDirectory, String[] args) throws IOException {
+        PrintStream clientOut = new PrintStream(new FrameOutputStream(out, ServeProtocol.STDOUT), true);
+        PrintStream clientErr = new PrintStream(new FrameOutputStream(out, ServeProtocol.STDERR), true);
+        ClientStreams client = ClientStreams.attach(clientOut, clientErr, new ChunkInputStream(in));
+        int status = 0;
+        try {
+            new ServeMain(out, workingDirectory).runAndPrint(args);
+        } catch (ServeMain.ExitException e) {
+            status = e.getStatus();
+        } catch (ServeMain.RefusedException e) {
+            status = -1;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            status = 1;
+        } finally {
+            clientOut.flush();
+            clientErr.flush();
+            client.detach();
+        }
+        if (status == -1) {
+            ServeProtocol.writeSignal(out, ServeProtocol.REFUSE);
+        }
+        return status;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Write port and token to endpoint file, which is only readable by current user as the token gives access to the daemon
+     */
+    private static void publishEndpoint(Path endpointFile, int port, String token) throws IOException {
+        Path dir = endpointFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            tmp = Files.createTempFile(dir, "xenon", ".endpoint", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            tmp = Files.createTempFile(dir, "xenon", ".endpoint");
+        }
+        ServeProtocol.writeEndpoint(tmp, port, token);
+        Files.move(tmp, endpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,117 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import nl.esciencecenter.xenon.cli.ICommand;
+import nl.esciencecenter.xenon.cli.Main;
+import nl.esciencecenter.xenon.cli.Utils;
+import nl.esciencecenter.xenon.cli.batch.BatchCommand;
+import nl.esciencecenter.xenon.cli.copy.DownloadCommand;
+import nl.esciencecenter.xenon.cli.copy.UploadCommand;
+import nl.esciencecenter.xenon.cli.exec.ExecCommand;
+import nl.esciencecenter.xenon.cli.sync.SyncCommand;
+
+/**
+ * Runs a single command of a client inside the daemon
+ */
+class ServeMain extends Main {
+    private static final List<String> LOCAL_PATH_KEYS = Arrays.asList("path", "source", "target", "source_path", "target_path");
+    /**
+     * Options which name a local file whatever the adaptor is
+     */
+    private static final List<String> LOCAL_FILE_OPTION_KEYS = Arrays.asList("profile_file", "journal", "files_from");
+    private final DataOutputStream out;
+    private final String workingDirectory;
+
+    ServeMain(DataOutputStream out, String workingDirectory) {
+        this.out = out;
+        this.workingDirectory = workingDirectory;
+    }
+
+    @Override
+    protected void exit(int status) {
+        throw new ExitException(status);
+    }
+
+    @Override
+    public Object run(ICommand subCommand) {
+        if (!isSupported(subCommand)) {
+            throw new RefusedException();
+        }
+        try {
+            ServeProtocol.writeSignal(out, ServeProtocol.ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return super.run(subCommand);
+    }
+
+    private boolean isSupported(ICommand subCommand) {
+        if (subCommand instanceof ExecCommand || subCommand instanceof ServeCommand) {
+            // exec needs the terminal of the client and serve would nest daemons
+            return false;
+        }
+        // the daemon can not change its working directory, so relative local paths must be resolved by the client itself
+        boolean sameWorkingDirectory = workingDirectory.equals(System.getProperty("user.dir"));
+        if (subCommand instanceof BatchCommand) {
+            // commands in batch file could have relative local paths
+            return sameWorkingDirectory;
+        }
+        return sameWorkingDirectory || !hasRelativeLocalPath(subCommand);
+    }
+
+    private boolean hasRelativeLocalPath(ICommand subCommand) {
+        Namespace res = getRes();
+        return isRelative(res, LOCAL_FILE_OPTION_KEYS) || isRelative(res, localPathKeys(subCommand, res));
+    }
+
+    private static List<String> localPathKeys(ICommand subCommand, Namespace res) {
+        List<String> keys;
+        if (subCommand instanceof UploadCommand) {
+            keys = Collections.singletonList("source");
+        } else if (subCommand instanceof DownloadCommand) {
+            keys = Collections.singletonList("target");
+        } else if (Utils.isLocalAdaptor(res.getString("adaptor"))) {
+            // also both sides of a local sync
+            keys = LOCAL_PATH_KEYS;
+        } else if (subCommand instanceof SyncCommand) {
+            // one side of a sync is always local, a relative one would be synced and deleted in the wrong directory
+            keys = Collections.singletonList(Boolean.TRUE.equals(res.getBoolean("download")) ? "target" : "source");
+        } else {
+            keys = Collections.emptyList();
+        }
+        return keys;
+    }
+
+    private static boolean isRelative(Namespace res, List<String> keys) {
+        return keys.stream()
+            .map(res::getString)
+            .anyMatch(path -> path != null && !"-".equals(path) && !Paths.get(path).isAbsolute());
+    }
+
+    static class ExitException extends RuntimeException {
+        private final int status;
+
+        ExitException(int status) {
+            super("Exit with status " + status);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+
+    static class RefusedException extends RuntimeException {
+        RefusedException() {
+            super("Command can not be run by daemon");
+        }
+    }
+}
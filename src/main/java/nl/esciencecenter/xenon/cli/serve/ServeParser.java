@@ -0,0 +1,43 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.nio.file.Paths;
+
+import net.sourceforge.argparse4j.inf.Subparser;
+import net.sourceforge.argparse4j.inf.Subparsers;
+import nl.esciencecenter.xenon.cli.IParser;
+import nl.esciencecenter.xenon.cli.SessionPool;
+
+public class ServeParser implements IParser {
+    private static final long DEFAULT_SESSION_IDLE_TIMEOUT = 10 * 60 * 1000L;
+
+    @Override
+    public Subparser buildArgumentParser(Subparsers subparsers) {
+        String sep = System.getProperty("line.separator");
+        String epilog = "The daemon listens on the loopback interface and writes its port and access token to the endpoint file." + sep +
+                "A xenon command with the " + ServeClient.ENDPOINT_ENV + " environment variable set to the endpoint file is run by the daemon," + sep +
+                "reusing filesystems and schedulers of earlier commands with the same adaptor, location, credential and properties." + sep +
+                sep +
+                "Commands are run one at a time. The exec command and commands with relative local paths from another working directory" + sep +
+                "are run by the client itself, as is any command when the daemon is not running." + sep;
+        Subparser subparser = subparsers.addParser("serve")
+            .setDefault("command", new ServeCommand())
+            .defaultHelp(true)
+            .help("Run daemon which keeps filesystems and schedulers open between commands")
+            .description("Run daemon which keeps filesystems and schedulers open between commands")
+            .epilog(epilog);
+        subparser.addArgument("--endpoint-file")
+            .help("File to write port and access token of daemon to")
+            .setDefault(Paths.get(System.getProperty("user.home"), ".xenon", "serve").toString());
+        subparser.addArgument("--port").type(Integer.class).help("Port to listen on, by default a free port is picked").setDefault(0);
+        subparser.addArgument("--idle-timeout").type(Long.class).help("Stop daemon after this number of milliseconds without commands, by default runs forever").setDefault(0L);
+        subparser.addArgument("--session-idle-timeout")
+            .type(Long.class)
+            .help("Close a filesystem or scheduler after it has not been used for this number of milliseconds")
+            .setDefault(DEFAULT_SESSION_IDLE_TIMEOUT);
+        subparser.addArgument("--max-sessions-per-host")
+            .type(Integer.class)
+            .help("Maximum number of open filesystems and schedulers per host")
+            .setDefault(SessionPool.DEFAULT_MAX_SESSIONS_PER_HOST);
+        return subparser;
+    }
+}
@@ -0,0 +1,92 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Wire format between the xenon client and the `xenon serve` daemon.
+ *
+ * The client sends the token, its working directory and the arguments,
+ * followed by stdin as length prefixed chunks where a zero length chunk marks the end of stdin.
+ * The daemon answers with frames of a type byte followed by a payload,
+ * stdout and stderr frames have a length prefixed payload and the exit frame has the exit status as payload.
+ */
+final class ServeProtocol {
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    /**
+     * Command will be run by the daemon, client should start forwarding stdin
+     */
+    static final byte ACCEPT = 3;
+    /**
+     * Command can not be run by the daemon, client should run it itself
+     */
+    static final byte REFUSE = 4;
+    static final byte EXIT = 5;
+
+    private ServeProtocol() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, byte[] b, int off, int len) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(len);
+            out.write(b, off, len);
+        }
+    }
+
+    static void writeSignal(DataOutputStream out, byte type) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.flush();
+        }
+    }
+
+    static void writeExit(DataOutputStream out, int status) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    static void writeChunk(DataOutputStream out, byte[] b, int len) throws IOException {
+        out.writeInt(len);
+        out.write(b, 0, len);
+        out.flush();
+    }
+
+    static byte[] readPayload(DataInputStream in) throws IOException {
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return payload;
+    }
+
+    static void writeEndpoint(Path endpointFile, int port, String token) throws IOException {
+        Files.write(endpointFile, (port + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Endpoint readEndpoint(Path endpointFile) throws IOException {
+        List<String> lines = Files.readAllLines(endpointFile, StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            throw new IOException("Invalid endpoint file " + endpointFile);
+        }
+        return new Endpoint(Integer.parseInt(lines.get(0).trim()), lines.get(1).trim());
+    }
+
+    static class Endpoint {
+        final int port;
+        final String token;
+
+        Endpoint(int port, String token) {
+            this.port = port;
+            this.token = token;
+        }
+    }
+}
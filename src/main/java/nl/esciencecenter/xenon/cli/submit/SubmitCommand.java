@@ -1,11 +1,12 @@
 package nl.esciencecenter.xenon.cli.submit;
 
-import static nl.esciencecenter.xenon.cli.Utils.createScheduler;
+import static nl.esciencecenter.xenon.cli.Utils.openScheduler;
 import static nl.esciencecenter.xenon.cli.Utils.getJobDescription;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.schedulers.JobDescription;
 import nl.esciencecenter.xenon.schedulers.Scheduler;
@@ -17,8 +18,8 @@ public class SubmitCommand extends XenonCommand {
     @Override
     public Object run(Namespace res) throws XenonException {
         JobDescription description = getJobDescription(res);
-        try (Scheduler scheduler = createScheduler(res)) {
-
+        try (Session<Scheduler> session = openScheduler(res)) {
+            Scheduler scheduler = session.get();
             String jobIdentifier = scheduler.submitBatchJob(description);
 
             Boolean longFormat = res.getBoolean("long");
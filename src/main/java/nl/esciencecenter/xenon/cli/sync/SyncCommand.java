@@ -0,0 +1,66 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+import static nl.esciencecenter.xenon.cli.Utils.buildXenonProperties;
+
+import java.io.IOException;
+import java.util.Map;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.XenonCommand;
+import nl.esciencecenter.xenon.cli.copy.CopyEngine;
+import nl.esciencecenter.xenon.cli.copy.CopyInput;
+import nl.esciencecenter.xenon.cli.copy.CopyOptions;
+import nl.esciencecenter.xenon.cli.copy.CopyOutput;
+import nl.esciencecenter.xenon.credentials.Credential;
+import nl.esciencecenter.xenon.filesystems.CopyMode;
+
+/**
+ * Command to mirror a directory, copying only new and changed files
+ */
+public class SyncCommand extends XenonCommand {
+    private static final long MEBIBYTE = 1024L * 1024L;
+
+    @Override
+    public SyncOutput run(Namespace res) throws XenonException {
+        String adaptor = res.getString("adaptor");
+        String location = res.getString("location");
+        Credential credential = buildCredential(res);
+        Map<String, String> props = buildXenonProperties(res);
+        boolean download = Boolean.TRUE.equals(res.getBoolean("download"));
+        boolean delete = Boolean.TRUE.equals(res.getBoolean("delete"));
+
+        CopyInput source;
+        CopyInput target;
+        if (download) {
+            source = new CopyInput(adaptor, location, res.getString("source"), credential, props);
+            target = new CopyInput("file", null, res.getString("target"), null);
+        } else {
+            source = new CopyInput("file", null, res.getString("source"), null);
+            target = new CopyInput(adaptor, location, res.getString("target"), credential, props);
+        }
+        // changed files are replaced, next run compares against the modification time of the source
+        CopyOptions options = CopyOptions.of(res).setCopymode(CopyMode.REPLACE).setPreserveModified(true);
+
+        TreeDiff diff = new TreeDiff(delete, getMemoryBudget(res));
+        try {
+            CopyOutput copied = new CopyEngine(source, target, options).copy(diff);
+            return new SyncOutput(source, target, diff, copied);
+        } finally {
+            try {
+                diff.close();
+            } catch (IOException e) {
+                // temporary files of the sort are removed on exit of the JVM anyway
+            }
+        }
+    }
+
+    private static long getMemoryBudget(Namespace res) {
+        Integer sortMemory = res.getInt("sort_memory");
+        if (sortMemory == null) {
+            // two listings are sorted
+            return Runtime.getRuntime().maxMemory() / 8;
+        }
+        return sortMemory * MEBIBYTE;
+    }
+}
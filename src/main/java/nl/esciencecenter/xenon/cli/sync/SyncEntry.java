@@ -0,0 +1,64 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+import nl.esciencecenter.xenon.adaptors.filesystems.PathAttributesImplementation;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+/**
+ * File or directory of a listing to synchronize, small enough to be sorted on disk
+ */
+class SyncEntry {
+    static final byte FILE = 0;
+    static final byte DIRECTORY = 1;
+    static final byte SYMBOLIC_LINK = 2;
+
+    /**
+     * Path relative to the synchronized directory
+     */
+    final String path;
+    final long size;
+    final long modified;
+    final byte type;
+
+    SyncEntry(String path, long size, long modified, byte type) {
+        this.path = path;
+        this.size = size;
+        this.modified = modified;
+        this.type = type;
+    }
+
+    static SyncEntry of(Path root, PathAttributes attributes) {
+        byte type = FILE;
+        if (attributes.isDirectory()) {
+            type = DIRECTORY;
+        } else if (attributes.isSymbolicLink()) {
+            type = SYMBOLIC_LINK;
+        }
+        return new SyncEntry(root.relativize(attributes.getPath()).toString(), attributes.getSize(), attributes.getLastModifiedTime(), type);
+    }
+
+    boolean isDirectory() {
+        return type == DIRECTORY;
+    }
+
+    /**
+     * @return Attributes the copy engine needs to copy the entry below root
+     */
+    PathAttributes toAttributes(Path root) {
+        PathAttributesImplementation attributes = new PathAttributesImplementation();
+        attributes.setPath(root.resolve(path));
+        attributes.setSize(size);
+        attributes.setLastModifiedTime(modified);
+        attributes.setDirectory(type == DIRECTORY);
+        attributes.setSymbolicLink(type == SYMBOLIC_LINK);
+        attributes.setRegular(type == FILE);
+        return attributes;
+    }
+
+    /**
+     * @return Estimate of bytes taken in memory
+     */
+    long estimateSize() {
+        return 48L + 2L * path.length();
+    }
+}
@@ -0,0 +1,21 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+/**
+ * Target path which failed to be created or deleted
+ */
+public class SyncError {
+    public final String action;
+    public final String path;
+    public final String error;
+
+    SyncError(String action, String path, String error) {
+        this.action = action;
+        this.path = path;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Failed to %s '%s': %s", action, path, error);
+    }
+}
@@ -0,0 +1,93 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+import java.util.List;
+
+import nl.esciencecenter.xenon.cli.PartialFailure;
+import nl.esciencecenter.xenon.cli.copy.CopyError;
+import nl.esciencecenter.xenon.cli.copy.CopyInput;
+import nl.esciencecenter.xenon.cli.copy.CopyOutput;
+
+/**
+ * Results of a sync command
+ */
+public class SyncOutput implements PartialFailure {
+    private final CopyInput source;
+    private final CopyInput target;
+    private final long newFiles;
+    private final long changedFiles;
+    private final long unchangedFiles;
+    private final long createdDirectories;
+    private final long deletedPaths;
+    private final long filesCopied;
+    private final long bytesCopied;
+    private final List<CopyError> copyErrors;
+    private final List<SyncError> errors;
+
+    SyncOutput(CopyInput source, CopyInput target, TreeDiff diff, CopyOutput copied) {
+        this.source = source;
+        this.target = target;
+        this.newFiles = diff.getNewFiles();
+        this.changedFiles = diff.getChangedFiles();
+        this.unchangedFiles = diff.getUnchangedFiles();
+        this.createdDirectories = diff.getCreatedDirectories();
+        this.deletedPaths = diff.getDeletedPaths();
+        this.errors = diff.getErrors();
+        this.filesCopied = copied.getFilesCopied() == null ? 0 : copied.getFilesCopied();
+        this.bytesCopied = copied.getBytesCopied();
+        this.copyErrors = copied.getErrors();
+    }
+
+    private static String locationOf(CopyInput input) {
+        if (input.isLocal() && input.getLocation() == null) {
+            return "file";
+        }
+        return input.getLocation();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(
+            "Synchronized '%s' from location '%s' to '%s' at location '%s', " +
+                "%d new and %d changed files of which %d copied, %d bytes copied, %d unchanged files, %d directories created, %d paths deleted",
+            source.getPath(), locationOf(source), target.getPath(), locationOf(target),
+            newFiles, changedFiles, filesCopied, bytesCopied, unchangedFiles, createdDirectories, deletedPaths
+        ));
+        String sep = System.getProperty("line.separator");
+        for (SyncError error : errors) {
+            sb.append(sep).append(error);
+        }
+        for (CopyError error : copyErrors) {
+            sb.append(sep).append(error);
+        }
+        return sb.toString();
+    }
+
+    public long getNewFiles() {
+        return newFiles;
+    }
+
+    public long getChangedFiles() {
+        return changedFiles;
+    }
+
+    public long getUnchangedFiles() {
+        return unchangedFiles;
+    }
+
+    public long getDeletedPaths() {
+        return deletedPaths;
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    @Override
+    public String getFailure() {
+        int failed = errors.size() + copyErrors.size();
+        if (failed == 0) {
+            return null;
+        }
+        return failed + " paths failed to synchronize";
+    }
+}
@@ -0,0 +1,50 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addBandwidthLimitArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addCopyEngineArguments;
+import static nl.esciencecenter.xenon.cli.ParserHelpers.addProgressArguments;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Subparser;
+import net.sourceforge.argparse4j.inf.Subparsers;
+import nl.esciencecenter.xenon.cli.IParser;
+
+public class SyncParser implements IParser {
+    private boolean isLocal = false;
+
+    public Subparser buildArgumentParser(Subparsers subparsers) {
+        String description = isLocal ?
+            "Mirror source directory to target directory, copying only new and changed files" :
+            "Mirror local source directory to target directory at location, copying only new and changed files";
+        Subparser subparser = subparsers.addParser("sync")
+            .setDefault("command", new SyncCommand())
+            .defaultHelp(true)
+            .help(description)
+            .description(description + ". " +
+                "A file is changed when its size differs or the source was modified later than the target. " +
+                "Copied local files get the modification time of their source");
+        subparser.addArgument("source").help("Source directory").required(true);
+        subparser.addArgument("target").help("Target directory").required(true);
+        if (!isLocal) {
+            subparser.addArgument("--download")
+                .help("Mirror source directory at location to local target directory instead")
+                .action(Arguments.storeTrue());
+        }
+        subparser.addArgument("--delete")
+            .help("Delete target files and directories which are not in source")
+            .action(Arguments.storeTrue());
+        subparser.addArgument("--sort-memory")
+            .type(Integer.class)
+            .metavar("MIB")
+            .help("Memory in mebibytes used for sorting each listing before temporary files are used (default: an eighth of the maximum heap)");
+        addCopyEngineArguments(subparser);
+        addBandwidthLimitArguments(subparser);
+        addProgressArguments(subparser);
+        return subparser;
+    }
+
+    public SyncParser setLocal(boolean isLocal) {
+        this.isLocal = isLocal;
+        return this;
+    }
+}
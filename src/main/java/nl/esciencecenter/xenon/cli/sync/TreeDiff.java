@@ -0,0 +1,261 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.copy.FileSelector;
+import nl.esciencecenter.xenon.cli.listfiles.ExternalSorter;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.InvalidPathException;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+/**
+ * Selects files of source directory which are missing or changed in target directory.
+ *
+ * Both directories are listed recursively and sorted by relative path, on disk when they do not fit in memory.
+ * The sorted listings are merged while the selected files are being copied,
+ * target directories are created and extraneous target paths are deleted during the merge.
+ * A file is changed when its size differs or the source was modified later than the target.
+ */
+class TreeDiff implements FileSelector, Closeable {
+    /**
+     * Some filesystems keep modification times in whole seconds
+     */
+    static final long MODIFY_WINDOW = 1000L;
+
+    private final boolean delete;
+    private final ExternalSorter<SyncEntry> sourceSorter;
+    private final ExternalSorter<SyncEntry> targetSorter;
+    private final List<SyncError> errors = new ArrayList<>();
+    private long newFiles = 0;
+    private long changedFiles = 0;
+    private long unchangedFiles = 0;
+    private long createdDirectories = 0;
+    private long deletedPaths = 0;
+
+    /**
+     * @param delete Whether to delete target paths which are not in source
+     * @param memoryBudget Bytes of each listing kept in memory while sorting
+     */
+    TreeDiff(boolean delete, long memoryBudget) {
+        this.delete = delete;
+        Comparator<SyncEntry> byPath = (a, b) -> comparePaths(a.path, b.path);
+        sourceSorter = new ExternalSorter<>(SyncEntry.class, byPath, memoryBudget, SyncEntry::estimateSize);
+        targetSorter = new ExternalSorter<>(SyncEntry.class, byPath, memoryBudget, SyncEntry::estimateSize);
+    }
+
+    @Override
+    public Iterator<PathAttributes> select(FileSystem sourceFS, Path sourcePath, FileSystem targetFS, Path targetPath) throws XenonException {
+        if (!sourceFS.getAttributes(sourcePath).isDirectory()) {
+            throw new InvalidPathException("sync", "Source path is not a directory: " + sourcePath);
+        }
+        try {
+            sort(sourceFS, sourcePath, sourceSorter);
+            if (targetFS.exists(targetPath)) {
+                if (!targetFS.getAttributes(targetPath).isDirectory()) {
+                    throw new InvalidPathException("sync", "Target path is not a directory: " + targetPath);
+                }
+                sort(targetFS, targetPath, targetSorter);
+            } else {
+                targetFS.createDirectories(targetPath);
+                createdDirectories++;
+            }
+            return new Merge(sourcePath, targetFS, targetPath, sourceSorter.iterator(), targetSorter.iterator());
+        } catch (IOException | UncheckedIOException e) {
+            throw new XenonException("sync", "Unable to sort listing: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Order of relative paths in which the content of a directory comes right after it.
+     * Plain string order puts `a-b` between `a` and `a/x`, as `-` is smaller than `/`, so separators are compared as smallest character
+     */
+    static int comparePaths(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return Integer.compare(sortKey(x), sortKey(y));
+            }
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    private static int sortKey(char c) {
+        if (c == '/') {
+            return 0;
+        } else if (c == '\\') {
+            return 1;
+        }
+        return c + 2;
+    }
+
+    private static void sort(FileSystem fs, Path root, ExternalSorter<SyncEntry> sorter) throws XenonException, IOException {
+        for (PathAttributes item : fs.list(root, true)) {
+            sorter.add(SyncEntry.of(root, item));
+        }
+    }
+
+    /**
+     * Source files to copy, target directories are created and extraneous target paths deleted on the way
+     */
+    private class Merge implements Iterator<PathAttributes> {
+        private final Path sourcePath;
+        private final FileSystem targetFS;
+        private final Path targetPath;
+        private final Iterator<SyncEntry> sources;
+        private final Iterator<SyncEntry> targets;
+        private SyncEntry source;
+        private SyncEntry target;
+        /**
+         * Target entries below a deleted directory are skipped, they come right after it in the order of {@link TreeDiff#comparePaths}
+         */
+        private String deletedPrefix = null;
+        private PathAttributes next = null;
+
+        Merge(Path sourcePath, FileSystem targetFS, Path targetPath, Iterator<SyncEntry> sources, Iterator<SyncEntry> targets) {
+            this.sourcePath = sourcePath;
+            this.targetFS = targetFS;
+            this.targetPath = targetPath;
+            this.sources = sources;
+            this.targets = targets;
+            source = sources.hasNext() ? sources.next() : null;
+            target = nextTarget();
+        }
+
+        private SyncEntry nextTarget() {
+            while (targets.hasNext()) {
+                SyncEntry entry = targets.next();
+                if (deletedPrefix == null || !entry.path.startsWith(deletedPrefix)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && (source != null || target != null)) {
+                int order = source == null ? 1 : target == null ? -1 : comparePaths(source.path, target.path);
+                if (order < 0) {
+                    next = add(source);
+                    source = sources.hasNext() ? sources.next() : null;
+                } else if (order > 0) {
+                    if (delete) {
+                        remove(target);
+                    }
+                    target = nextTarget();
+                } else {
+                    next = update(source, target);
+                    source = sources.hasNext() ? sources.next() : null;
+                    target = nextTarget();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public PathAttributes next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PathAttributes file = next;
+            next = null;
+            return file;
+        }
+
+        /**
+         * @return Source file to copy or null for a directory, which is created
+         */
+        private PathAttributes add(SyncEntry entry) {
+            if (entry.isDirectory()) {
+                createDirectory(entry);
+                return null;
+            }
+            newFiles++;
+            return entry.toAttributes(sourcePath);
+        }
+
+        /**
+         * @return Source file to copy when target is different or null
+         */
+        private PathAttributes update(SyncEntry entry, SyncEntry existing) {
+            if (entry.isDirectory() && existing.isDirectory()) {
+                return null;
+            }
+            if (entry.isDirectory() || existing.isDirectory()) {
+                // a file can not replace a directory or the other way around
+                remove(existing);
+                return add(entry);
+            }
+            if (entry.size != existing.size || entry.modified - existing.modified >= MODIFY_WINDOW) {
+                changedFiles++;
+                return entry.toAttributes(sourcePath);
+            }
+            unchangedFiles++;
+            return null;
+        }
+
+        private void createDirectory(SyncEntry entry) {
+            Path directory = targetPath.resolve(entry.path);
+            try {
+                targetFS.createDirectory(directory);
+                createdDirectories++;
+            } catch (XenonException e) {
+                errors.add(new SyncError("create", directory.toString(), e.getMessage()));
+            }
+        }
+
+        private void remove(SyncEntry entry) {
+            Path path = targetPath.resolve(entry.path);
+            try {
+                targetFS.delete(path, entry.isDirectory());
+                deletedPaths++;
+            } catch (XenonException e) {
+                errors.add(new SyncError("delete", path.toString(), e.getMessage()));
+            }
+            if (entry.isDirectory()) {
+                deletedPrefix = entry.path + targetPath.getSeparator();
+            }
+        }
+    }
+
+    List<SyncError> getErrors() {
+        return errors;
+    }
+
+    long getNewFiles() {
+        return newFiles;
+    }
+
+    long getChangedFiles() {
+        return changedFiles;
+    }
+
+    long getUnchangedFiles() {
+        return unchangedFiles;
+    }
+
+    long getCreatedDirectories() {
+        return createdDirectories;
+    }
+
+    long getDeletedPaths() {
+        return deletedPaths;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sourceSorter.close();
+        targetSorter.close();
+    }
+}
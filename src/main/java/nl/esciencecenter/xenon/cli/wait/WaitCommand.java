@@ -1,10 +1,11 @@
 package nl.esciencecenter.xenon.cli.wait;
 
-import static nl.esciencecenter.xenon.cli.Utils.createScheduler;
+import static nl.esciencecenter.xenon.cli.Utils.openScheduler;
 
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
 import nl.esciencecenter.xenon.cli.XenonCommand;
 import nl.esciencecenter.xenon.schedulers.JobStatus;
 import nl.esciencecenter.xenon.schedulers.Scheduler;
@@ -12,7 +13,8 @@ import nl.esciencecenter.xenon.schedulers.Scheduler;
 public class WaitCommand extends XenonCommand {
     @Override
     public Object run(Namespace res) throws XenonException {
-        try (Scheduler scheduler = createScheduler(res)) {
+        try (Session<Scheduler> session = openScheduler(res)) {
+            Scheduler scheduler = session.get();
             String identifier = res.getString("identifier");
             long timeout = res.getLong("timeout");
 
@@ -0,0 +1,41 @@
+package nl.esciencecenter.xenon.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.junit.Test;
+
+public class JsonLinesWriterTest {
+    @Test
+    public void write_records_lineEach() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonLinesWriter writer = new JsonLinesWriter(out);
+
+        writer.write("dir1/file1");
+        writer.write(Collections.singletonMap("size", 42));
+
+        String expected = "\"dir1/file1\"\n{\"size\":42}\n";
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void isEnabled_jsonl_true() {
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put("jsonl", true);
+
+        assertTrue(JsonLinesWriter.isEnabled(new Namespace(attrs)));
+    }
+
+    @Test
+    public void isEnabled_absent_false() {
+        assertFalse(JsonLinesWriter.isEnabled(new Namespace(new HashMap<>())));
+    }
+}
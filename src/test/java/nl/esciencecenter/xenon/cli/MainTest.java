@@ -1,6 +1,7 @@
 package nl.esciencecenter.xenon.cli;
 
 import net.sourceforge.argparse4j.inf.Namespace;
+import nl.esciencecenter.xenon.AdaptorDescription;
 import nl.esciencecenter.xenon.XenonException;
 import nl.esciencecenter.xenon.cli.queues.QueuesOutput;
 import org.junit.Rule;
@@ -13,6 +14,9 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class MainTest {
     @Rule
@@ -62,4 +66,86 @@ public class MainTest {
             "}";
         assertEquals(expected, stdout);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findAdaptorDescription_filesystemAdaptor() {
+        String[] args = {"--json", "-vv", "filesystem", "file", "list", "/"};
+
+        AdaptorDescription result = Main.findAdaptorDescription(args);
+
+        assertEquals("file", result.getName());
+    }
+
+    @Test
+    public void findAdaptorDescription_schedulerAdaptor() {
+        String[] args = {"scheduler", "local", "queues"};
+
+        AdaptorDescription result = Main.findAdaptorDescription(args);
+
+        assertEquals("local", result.getName());
+    }
+
+    @Test
+    public void findAdaptorDescription_help_null() {
+        String[] args = {"--help"};
+
+        assertNull(Main.findAdaptorDescription(args));
+    }
+
+    @Test
+    public void findAdaptorDescription_unknownAdaptor_null() {
+        String[] args = {"filesystem", "badadaptorname", "list", "/"};
+
+        assertNull(Main.findAdaptorDescription(args));
+    }
+
+    @Test
+    public void findAdaptorDescription_argumentsFromFile_null() {
+        String[] args = {"@args.txt"};
+
+        assertNull(Main.findAdaptorDescription(args));
+    }
+
+    @Test
+    public void needsOnDemandAdaptors_sftp_false() {
+        String[] args = {"filesystem", "sftp", "--location", "localhost", "list", "/"};
+
+        assertFalse(Main.needsOnDemandAdaptors(args));
+    }
+
+    @Test
+    public void needsOnDemandAdaptors_help_false() {
+        String[] args = {"--json", "--help"};
+
+        assertFalse(Main.needsOnDemandAdaptors(args));
+    }
+
+    @Test
+    public void needsOnDemandAdaptors_batch_true() {
+        String[] args = {"batch", "commands.txt"};
+
+        assertTrue(Main.needsOnDemandAdaptors(args));
+    }
+
+    @Test
+    public void findAdaptorDescription_profileFileBeforeAdaptor() {
+        String[] args = {"--profile-file", "profile.jsonl", "--profile", "filesystem", "file", "list", "/"};
+
+        assertEquals(3, Main.indexOfAdaptorType(args));
+    }
+
+    @Test
+    public void isVersion_rootFlags_true() {
+        String[] args = {"--json", "--version"};
+
+        assertTrue(Main.isVersion(args));
+    }
+
+    @Test
+    public void isVersion_beforeAdaptor_false() {
+        String[] args = {"--version", "filesystem", "file", "list", "/"};
+
+        assertFalse(Main.isVersion(args));
+        assertEquals(1, Main.indexOfAdaptorType(args));
+    }
+}
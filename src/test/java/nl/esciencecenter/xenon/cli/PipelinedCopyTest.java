@@ -0,0 +1,118 @@
+package nl.esciencecenter.xenon.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PipelinedCopyTest {
+    /**
+     * Returns at most a few bytes per read, like a network stream
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1000));
+            }
+
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+    }
+
+    @Test
+    public void copy_allBytes() throws IOException {
+        byte[] bytes = new byte[3 * 1024 * 1024 + 5];
+        new Random(1).nextBytes(bytes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long copied = PipelinedCopy.copy(trickle(bytes), out);
+
+        assertEquals(bytes.length, copied);
+        assertArrayEquals(bytes, out.toByteArray());
+    }
+
+    @Test
+    public void copy_empty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, PipelinedCopy.copy(new ByteArrayInputStream(new byte[0]), out));
+        assertEquals(0, out.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void copy_readFails_thrown() throws IOException {
+        InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection lost");
+            }
+        };
+
+        PipelinedCopy.copy(in, new ByteArrayOutputStream());
+    }
+
+    @Test(timeout = 10000, expected = IllegalStateException.class)
+    public void copy_readFailsUnchecked_thrown() throws IOException {
+        InputStream in = new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("Session closed");
+            }
+        };
+
+        PipelinedCopy.copy(in, new ByteArrayOutputStream());
+    }
+
+    @Test(expected = IOException.class)
+    public void copy_writeFails_thrown() throws IOException {
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+
+        PipelinedCopy.copy(new ByteArrayInputStream(new byte[100000]), out);
+    }
+
+    @Test
+    public void bufferSizer_fast_grows() {
+        PipelinedCopy.BufferSizer sizer = new PipelinedCopy.BufferSizer(0);
+
+        // 1 GB/s holds 10MB in 10ms
+        sizer.record(100 * 1000 * 1000, 100_000_000L);
+
+        assertEquals(PipelinedCopy.MAX_BUFFER_SIZE, sizer.size());
+    }
+
+    @Test
+    public void bufferSizer_rate_powerOfTwoHoldingTenMillis() {
+        PipelinedCopy.BufferSizer sizer = new PipelinedCopy.BufferSizer(0);
+
+        // 10MB/s holds 100KB in 10ms
+        sizer.record(1000 * 1000, 100_000_000L);
+
+        assertEquals(64 * 1024, sizer.size());
+    }
+
+    @Test
+    public void bufferSizer_slow_minimum() {
+        PipelinedCopy.BufferSizer sizer = new PipelinedCopy.BufferSizer(0);
+
+        sizer.record(1000, 100_000_000L);
+
+        assertEquals(PipelinedCopy.MIN_BUFFER_SIZE, sizer.size());
+    }
+}
@@ -0,0 +1,46 @@
+package nl.esciencecenter.xenon.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ProfileTest {
+    @Test
+    public void record_samePhaseTwice_summed() {
+        Profile profile = new Profile();
+        long start = System.nanoTime() - 2_000_000L;
+
+        profile.record("connect", start);
+        profile.record("connect", start);
+
+        assertTrue(profile.getPhases().get("connect") >= 4.0);
+        assertEquals(1, profile.getPhases().size());
+    }
+
+    @Test
+    public void recordCurrent_afterMakeCurrent_recorded() {
+        Profile profile = new Profile();
+        profile.makeCurrent();
+
+        Profile.recordCurrent("connect", System.nanoTime());
+
+        assertTrue(profile.getPhases().containsKey("connect"));
+    }
+
+    @Test
+    public void toMap() {
+        Profile profile = new Profile();
+        profile.record("parser", System.nanoTime());
+
+        Map<String, Object> result = profile.toMap("ListFilesCommand", "file");
+
+        assertEquals("ListFilesCommand", result.get("command"));
+        assertEquals("file", result.get("adaptor"));
+        assertTrue(result.containsKey("uptimeAtEntry"));
+        assertTrue(((Map<?, ?>) result.get("phases")).containsKey("parser"));
+        assertTrue((Double) result.get("total") >= 0.0);
+    }
+}
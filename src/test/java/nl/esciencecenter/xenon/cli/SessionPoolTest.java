@@ -0,0 +1,118 @@
+package nl.esciencecenter.xenon.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.credentials.DefaultCredential;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+
+public class SessionPoolTest {
+    private static SessionKey localKey(String location) {
+        return new SessionKey("file", location, new DefaultCredential(), null);
+    }
+
+    @Test
+    public void hostOf_null() {
+        assertEquals("", SessionPool.hostOf(null));
+    }
+
+    @Test
+    public void hostOf_userHostPort() {
+        assertEquals("example.com", SessionPool.hostOf("user@Example.com:2222"));
+    }
+
+    @Test
+    public void hostOf_url() {
+        assertEquals("example.com", SessionPool.hostOf("sftp://user@example.com/home/user"));
+    }
+
+    @Test
+    public void hostOf_via() {
+        assertEquals("example.com", SessionPool.hostOf("example.com via:gateway.example.com"));
+    }
+
+    @Test
+    public void hostOf_ipv6() {
+        assertEquals("[::1]", SessionPool.hostOf("[::1]:22"));
+    }
+
+    @Test
+    public void getFileSystem_otherSlot_separate() throws XenonException {
+        try (SessionPool pool = new SessionPool(SessionPool.CLOSE_WHEN_IDLE, 2)) {
+            SessionKey key = localKey(null);
+            SessionKey otherSlot = new SessionKey(key.getAdaptor(), key.getLocation(), key.getCredential(), key.getProperties(), 1);
+            try (Session<FileSystem> first = pool.getFileSystem(key); Session<FileSystem> second = pool.getFileSystem(otherSlot)) {
+                assertNotSame(first.get(), second.get());
+            }
+        }
+    }
+
+    @Test
+    public void getFileSystem_sameKey_shared() throws XenonException {
+        try (SessionPool pool = new SessionPool(SessionPool.CLOSE_WHEN_IDLE, 2)) {
+            Session<FileSystem> first = pool.getFileSystem(localKey(null));
+            Session<FileSystem> second = pool.getFileSystem(localKey(null));
+            assertSame(first.get(), second.get());
+
+            first.close();
+            assertTrue("still referenced by second session", second.get().isOpen());
+            second.close();
+            assertFalse("closed when last session released", second.get().isOpen());
+        }
+    }
+
+    @Test
+    public void getFileSystem_differentKey_notShared() throws XenonException {
+        try (
+            SessionPool pool = new SessionPool(SessionPool.CLOSE_WHEN_IDLE, 2);
+            Session<FileSystem> first = pool.getFileSystem(localKey(null));
+            Session<FileSystem> second = pool.getFileSystem(localKey("/"))
+        ) {
+            assertNotSame(first.get(), second.get());
+        }
+    }
+
+    @Test
+    public void getFileSystem_keepWhenIdle_reused() throws XenonException {
+        try (SessionPool pool = new SessionPool(SessionPool.KEEP_WHEN_IDLE, 2)) {
+            FileSystem first;
+            try (Session<FileSystem> session = pool.getFileSystem(localKey(null))) {
+                first = session.get();
+            }
+            try (Session<FileSystem> session = pool.getFileSystem(localKey(null))) {
+                assertSame(first, session.get());
+            }
+        }
+    }
+
+    @Test
+    public void getFileSystem_hostLimitReached_idleEvicted() throws XenonException {
+        try (SessionPool pool = new SessionPool(SessionPool.KEEP_WHEN_IDLE, 1)) {
+            FileSystem first;
+            try (Session<FileSystem> session = pool.getFileSystem(localKey(null))) {
+                first = session.get();
+            }
+            try (Session<FileSystem> session = pool.getFileSystem(localKey("/"))) {
+                assertNotSame(first, session.get());
+                assertFalse("idle filesystem closed to stay within limit", first.isOpen());
+            }
+        }
+    }
+
+    @Test
+    public void getFileSystem_hostLimitReachedBySameThread_notBlocked() throws XenonException {
+        try (
+            SessionPool pool = new SessionPool(SessionPool.KEEP_WHEN_IDLE, 1);
+            Session<FileSystem> first = pool.getFileSystem(localKey(null));
+            Session<FileSystem> second = pool.getFileSystem(localKey("/"))
+        ) {
+            assertNotSame(first.get(), second.get());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package nl.esciencecenter.xenon.cli;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SizeArgumentTypeTest {
+    @Test
+    public void parseSize_bytes() {
+        assertEquals(512L, SizeArgumentType.parseSize("512"));
+    }
+
+    @Test
+    public void parseSize_mebibytes() {
+        assertEquals(64L * 1024 * 1024, SizeArgumentType.parseSize("64M"));
+    }
+
+    @Test
+    public void parseSize_lowerCaseWithSuffix() {
+        assertEquals(2L * 1024 * 1024 * 1024, SizeArgumentType.parseSize("2gib"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseSize_invalid() {
+        SizeArgumentType.parseSize("lots");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseSize_overflow() {
+        SizeArgumentType.parseSize("99999999999T");
+    }
+
+    @Test
+    public void formatSize_bytes() {
+        assertEquals("512", SizeArgumentType.formatSize(512));
+    }
+
+    @Test
+    public void formatSize_largestUnit() {
+        assertEquals("1.5G", SizeArgumentType.formatSize(3L * 512 * 1024 * 1024));
+    }
+}
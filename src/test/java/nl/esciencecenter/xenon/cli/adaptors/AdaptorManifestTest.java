@@ -0,0 +1,81 @@
+package nl.esciencecenter.xenon.cli.adaptors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import nl.esciencecenter.xenon.XenonPropertyDescription;
+import nl.esciencecenter.xenon.credentials.DefaultCredential;
+import nl.esciencecenter.xenon.filesystems.FileSystemAdaptorDescription;
+
+public class AdaptorManifestTest {
+    private static Map<String, Object> s3Values() {
+        Map<String, Object> property = new HashMap<>();
+        property.put("getName", "xenon.adaptors.filesystems.s3.region");
+        property.put("getType", "STRING");
+        property.put("getDescription", "Region of bucket");
+        Map<String, Object> values = new HashMap<>();
+        values.put("getName", "s3");
+        values.put("getDescription", "S3 adaptor");
+        values.put("getSupportedLocations", Collections.singletonList("http[s]://host[:port]/bucket"));
+        values.put("getSupportedCredentials", Collections.singletonList(DefaultCredential.class.getName()));
+        values.put("getSupportedProperties", Collections.singletonList(property));
+        values.put("isConnectionless", true);
+        return values;
+    }
+
+    private static AdaptorManifest manifest() {
+        Map<String, List<Map<String, Object>>> manifest = new HashMap<>();
+        manifest.put(AdaptorManifest.FILESYSTEMS, Collections.singletonList(s3Values()));
+        return new AdaptorManifest(manifest);
+    }
+
+    @Test
+    public void getFileSystemAdaptor_describedByManifest() {
+        FileSystemAdaptorDescription description = manifest().getFileSystemAdaptor("s3");
+
+        assertEquals("s3", description.getName());
+        assertArrayEquals(new String[]{"http[s]://host[:port]/bucket"}, description.getSupportedLocations());
+        assertArrayEquals(new Class[]{DefaultCredential.class}, description.getSupportedCredentials());
+        assertTrue(description.isConnectionless());
+        assertFalse("missing value is default", description.canAppend());
+        XenonPropertyDescription property = description.getSupportedProperties()[0];
+        assertEquals("xenon.adaptors.filesystems.s3.region", property.getName());
+        assertEquals(XenonPropertyDescription.Type.STRING, property.getType());
+        assertNull(property.getDefaultValue());
+    }
+
+    @Test
+    public void getFileSystemAdaptor_unknown_null() {
+        assertNull(manifest().getFileSystemAdaptor("sftp"));
+        assertFalse(manifest().contains("sftp"));
+    }
+
+    @Test
+    public void describe_writtenManifest_sameDescription() throws ReflectiveOperationException {
+        FileSystemAdaptorDescription description = manifest().getFileSystemAdaptor("s3");
+
+        // written and read back like the manifest resource
+        String json = new Gson().toJson(AdaptorManifestWriter.describe(FileSystemAdaptorDescription.class, description));
+        Map<String, Object> values = new Gson().fromJson(json, new TypeToken<Map<String, Object>>() {}.getType());
+        FileSystemAdaptorDescription result = AdaptorManifest.describe(FileSystemAdaptorDescription.class, values);
+
+        assertEquals("s3", result.getName());
+        assertEquals("S3 adaptor", result.getDescription());
+        assertTrue(result.isConnectionless());
+        assertArrayEquals(new Class[]{DefaultCredential.class}, result.getSupportedCredentials());
+        assertEquals(Arrays.asList("xenon.adaptors.filesystems.s3.region"), Arrays.asList(result.getSupportedProperties()[0].getName()));
+    }
+}
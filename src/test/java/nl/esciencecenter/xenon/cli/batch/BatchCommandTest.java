@@ -0,0 +1,76 @@
+package nl.esciencecenter.xenon.cli.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+public class BatchCommandTest {
+    private final BatchCommand command = new BatchCommand();
+
+    @Test
+    public void splitCommandLine_whitespace() {
+        String[] result = BatchCommand.splitCommandLine("filesystem  sftp\t--location localhost list /etc");
+
+        String[] expected = {"filesystem", "sftp", "--location", "localhost", "list", "/etc"};
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void splitCommandLine_quotesAndEscapes() {
+        String[] result = BatchCommand.splitCommandLine("upload 'my file' \"other \\\"file\\\"\" with\\ space ''");
+
+        String[] expected = {"upload", "my file", "other \"file\"", "with space", ""};
+        assertArrayEquals(expected, result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void splitCommandLine_unterminatedQuote() {
+        BatchCommand.splitCommandLine("list 'oops");
+    }
+
+    @Test
+    public void parseLine_jsonArray() {
+        String[] result = command.parseLine("[\"filesystem\", \"file\", \"list\", \"/my dir\"]");
+
+        String[] expected = {"filesystem", "file", "list", "/my dir"};
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void parseLine_jsonObject() {
+        String[] result = command.parseLine("{\"args\": [\"scheduler\", \"local\", \"queues\"]}");
+
+        String[] expected = {"scheduler", "local", "queues"};
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void parseLine_leadingXenon_stripped() {
+        String[] result = command.parseLine("xenon scheduler local queues");
+
+        String[] expected = {"scheduler", "local", "queues"};
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void toJson_failed() {
+        BatchOutput output = BatchOutput.failed(3, "Command is not supported in a batch");
+
+        String result = new Gson().toJson(output);
+
+        String expected = "{\"line\":3,\"success\":false,\"error\":\"Command is not supported in a batch\"}";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void toJson_succeeded() {
+        BatchOutput output = BatchOutput.succeeded(1, "1234");
+
+        String result = new Gson().toJson(output);
+
+        String expected = "{\"line\":1,\"success\":true,\"output\":\"1234\"}";
+        assertEquals(expected, result);
+    }
+}
@@ -0,0 +1,120 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalTime;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BandwidthLimiterTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final long MIB = 1024 * 1024;
+
+    @Test
+    public void take_withinBurst_noWait() {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("10M"));
+
+        assertEquals(0, limiter.take(MIB, SECOND));
+    }
+
+    @Test
+    public void take_beyondBurst_waitForDebt() {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("10M"));
+        // burst is a tenth of a second
+        limiter.take(MIB, SECOND);
+
+        long wait = limiter.take(2 * MIB, SECOND);
+
+        assertEquals(SECOND / 5, wait);
+    }
+
+    @Test
+    public void take_refilledAtRate() {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("10M"));
+        limiter.take(MIB, SECOND);
+        limiter.take(2 * MIB, SECOND);
+
+        assertEquals(0, limiter.take(0, SECOND + SECOND / 5));
+    }
+
+    @Test
+    public void take_sharedDebt_rateOfAllStreamsTogether() {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("1M"));
+        limiter.take(MIB / 10, SECOND);
+
+        // four streams take a mebibyte at the same moment
+        long wait = 0;
+        for (int stream = 0; stream < 4; stream++) {
+            wait = limiter.take(MIB, SECOND);
+        }
+
+        assertEquals(4 * SECOND, wait, SECOND / 1000);
+    }
+
+    @Test
+    public void take_scheduleOff_noWait() {
+        LocalTime[] now = {LocalTime.of(12, 0)};
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("08:00,1M 18:00,off"), () -> now[0]);
+        limiter.take(10 * MIB, SECOND);
+        now[0] = LocalTime.of(18, 0);
+
+        assertEquals(0, limiter.take(10 * MIB, SECOND));
+    }
+
+    @Test
+    public void take_scheduleOn_fullBurst() {
+        LocalTime[] now = {LocalTime.of(7, 0)};
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("08:00,1M 18:00,off"), () -> now[0]);
+        limiter.take(10 * MIB, SECOND);
+        now[0] = LocalTime.of(8, 0);
+
+        assertEquals(0, limiter.take(MIB / 10, 2 * SECOND));
+        assertTrue(limiter.take(1, 2 * SECOND) > 0);
+    }
+
+    @Test
+    public void wrap_inputStream_limitsRate() throws IOException {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("4M"));
+        byte[] bytes = new byte[(int) MIB + 400 * 1024];
+        new Random(1).nextBytes(bytes);
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        long started = System.nanoTime();
+        try (InputStream in = limiter.wrap(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[256 * 1024];
+            int read = in.read(buffer);
+            while (read != -1) {
+                copy.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        assertArrayEquals(bytes, copy.toByteArray());
+        // the first 400K of burst is free, the rest at 4M per second
+        assertTrue("copied in " + elapsed + "ns", elapsed >= SECOND / 4 - SECOND / 50);
+    }
+
+    @Test
+    public void wrap_outputStream_writesAll() throws IOException {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthSchedule.parse("1G"));
+        byte[] bytes = new byte[300 * 1024];
+        new Random(2).nextBytes(bytes);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (OutputStream out = limiter.wrap(target)) {
+            out.write(bytes, 0, bytes.length - 1);
+            out.write(bytes[bytes.length - 1]);
+        }
+
+        assertArrayEquals(bytes, target.toByteArray());
+    }
+}
@@ -0,0 +1,64 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalTime;
+
+import org.junit.Test;
+
+public class BandwidthScheduleTest {
+    private static final long KIB = 1024;
+    private static final long MIB = 1024 * 1024;
+
+    @Test
+    public void parse_rate_allDay() {
+        BandwidthSchedule schedule = BandwidthSchedule.parse("10M");
+
+        assertEquals(10 * MIB, schedule.rateAt(LocalTime.MIDNIGHT));
+        assertEquals(10 * MIB, schedule.rateAt(LocalTime.of(23, 59)));
+    }
+
+    @Test
+    public void parse_timetable() {
+        BandwidthSchedule schedule = BandwidthSchedule.parse("08:00,512K 18:00,10M 23:00,off");
+
+        assertEquals(512 * KIB, schedule.rateAt(LocalTime.of(8, 0)));
+        assertEquals(512 * KIB, schedule.rateAt(LocalTime.of(17, 59)));
+        assertEquals(10 * MIB, schedule.rateAt(LocalTime.of(18, 0)));
+        assertEquals(BandwidthSchedule.UNLIMITED, schedule.rateAt(LocalTime.of(23, 30)));
+    }
+
+    @Test
+    public void rateAt_beforeFirstStart_lastRateOfPreviousDay() {
+        BandwidthSchedule schedule = BandwidthSchedule.parse("18:00,10M 08:00,1M");
+
+        assertEquals(10 * MIB, schedule.rateAt(LocalTime.of(7, 0)));
+    }
+
+    @Test
+    public void isUnlimited_off() {
+        assertTrue(BandwidthSchedule.parse("off").isUnlimited());
+    }
+
+    @Test
+    public void isUnlimited_offPartOfDay() {
+        assertFalse(BandwidthSchedule.parse("08:00,1M 18:00,off").isUnlimited());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_zero() {
+        BandwidthSchedule.parse("0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_invalidTime() {
+        BandwidthSchedule.parse("8h,1M");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_entryWithoutRate() {
+        BandwidthSchedule.parse("08:00,1M 18:00");
+    }
+}
@@ -0,0 +1,280 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.filesystems.CopyMode;
+import nl.esciencecenter.xenon.filesystems.PathAlreadyExistsException;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CopyEngineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path source;
+    private Path target;
+    private Path journal;
+
+    @Before
+    public void setUp() throws IOException {
+        source = folder.newFolder("source").toPath();
+        target = folder.getRoot().toPath().resolve("target");
+        journal = folder.getRoot().toPath().resolve("journal.jsonl");
+    }
+
+    private static CopyInput local(Path path) {
+        return new CopyInput("file", null, path.toString(), null);
+    }
+
+    private CopyOutput copy(CopyOptions options) throws XenonException {
+        return new CopyEngine(local(source), local(target), options).copy(true);
+    }
+
+    /**
+     * Journal of an earlier run of the copy, with the given lines after the header
+     */
+    private CopyOptions resumeFrom(String... lines) throws IOException {
+        String header = "{\"copy\":\"file://null" + source + " -> file://null" + target + "\"}";
+        StringBuilder content = new StringBuilder(header).append('\n');
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+        Files.write(journal, content.toString().getBytes(StandardCharsets.UTF_8));
+        return new CopyOptions().setResume(true).setJournal(journal.toString());
+    }
+
+    private String started(String file, String extra) throws IOException {
+        Path path = source.resolve(file);
+        return "{\"file\":\"" + file + "\",\"event\":\"started\",\"size\":" + Files.size(path)
+            + ",\"modified\":" + Files.getLastModifiedTime(path).toMillis() + extra + "}";
+    }
+
+    private static byte[] write(Path file, int size, long seed) throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+        return bytes;
+    }
+
+    @Test
+    public void copy_directory_parallelWorkers_allFilesCopied() throws IOException, XenonException {
+        byte[][] contents = new byte[20][];
+        long size = 0;
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = write(source.resolve("dir" + i % 3).resolve("file" + i), 1000 * i, i);
+            size += contents[i].length;
+        }
+
+        CopyOutput output = copy(new CopyOptions().setParallel(4));
+
+        assertTrue(output.getErrors().toString(), output.getErrors().isEmpty());
+        assertEquals(Long.valueOf(contents.length), output.getFilesCopied());
+        assertEquals(size, output.getBytesCopied());
+        for (int i = 0; i < contents.length; i++) {
+            assertArrayEquals("file" + i, contents[i], Files.readAllBytes(target.resolve("dir" + i % 3).resolve("file" + i)));
+        }
+    }
+
+    @Test
+    public void copy_fileFails_errorRecordedOtherFilesCopied() throws IOException, XenonException {
+        byte[] a = write(source.resolve("a"), 100, 1);
+        write(source.resolve("b"), 100, 2);
+        byte[] c = write(source.resolve("c"), 100, 3);
+        // a non empty directory can not be replaced by a file
+        write(target.resolve("b").resolve("keep"), 10, 4);
+
+        CopyOutput output = copy(new CopyOptions().setCopymode(CopyMode.REPLACE).setParallel(2));
+
+        assertEquals(1, output.getErrors().size());
+        assertEquals(source.resolve("b").toString(), output.getErrors().get(0).path);
+        assertEquals(Long.valueOf(2), output.getFilesCopied());
+        assertArrayEquals(a, Files.readAllBytes(target.resolve("a")));
+        assertArrayEquals(c, Files.readAllBytes(target.resolve("c")));
+    }
+
+    @Test
+    public void copy_existingTree_replace_overwritten() throws IOException, XenonException {
+        byte[] bytes = write(source.resolve("sub").resolve("a"), 100, 1);
+        write(target.resolve("sub").resolve("a"), 500, 2);
+
+        CopyOutput output = copy(new CopyOptions().setCopymode(CopyMode.REPLACE));
+
+        assertTrue(output.getErrors().toString(), output.getErrors().isEmpty());
+        assertArrayEquals(bytes, Files.readAllBytes(target.resolve("sub").resolve("a")));
+    }
+
+    @Test
+    public void copy_existingTree_ignore_untouched() throws IOException, XenonException {
+        write(source.resolve("a"), 100, 1);
+        write(source.resolve("b"), 100, 2);
+        byte[] existing = write(target.resolve("a"), 500, 3);
+
+        CopyOutput output = copy(new CopyOptions().setCopymode(CopyMode.IGNORE));
+
+        assertEquals(Long.valueOf(0), output.getFilesCopied());
+        assertArrayEquals(existing, Files.readAllBytes(target.resolve("a")));
+        assertFalse(Files.exists(target.resolve("b")));
+    }
+
+    @Test(expected = PathAlreadyExistsException.class)
+    public void copy_existingTree_create_refused() throws IOException, XenonException {
+        write(source.resolve("a"), 100, 1);
+        Files.createDirectories(target);
+
+        copy(new CopyOptions());
+    }
+
+    @Test
+    public void copy_listingFails_workersJoined() throws IOException, XenonException {
+        byte[] bytes = write(source.resolve("a"), 1024 * 1024, 1);
+        CopyEngine engine = new CopyEngine(local(source), local(target), new CopyOptions().setParallel(2));
+        Files.createDirectories(target);
+
+        try {
+            engine.copy((sourceFS, sourcePath, targetFS, targetPath) -> {
+                Iterator<PathAttributes> listing = sourceFS.list(sourcePath, false).iterator();
+                return new Iterator<PathAttributes>() {
+                    @Override
+                    public boolean hasNext() {
+                        if (!listing.hasNext()) {
+                            throw new UncheckedIOException(new IOException("Listing failed"));
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public PathAttributes next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return listing.next();
+                    }
+                };
+            });
+        } catch (UncheckedIOException e) {
+            // the file listed before the failure was copied completely before copy returned
+            assertArrayEquals(bytes, Files.readAllBytes(target.resolve("a")));
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                assertFalse(thread.getName(), thread.getName().startsWith("xenon-copy-"));
+            }
+            return;
+        }
+        throw new AssertionError("Expected UncheckedIOException");
+    }
+
+    @Test
+    public void copy_file_contentCopied() throws IOException, XenonException {
+        byte[] bytes = "hello".getBytes(StandardCharsets.UTF_8);
+        Files.write(source.resolve("a"), bytes);
+
+        CopyOutput output = new CopyEngine(local(source.resolve("a")), local(target), new CopyOptions()).copy(false);
+
+        assertEquals(bytes.length, output.getBytesCopied());
+        assertArrayEquals(bytes, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void resume_doneFile_skipped() throws IOException, XenonException {
+        write(source.resolve("a"), 100, 1);
+        byte[] b = write(source.resolve("b"), 100, 2);
+        byte[] existing = write(target.resolve("a"), 10, 3);
+        CopyOptions options = resumeFrom(started("a", ""), "{\"file\":\"a\",\"event\":\"done\"}");
+
+        CopyOutput output = copy(options);
+
+        assertEquals(Long.valueOf(1), output.getFilesCopied());
+        assertArrayEquals(existing, Files.readAllBytes(target.resolve("a")));
+        assertArrayEquals(b, Files.readAllBytes(target.resolve("b")));
+        assertFalse("journal removed after complete copy", Files.exists(journal));
+    }
+
+    @Test
+    public void resume_partialFile_appended() throws IOException, XenonException {
+        byte[] bytes = write(source.resolve("a"), 1000, 1);
+        Files.createDirectories(target);
+        Files.write(target.resolve("a"), Arrays.copyOf(bytes, 400));
+        CopyOptions options = resumeFrom(started("a", ""), "{\"file\":\"a\",\"event\":\"checkpoint\",\"offset\":300}");
+
+        CopyOutput output = copy(options);
+
+        assertEquals(600, output.getBytesCopied());
+        assertArrayEquals(bytes, Files.readAllBytes(target.resolve("a")));
+    }
+
+    @Test
+    public void resume_sourceChanged_restarted() throws IOException, XenonException {
+        byte[] bytes = write(source.resolve("a"), 1000, 1);
+        write(target.resolve("a"), 400, 2);
+        CopyOptions options = resumeFrom("{\"file\":\"a\",\"event\":\"started\",\"size\":1000,\"modified\":1}",
+            "{\"file\":\"a\",\"event\":\"checkpoint\",\"offset\":400}");
+
+        CopyOutput output = copy(options);
+
+        assertEquals(bytes.length, output.getBytesCopied());
+        assertArrayEquals(bytes, Files.readAllBytes(target.resolve("a")));
+    }
+
+    @Test
+    public void resume_fileFails_journalKept() throws IOException, XenonException {
+        write(source.resolve("a"), 100, 1);
+        // not written by the copy which is resumed, so refused by copy mode create
+        write(target.resolve("a"), 10, 2);
+
+        CopyOutput output = copy(resumeFrom());
+
+        assertEquals(1, output.getErrors().size());
+        assertTrue(Files.exists(journal));
+    }
+
+    @Test
+    public void resume_segmentedWithoutSegments_restarted() throws IOException, XenonException {
+        byte[] bytes = write(source.resolve("a"), 4 * 1024, 1);
+        // written in place by a segmented copy, only the first segment is done
+        byte[] partial = new byte[bytes.length];
+        System.arraycopy(bytes, 0, partial, 0, 1024);
+        Files.createDirectories(target);
+        Files.write(target.resolve("a"), partial);
+        CopyOptions options = resumeFrom(started("a", ",\"segmentSize\":1024"), "{\"file\":\"a\",\"event\":\"segment\",\"segment\":0}");
+
+        CopyOutput output = copy(options);
+
+        assertEquals(bytes.length, output.getBytesCopied());
+        assertArrayEquals(bytes, Files.readAllBytes(target.resolve("a")));
+    }
+
+    @Test
+    public void resume_otherSegmentSize_restarted() throws IOException, XenonException {
+        byte[] bytes = write(source.resolve("a"), 4 * 1024, 1);
+        byte[] partial = new byte[bytes.length];
+        System.arraycopy(bytes, 0, partial, 0, 1024);
+        Files.createDirectories(target);
+        Files.write(target.resolve("a"), partial);
+        CopyOptions options = resumeFrom(started("a", ",\"segmentSize\":512"), "{\"file\":\"a\",\"event\":\"segment\",\"segment\":0}",
+            "{\"file\":\"a\",\"event\":\"segment\",\"segment\":1}");
+        options.setStreams(2).setSegmentSize(1024).setSegmentThreshold(1024);
+
+        CopyOutput output = copy(options);
+
+        assertEquals(bytes.length, output.getBytesCopied());
+        assertArrayEquals(bytes, Files.readAllBytes(target.resolve("a")));
+    }
+}
@@ -0,0 +1,129 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CopyJournalTest {
+    private static final String COPY = "file://null/data -> sftp://example.com/data";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalFile() {
+        return folder.getRoot().toPath().resolve("journal.jsonl");
+    }
+
+    @Test
+    public void get_reopened_progress() throws IOException {
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            journal.started("a", 5, 1000);
+            journal.done("a");
+            journal.started("sub/b", 100, 2000);
+            journal.checkpoint("sub/b", 16);
+            journal.checkpoint("sub/b", 32);
+            journal.started("c", 300, 3000);
+            journal.segmentDone("c", 2);
+        }
+
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            assertTrue(journal.get("a").done);
+            CopyJournal.FileState b = journal.get("sub/b");
+            assertFalse(b.done);
+            assertEquals(32, b.offset);
+            assertTrue(b.matches(100, 2000));
+            assertFalse(b.matches(100, 2001));
+            assertTrue(journal.get("c").segments.get(2));
+            assertFalse(journal.get("c").segments.get(0));
+            assertNull(journal.get("d"));
+        }
+    }
+
+    @Test
+    public void get_truncatedLastLine_ignored() throws IOException {
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            journal.started("a", 5, 1000);
+        }
+        Files.write(journalFile(), "{\"file\":\"a\",\"ev".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            assertFalse(journal.get("a").done);
+        }
+    }
+
+    @Test
+    public void done_afterTruncatedLastLine_kept() throws IOException {
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            journal.started("a", 5, 1000);
+        }
+        Files.write(journalFile(), "{\"file\":\"a\",\"ev".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            journal.done("a");
+        }
+
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            assertTrue(journal.get("a").done);
+        }
+    }
+
+    @Test
+    public void get_restarted_progressReset() throws IOException {
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            journal.started("a", 100, 1000);
+            journal.checkpoint("a", 50);
+            journal.started("a", 200, 2000);
+        }
+
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            assertEquals(0, journal.get("a").offset);
+            assertTrue(journal.get("a").matches(200, 2000));
+        }
+    }
+
+    @Test
+    public void get_segmented_segmentSize() throws IOException {
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            journal.started("a", 100, 1000, 16);
+            journal.started("b", 100, 1000);
+        }
+
+        try (CopyJournal journal = new CopyJournal(journalFile(), COPY)) {
+            assertEquals(16, journal.get("a").segmentSize);
+            assertEquals(0, journal.get("b").segmentSize);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_otherCopy_refused() throws IOException {
+        new CopyJournal(journalFile(), COPY).close();
+
+        new CopyJournal(journalFile(), "file://null/other -> file://null/data");
+    }
+
+    @Test
+    public void delete_removesFile() throws IOException {
+        CopyJournal journal = new CopyJournal(journalFile(), COPY);
+        journal.done("a");
+
+        journal.delete();
+
+        assertFalse(Files.exists(journalFile()));
+    }
+
+    @Test
+    public void defaultFile_sameCopy_sameFile() {
+        assertEquals(CopyJournal.defaultFile(COPY), CopyJournal.defaultFile(COPY));
+        assertFalse(CopyJournal.defaultFile(COPY).equals(CopyJournal.defaultFile("file://null/other -> file://null/data")));
+    }
+}
@@ -1,6 +1,10 @@
 package nl.esciencecenter.xenon.cli.copy;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -58,4 +62,43 @@ public class CopyOutputTest {
         assertEquals(expected, output);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void test_toString_engine() {
+        CopyInput source = new CopyInput("file", "/", "/source", new DefaultCredential());
+        CopyInput target = new CopyInput("file", "/", "/target", new DefaultCredential());
+        List<CopyError> errors = Collections.singletonList(new CopyError("/source/file1", "Permission denied"));
+        copyOutput = new CopyOutput(source, target, 100L, 2L, errors);
+        String output = copyOutput.toString();
+
+        String sep = System.getProperty("line.separator");
+        String expected = "Copied '/source' from location '/' to '/target' at location '/', 100 bytes copied in 2 files" + sep +
+            "Failed to copy '/source/file1': Permission denied";
+        assertEquals(expected, output);
+    }
+
+    @Test
+    public void test_toString_verified() {
+        CopyInput source = new CopyInput("file", "/", "/source", new DefaultCredential());
+        CopyInput target = new CopyInput("file", "/", "/target", new DefaultCredential());
+        copyOutput = new CopyOutput(source, target, 100L, 2L, Collections.emptyList(), "crc32c", 2L);
+        String output = copyOutput.toString();
+
+        String expected = "Copied '/source' from location '/' to '/target' at location '/', 100 bytes copied in 2 files, 2 files verified with crc32c";
+        assertEquals(expected, output);
+    }
+
+    @Test
+    public void getFailure_noErrors_null() {
+        assertNull(copyOutput.getFailure());
+    }
+
+    @Test
+    public void getFailure_errors() {
+        CopyInput source = new CopyInput("file", "/", "/source", new DefaultCredential());
+        CopyInput target = new CopyInput("file", "/", "/target", new DefaultCredential());
+        List<CopyError> errors = Collections.singletonList(new CopyError("/source/file1", "Permission denied"));
+        copyOutput = new CopyOutput(source, target, 100L, 2L, errors);
+
+        assertEquals("1 paths failed to copy", copyOutput.getFailure());
+    }
+}
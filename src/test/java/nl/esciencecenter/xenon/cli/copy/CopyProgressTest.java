@@ -0,0 +1,159 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CopyProgressTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final long MIB = 1024 * 1024;
+
+    private static CopyProgress progress(ByteArrayOutputStream err, String format) {
+        return new CopyProgress(format, new PrintStream(err, true), false, 0);
+    }
+
+    @Test
+    public void sample_rates() {
+        CopyProgress progress = progress(new ByteArrayOutputStream(), CopyProgress.TEXT);
+        progress.addBytes(4 * MIB);
+        progress.sample("progress", SECOND);
+        progress.addBytes(MIB);
+
+        CopyProgress.Event event = progress.sample("progress", 2 * SECOND);
+
+        assertEquals(5 * MIB, event.bytesCopied);
+        assertEquals(MIB, event.bytesPerSecond);
+        assertEquals(5 * MIB / 2, event.averageBytesPerSecond);
+    }
+
+    @Test
+    public void sample_bytesToCopy_eta() {
+        CopyProgress progress = progress(new ByteArrayOutputStream(), CopyProgress.TEXT);
+        progress.setBytesToCopy(10 * MIB);
+        progress.setBytesCopied(2 * MIB);
+
+        CopyProgress.Event event = progress.sample("progress", 2 * SECOND);
+
+        assertEquals(Long.valueOf(8), event.etaSeconds);
+    }
+
+    @Test
+    public void sample_unknownTotal_noEta() {
+        CopyProgress progress = progress(new ByteArrayOutputStream(), CopyProgress.TEXT);
+        progress.addBytes(MIB);
+
+        CopyProgress.Event event = progress.sample("progress", SECOND);
+
+        assertNull(event.bytesToCopy);
+        assertNull(event.etaSeconds);
+    }
+
+    @Test
+    public void sample_noBytesCopied_stalled() {
+        CopyProgress progress = progress(new ByteArrayOutputStream(), CopyProgress.TEXT);
+        progress.addBytes(MIB);
+        progress.sample("progress", SECOND);
+
+        CopyProgress.Event event = progress.sample("progress", 13 * SECOND);
+
+        assertEquals(12, event.stalledSeconds);
+        assertEquals(0, event.bytesPerSecond);
+    }
+
+    @Test
+    public void sample_averageOverLastReports() {
+        CopyProgress progress = progress(new ByteArrayOutputStream(), CopyProgress.TEXT);
+        for (int i = 1; i <= 20; i++) {
+            // slow at first, fast for the last ten seconds
+            progress.addBytes(i <= 10 ? MIB : 3 * MIB);
+            progress.sample("progress", i * SECOND);
+        }
+
+        CopyProgress.Event event = progress.sample("progress", 21 * SECOND);
+
+        // 27M over the last ten seconds, of which the last second copied nothing
+        assertEquals(27 * MIB / 10, event.averageBytesPerSecond);
+    }
+
+    @Test
+    public void format_all() {
+        CopyProgress.Event event = new CopyProgress.Event();
+        event.event = "progress";
+        event.bytesCopied = 3 * MIB / 2;
+        event.bytesToCopy = 4 * MIB;
+        event.bytesPerSecond = MIB;
+        event.averageBytesPerSecond = MIB / 2;
+        event.filesCopied = 1;
+        event.filesToCopy = 2L;
+        event.etaSeconds = 3725L;
+        event.stalledSeconds = 15;
+
+        String line = CopyProgress.format(event);
+
+        assertEquals("1.5M of 4.0M, 1.0M/s (average 512.0K/s), 1/2 files, ETA 1:02:05, stalled for 15s", line);
+    }
+
+    @Test
+    public void format_done_noEtaOrStalled() {
+        CopyProgress.Event event = new CopyProgress.Event();
+        event.event = "done";
+        event.bytesCopied = 512;
+        event.bytesToCopy = 512L;
+        event.etaSeconds = 0L;
+        event.stalledSeconds = 30;
+
+        String line = CopyProgress.format(event);
+
+        assertEquals("512 of 512, 0/s (average 0/s)", line);
+    }
+
+    @Test
+    public void wrap_countsWrittenBytes() throws IOException {
+        CopyProgress progress = progress(new ByteArrayOutputStream(), CopyProgress.TEXT);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (OutputStream out = progress.wrap(target)) {
+            out.write(new byte[1000], 10, 100);
+            out.write(1);
+        }
+
+        assertEquals(101, target.size());
+        assertEquals(101, progress.sample("progress", SECOND).bytesCopied);
+    }
+
+    @Test
+    public void close_jsonl_doneEvent() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        CopyProgress progress = progress(err, CopyProgress.JSONL);
+        progress.addBytes(42);
+        progress.fileCopied();
+
+        progress.close();
+
+        String output = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(output, output.startsWith("{\"event\":\"done\","));
+        assertTrue(output, output.contains("\"bytesCopied\":42,"));
+        assertTrue(output, output.contains("\"filesCopied\":1,"));
+        assertTrue(output, output.endsWith("}\n") || output.endsWith("}" + System.lineSeparator()));
+    }
+
+    @Test
+    public void close_reportsOnlyOnce() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        CopyProgress progress = progress(err, CopyProgress.TEXT);
+
+        progress.close();
+        progress.report("progress");
+
+        String output = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(1, output.split("\n").length);
+    }
+}
@@ -0,0 +1,110 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DeltaEncoderTest {
+    private static final int BLOCK_SIZE = 1024;
+
+    private static BlockSignatures signaturesOf(byte[] file) throws NoSuchAlgorithmException {
+        BlockSignatures signatures = new BlockSignatures(BLOCK_SIZE);
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        for (int offset = 0; offset + BLOCK_SIZE <= file.length; offset += BLOCK_SIZE) {
+            md5.update(file, offset, BLOCK_SIZE);
+            signatures.add(RollingChecksum.of(file, offset, BLOCK_SIZE), md5.digest());
+        }
+        return signatures;
+    }
+
+    /**
+     * Does what the script of a delta transfer does
+     */
+    private static byte[] apply(byte[] old, List<DeltaEncoder.Instruction> instructions, byte[] literals) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int literalOffset = 0;
+        for (DeltaEncoder.Instruction instruction : instructions) {
+            if (instruction.isLiteral()) {
+                out.write(literals, literalOffset, (int) instruction.count);
+                literalOffset += instruction.count;
+            } else {
+                out.write(old, (int) instruction.block * BLOCK_SIZE, (int) instruction.count * BLOCK_SIZE);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void encode_insertedAndChangedBytes_onlyDifferencesAreLiteral() throws IOException, NoSuchAlgorithmException {
+        byte[] old = random(100 * BLOCK_SIZE + 10, 1);
+        ByteArrayOutputStream changed = new ByteArrayOutputStream();
+        changed.write(old, 0, 30 * BLOCK_SIZE);
+        changed.write(random(100, 2));
+        changed.write(old, 30 * BLOCK_SIZE, old.length - 30 * BLOCK_SIZE);
+        byte[] file = changed.toByteArray();
+        file[80 * BLOCK_SIZE] ^= 1;
+        DeltaEncoder encoder = new DeltaEncoder(signaturesOf(old));
+        ByteArrayOutputStream literals = new ByteArrayOutputStream();
+
+        List<DeltaEncoder.Instruction> instructions = encoder.encode(new ByteArrayInputStream(file), literals);
+
+        assertArrayEquals(file, apply(old, instructions, literals.toByteArray()));
+        assertEquals(literals.size(), encoder.getLiteralBytes());
+        // inserted bytes, the changed block and the tail which is not a whole block
+        assertTrue("Literal bytes " + encoder.getLiteralBytes(), encoder.getLiteralBytes() < 100 + 2 * BLOCK_SIZE + 10);
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(file), encoder.getDigest());
+    }
+
+    @Test
+    public void encode_sameFile_singleCopy() throws IOException, NoSuchAlgorithmException {
+        byte[] old = random(50 * BLOCK_SIZE, 3);
+        DeltaEncoder encoder = new DeltaEncoder(signaturesOf(old));
+
+        List<DeltaEncoder.Instruction> instructions = encoder.encode(new ByteArrayInputStream(old), new ByteArrayOutputStream());
+
+        assertEquals(1, instructions.size());
+        assertEquals(0, instructions.get(0).block);
+        assertEquals(50, instructions.get(0).count);
+    }
+
+    @Test
+    public void encode_unrelatedFile_allLiteral() throws IOException, NoSuchAlgorithmException {
+        byte[] old = random(10 * BLOCK_SIZE, 4);
+        byte[] file = random(7 * BLOCK_SIZE + 3, 5);
+        DeltaEncoder encoder = new DeltaEncoder(signaturesOf(old));
+        ByteArrayOutputStream literals = new ByteArrayOutputStream();
+
+        encoder.encode(new ByteArrayInputStream(file), literals);
+
+        assertTrue(Arrays.equals(file, literals.toByteArray()));
+    }
+
+    @Test
+    public void parser_cksumAndMd5sumLines() {
+        BlockSignatures signatures = new BlockSignatures(4);
+        // split -b 4 with --filter=cksum and --filter=md5sum of abcdabcdab
+        String md5OfAbcd = "e2fc714c4727ee9395f324cd2e7f331f";
+
+        Arrays.asList("1278160200 4", "1278160200 4", "2072780115 2", "---", md5OfAbcd + "  -", md5OfAbcd + "  -", "187ef4436122d1cc2f40dc2b92f0eba0  -").forEach(signatures.parser());
+
+        assertEquals(2, signatures.getBlockCount());
+        assertTrue(signatures.contains(1278160200L));
+    }
+}
@@ -0,0 +1,67 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import nl.esciencecenter.xenon.filesystems.Path;
+
+public class DeltaTransferTest {
+    private static final long MB = 1024L * 1024;
+
+    @Test
+    public void isWorthwhile_smallFile_false() {
+        assertFalse(DeltaTransfer.isWorthwhile(DeltaTransfer.MIN_SIZE - 1, -1));
+    }
+
+    @Test
+    public void isWorthwhile_unknownBandwidth_true() {
+        assertTrue(DeltaTransfer.isWorthwhile(DeltaTransfer.MIN_SIZE, -1));
+    }
+
+    @Test
+    public void isWorthwhile_slowNetwork_true() {
+        assertTrue(DeltaTransfer.isWorthwhile(1024 * MB, 10 * MB));
+    }
+
+    @Test
+    public void isWorthwhile_fastNetwork_false() {
+        assertFalse(DeltaTransfer.isWorthwhile(1024 * MB, 1000 * MB));
+    }
+
+    @Test
+    public void blockSize_squareRoot() {
+        assertEquals(8 * 1024, DeltaTransfer.blockSize(MB));
+        assertEquals(32 * 1024, DeltaTransfer.blockSize(1024 * MB));
+        assertEquals(1024 * 1024, DeltaTransfer.blockSize(1024 * 1024 * MB * 1024));
+    }
+
+    @Test
+    public void supports_localToSftp() {
+        CopyInput local = new CopyInput("file", null, "/data", null);
+        CopyInput sftp = new CopyInput("sftp", "example.com", "/data", null);
+
+        assertTrue(DeltaTransfer.supports(local, sftp));
+        assertFalse(DeltaTransfer.supports(sftp, local));
+    }
+
+    @Test
+    public void script_blocksAndLiterals() {
+        DeltaEncoder.Instruction blocks = new DeltaEncoder.Instruction(2, 3);
+        DeltaEncoder.Instruction literal = new DeltaEncoder.Instruction(-1, 100);
+
+        String script = DeltaTransfer.script(Arrays.asList(blocks, literal), 4096, new Path("/data/f"), new Path("/data/f.d"), new Path("/data/f.n"), "abc");
+
+        String expected = "set -e\n{\n" +
+            "dd if='/data/f' bs=4096 skip=2 count=3 status=none\n" +
+            "dd if='/data/f.d' bs=65536 iflag=skip_bytes,count_bytes skip=0 count=100 status=none\n" +
+            "} > '/data/f.n'\n" +
+            "printf '%s  %s\\n' abc '/data/f.n' | md5sum -c --status\n" +
+            "mv -f '/data/f.n' '/data/f'\n";
+        assertEquals(expected, script);
+    }
+}
@@ -0,0 +1,90 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FileManifestTest {
+    @Test
+    public void parse_path() {
+        FileManifest.Entry entry = FileManifest.parse("dir/file with spaces.txt", 1);
+
+        assertEquals("dir/file with spaces.txt", entry.source);
+        assertEquals("dir/file with spaces.txt", entry.target);
+    }
+
+    @Test
+    public void parse_tabSeparated() {
+        FileManifest.Entry entry = FileManifest.parse("raw/run42.dat\tarchive/2019/run42.dat", 1);
+
+        assertEquals("raw/run42.dat", entry.source);
+        assertEquals("archive/2019/run42.dat", entry.target);
+    }
+
+    @Test
+    public void parse_tabSeparated_emptyTarget_error() {
+        FileManifest.Entry entry = FileManifest.parse("raw/run42.dat\t", 7);
+
+        assertEquals(7, entry.line);
+        assertNotNull(entry.error);
+    }
+
+    @Test
+    public void parse_jsonString() {
+        FileManifest.Entry entry = FileManifest.parse("\"dir/\\\"quoted\\\"\"", 1);
+
+        assertEquals("dir/\"quoted\"", entry.source);
+    }
+
+    @Test
+    public void parse_jsonSourceTarget() {
+        FileManifest.Entry entry = FileManifest.parse("{\"source\":\"/data/a\",\"target\":\"b\"}", 1);
+
+        assertEquals("/data/a", entry.source);
+        assertEquals("b", entry.target);
+    }
+
+    @Test
+    public void parse_longListItem() {
+        FileManifest.Entry entry = FileManifest.parse("{\"relativePath\":\"sub/file\",\"isRegular\":true,\"isDirectory\":false,\"size\":3}", 1);
+
+        assertEquals("sub/file", entry.source);
+        assertEquals("sub/file", entry.target);
+    }
+
+    @Test
+    public void parse_emptyLine_skipped() {
+        assertNull(FileManifest.parse("  ", 1));
+    }
+
+    @Test
+    public void parse_invalidJson_error() {
+        FileManifest.Entry entry = FileManifest.parse("{\"source\":", 3);
+
+        assertEquals(3, entry.line);
+        assertNotNull(entry.error);
+    }
+
+    @Test
+    public void iterator_skipsAndNumbersLines() throws IOException {
+        List<FileManifest.Entry> entries = new ArrayList<>();
+        try (FileManifest manifest = new FileManifest(new StringReader("a\n\nb\tc\n\ne\n"))) {
+            manifest.forEachRemaining(entries::add);
+            assertFalse(manifest.hasNext());
+        }
+
+        assertEquals(3, entries.size());
+        assertEquals("c", entries.get(1).target);
+        assertEquals(3, entries.get(1).line);
+        assertEquals("e", entries.get(2).source);
+        assertEquals(5, entries.get(2).line);
+    }
+}
@@ -0,0 +1,85 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalTransferTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] bytes;
+    private Path source;
+
+    @Before
+    public void setUp() throws IOException {
+        bytes = new byte[1024 * 1024 + 7];
+        new Random(1).nextBytes(bytes);
+        source = Files.write(folder.getRoot().toPath().resolve("source"), bytes);
+    }
+
+    @Test
+    public void copy_newTarget() throws IOException {
+        Path target = folder.getRoot().toPath().resolve("target");
+
+        long copied = LocalTransfer.copy(source, target, false);
+
+        assertEquals(bytes.length, copied);
+        assertArrayEquals(bytes, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void copy_replaceLongerTarget_truncated() throws IOException {
+        Path target = Files.write(folder.getRoot().toPath().resolve("target"), new byte[2 * bytes.length]);
+
+        LocalTransfer.copy(source, target, true);
+
+        assertArrayEquals(bytes, Files.readAllBytes(target));
+    }
+
+    @Test(expected = FileAlreadyExistsException.class)
+    public void copy_existingTarget_refused() throws IOException {
+        Path target = Files.write(folder.getRoot().toPath().resolve("target"), new byte[1]);
+
+        LocalTransfer.copy(source, target, false);
+    }
+
+    @Test
+    public void toStdout_appendsAtPosition() throws IOException {
+        Path stdoutFile = Files.write(folder.getRoot().toPath().resolve("stdout"), new byte[]{1, 2});
+        try (FileChannel stdout = FileChannel.open(stdoutFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            LocalTransfer.toStdout(source, stdout, bytes -> { });
+        }
+
+        byte[] written = Files.readAllBytes(stdoutFile);
+        assertEquals(2 + bytes.length, written.length);
+        assertArrayEquals(bytes, Arrays.copyOfRange(written, 2, written.length));
+    }
+
+    @Test
+    public void fromStdin_redirectedFile_fromPosition() throws IOException {
+        Path target = folder.getRoot().toPath().resolve("target");
+        try (FileChannel stdin = FileChannel.open(source, StandardOpenOption.READ)) {
+            stdin.position(7);
+
+            long copied = LocalTransfer.fromStdin(stdin, new ByteArrayInputStream(new byte[0]), target, bytes -> { });
+
+            assertEquals(bytes.length - 7, copied);
+        }
+        assertArrayEquals(Arrays.copyOfRange(bytes, 7, bytes.length), Files.readAllBytes(target));
+    }
+}
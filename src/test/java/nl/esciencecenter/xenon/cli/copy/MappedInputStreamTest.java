@@ -0,0 +1,103 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import nl.esciencecenter.xenon.cli.Utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedInputStreamTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file(int size) throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        return Files.write(folder.getRoot().toPath().resolve("file"), bytes);
+    }
+
+    @Test
+    public void read_sameAsFile() throws IOException {
+        Path file = file(3 * 1024 * 1024 + 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (InputStream in = new MappedInputStream(file)) {
+            Utils.pipe(in, out);
+        }
+
+        assertArrayEquals(Files.readAllBytes(file), out.toByteArray());
+    }
+
+    @Test
+    public void read_acrossWindows() throws IOException {
+        Path file = file(10000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (InputStream in = new MappedInputStream(file, 3, 4096)) {
+            Utils.pipe(in, out);
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        assertArrayEquals(Arrays.copyOfRange(bytes, 3, bytes.length), out.toByteArray());
+    }
+
+    @Test
+    public void read_fromOffset() throws IOException {
+        Path file = file(1000);
+
+        try (InputStream in = new MappedInputStream(file, 990)) {
+            byte[] buffer = new byte[100];
+            assertEquals(10, in.read(buffer));
+            assertArrayEquals(Arrays.copyOfRange(Files.readAllBytes(file), 990, 1000), Arrays.copyOf(buffer, 10));
+            assertEquals(-1, in.read(buffer));
+        }
+    }
+
+    @Test
+    public void skip_thenRead() throws IOException {
+        Path file = file(1000);
+
+        try (InputStream in = new MappedInputStream(file)) {
+            assertEquals(5, in.read(new byte[5]));
+            assertEquals(500, in.skip(500));
+            assertEquals(Files.readAllBytes(file)[505] & 0xff, in.read());
+            assertEquals(494, in.available());
+            assertEquals(494, in.skip(1000));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void read_emptyFile_end() throws IOException {
+        Path file = file(0);
+
+        try (InputStream in = new MappedInputStream(file)) {
+            assertEquals(-1, in.read(new byte[10]));
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void constructor_offsetBeyondEnd_refused() throws IOException {
+        new MappedInputStream(file(10), 11);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_closed_refused() throws IOException {
+        InputStream in = new MappedInputStream(file(10));
+        in.close();
+
+        in.read(new byte[10]);
+    }
+}
@@ -0,0 +1,80 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import nl.esciencecenter.xenon.cli.Utils;
+
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+    private static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, 4)) {
+            for (int offset = 0; offset < bytes.length; offset += 10000) {
+                out.write(bytes, offset, Math.min(10000, bytes.length - offset));
+            }
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            Utils.pipe(in, out);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void close_randomBytes_gunzipsToSameBytes() throws IOException {
+        Random random = new Random(1);
+        for (int size : new int[]{0, 1, ParallelGzipOutputStream.BLOCK_SIZE, 10 * ParallelGzipOutputStream.BLOCK_SIZE + 123}) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+
+            assertArrayEquals("Size " + size, bytes, decompress(compress(bytes)));
+        }
+    }
+
+    @Test
+    public void close_text_compressedAcrossBlocks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append(i % 1000).append(",sample,").append(i % 7).append('\n');
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = compress(bytes);
+
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(serial)) {
+            out.write(bytes);
+        }
+        assertArrayEquals(bytes, decompress(compressed));
+        // the dictionary of the previous block keeps the ratio close to a single deflate stream
+        assertTrue("Compressed to " + compressed.length + " instead of " + serial.size(), compressed.length < serial.size() * 1.05);
+    }
+
+    @Test(expected = EOFException.class)
+    public void abort_noTrailer() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, 4);
+        out.write(new byte[3 * ParallelGzipOutputStream.BLOCK_SIZE]);
+
+        out.abort();
+        out.close();
+
+        decompress(compressed.toByteArray());
+    }
+}
@@ -0,0 +1,103 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PipelinedChecksumTest {
+    private static String digest(String algorithm, byte[] bytes) {
+        ContentDigest digest = ContentDigest.of(algorithm);
+        digest.update(bytes, 0, bytes.length);
+        return digest.hex();
+    }
+
+    @Test
+    public void crc32c_knownValue() {
+        byte[] bytes = "123456789".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("e3069283", digest(ContentDigest.CRC32C, bytes));
+    }
+
+    @Test
+    public void sha256_sameAsSha256sum() {
+        byte[] bytes = "abc".getBytes(StandardCharsets.UTF_8);
+
+        // printf abc | sha256sum
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", digest(ContentDigest.SHA256, bytes));
+    }
+
+    @Test
+    public void finish_severalFiles_digestOfEachFile() throws IOException {
+        Random random = new Random(1);
+        try (PipelinedChecksum checksum = new PipelinedChecksum(ContentDigest.SHA256)) {
+            for (int size : new int[]{0, 1, 3 * 1024 * 1024 + 17, 1000}) {
+                byte[] bytes = new byte[size];
+                random.nextBytes(bytes);
+                ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+                try (OutputStream out = checksum.wrap(target)) {
+                    for (int offset = 0; offset < size; offset += 10000) {
+                        out.write(bytes, offset, Math.min(10000, size - offset));
+                    }
+                }
+
+                assertArrayEquals(bytes, target.toByteArray());
+                assertEquals("Size " + size, digest(ContentDigest.SHA256, bytes), checksum.finish());
+            }
+        }
+    }
+
+    @Test
+    public void finish_afterAbandonedFile_digestOfNextFileOnly() throws IOException {
+        byte[] abandoned = "abandoned".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = "next".getBytes(StandardCharsets.UTF_8);
+        try (PipelinedChecksum checksum = new PipelinedChecksum(ContentDigest.CRC32C)) {
+            checksum.wrap(new ByteArrayOutputStream()).write(abandoned);
+
+            try (OutputStream out = checksum.wrap(new ByteArrayOutputStream())) {
+                out.write(bytes);
+            }
+
+            assertEquals(digest(ContentDigest.CRC32C, bytes), checksum.finish());
+        }
+    }
+
+    @Test
+    public void write_hashingFailed_thrown() throws IOException {
+        IllegalStateException failure = new IllegalStateException("broken digest");
+        ContentDigest broken = new ContentDigest() {
+            @Override
+            void update(byte[] bytes, int offset, int length) {
+                throw failure;
+            }
+
+            @Override
+            String hex() {
+                return "";
+            }
+        };
+        byte[] bytes = new byte[1024];
+        try (PipelinedChecksum checksum = new PipelinedChecksum(() -> broken)) {
+            OutputStream out = checksum.wrap(new ByteArrayOutputStream());
+            try {
+                // more buffers than the checksum has, so without the failure a writer would wait for the hashing thread forever
+                for (int i = 0; i < 100; i++) {
+                    out.write(bytes);
+                }
+                checksum.finish();
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+    }
+}
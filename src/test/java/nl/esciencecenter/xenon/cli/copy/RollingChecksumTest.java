@@ -0,0 +1,32 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RollingChecksumTest {
+    @Test
+    public void of_sameAsPosixCksum() {
+        byte[] bytes = "hello world".getBytes(StandardCharsets.UTF_8);
+
+        // printf 'hello world' | cksum
+        assertEquals(1135714720L, RollingChecksum.of(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void roll_sameAsChecksumOfWindow() {
+        byte[] bytes = new byte[3000];
+        new Random(1).nextBytes(bytes);
+        int windowSize = 256;
+        RollingChecksum rolling = new RollingChecksum(windowSize);
+        rolling.reset(bytes, 0);
+
+        for (int offset = 0; offset + windowSize < bytes.length; offset++) {
+            assertEquals("Offset " + offset, RollingChecksum.of(bytes, offset, windowSize), rolling.value());
+            rolling.roll(bytes[offset], bytes[offset + windowSize]);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.cli.Session;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+
+public class SegmentedTransferTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CopyInput local(java.nio.file.Path path) {
+        return new CopyInput("file", null, path.toString(), null);
+    }
+
+    private static PathAttributes attributes(CopyInput input) throws XenonException {
+        try (Session<FileSystem> session = input.openFileSystem()) {
+            return session.get().getAttributes(input.getPath());
+        }
+    }
+
+    private static long copy(CopyInput source, CopyInput target, CopyJournal.FileState resumed) throws XenonException, IOException {
+        CopyOptions options = new CopyOptions().setStreams(4).setSegmentSize(SEGMENT_SIZE).setSegmentThreshold(SEGMENT_SIZE);
+        return new SegmentedTransfer(source, target, options, null, "big", null, 1).copy(attributes(source), target.getPath(), resumed);
+    }
+
+    @Test
+    public void copy_localSeveralStreams_sameContent() throws IOException, XenonException {
+        byte[] bytes = new byte[10 * SEGMENT_SIZE + 7];
+        new Random(1).nextBytes(bytes);
+        java.nio.file.Path source = Files.write(folder.getRoot().toPath().resolve("source"), bytes);
+        java.nio.file.Path target = folder.getRoot().toPath().resolve("target");
+
+        long copied = copy(local(source), local(target), null);
+
+        assertEquals(bytes.length, copied);
+        assertArrayEquals(bytes, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void copy_resumed_doneSegmentsSkipped() throws IOException, XenonException {
+        byte[] bytes = new byte[4 * SEGMENT_SIZE];
+        new Random(1).nextBytes(bytes);
+        java.nio.file.Path source = Files.write(folder.getRoot().toPath().resolve("source"), bytes);
+        java.nio.file.Path target = Files.write(folder.getRoot().toPath().resolve("target"), new byte[bytes.length]);
+        CopyJournal.FileState resumed = new CopyJournal.FileState();
+        resumed.segments.set(1);
+
+        long copied = copy(local(source), local(target), resumed);
+
+        assertEquals(3 * SEGMENT_SIZE, copied);
+        byte[] expected = bytes.clone();
+        Arrays.fill(expected, SEGMENT_SIZE, 2 * SEGMENT_SIZE, (byte) 0);
+        assertArrayEquals(expected, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void partOf_zeroPadded() {
+        Path part = SegmentedTransfer.partOf(new Path("/data/big.tar"), 12);
+
+        assertEquals("/data/big.tar.xenon-part-000012", part.toString());
+    }
+
+    @Test
+    public void quote_singleQuote() {
+        assertEquals("'it'\\''s'", SegmentedTransfer.quote("it's"));
+    }
+
+    @Test
+    public void supports_localAndSftp() {
+        assertTrue(SegmentedTransfer.supports(new CopyInput("file", null, "/data", null)));
+        assertTrue(SegmentedTransfer.supports(new CopyInput("sftp", "example.com", "/data", null)));
+        assertFalse(SegmentedTransfer.supports(new CopyInput("webdav", "https://example.com", "/data", null)));
+    }
+
+    @Test
+    public void isSegmented_aboveThreshold() {
+        CopyOptions options = new CopyOptions().setStreams(4).setSegmentSize(10).setSegmentThreshold(100);
+
+        assertFalse(options.isSegmented(99));
+        assertTrue(options.isSegmented(100));
+    }
+
+    @Test
+    public void isSegmented_singleStream_false() {
+        CopyOptions options = new CopyOptions().setSegmentSize(10).setSegmentThreshold(100);
+
+        assertFalse(options.isSegmented(1000));
+    }
+}
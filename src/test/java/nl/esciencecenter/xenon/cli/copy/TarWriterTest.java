@@ -0,0 +1,167 @@
+package nl.esciencecenter.xenon.cli.copy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TarWriterTest {
+    private static String field(byte[] archive, int offset, int length) {
+        String value = new String(archive, offset, length, StandardCharsets.UTF_8);
+        int end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    @Test
+    public void writeFile_header() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+        byte[] content = "hello".getBytes(StandardCharsets.UTF_8);
+
+        tar.writeFile("dir/hello.txt", 0640, 1_500_000_000_000L, content.length, new ByteArrayInputStream(content));
+
+        byte[] archive = out.toByteArray();
+        assertEquals("dir/hello.txt", field(archive, 0, 100));
+        assertEquals("0000640", field(archive, 100, 8));
+        assertEquals("00000000005", field(archive, 124, 12));
+        assertEquals(Long.toOctalString(1_500_000_000L), field(archive, 136, 12));
+        assertEquals('0', archive[156]);
+        assertEquals("ustar", field(archive, 257, 6));
+        assertEquals("00", field(archive, 263, 2));
+        assertEquals("hello", field(archive, 512, 512));
+    }
+
+    @Test
+    public void writeFile_checksum() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        tar.writeFile("a", 0644, 0, 0, new ByteArrayInputStream(new byte[0]));
+
+        byte[] header = out.toByteArray();
+        long expected = 8 * ' ';
+        for (int i = 0; i < TarWriter.BLOCK_SIZE; i++) {
+            if (i < 148 || i >= 156) {
+                expected += header[i] & 0xff;
+            }
+        }
+        assertEquals(expected, Long.parseLong(field(header, 148, 7), 8));
+    }
+
+    @Test
+    public void writeFile_paddedToBlocks() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        tar.writeFile("a", 0644, 0, 513, new ByteArrayInputStream(new byte[513]));
+
+        assertEquals(3 * TarWriter.BLOCK_SIZE, out.size());
+        assertEquals(out.size(), tar.getBytesWritten());
+    }
+
+    @Test
+    public void writeFile_shrunk_paddedWithZeros() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        try {
+            tar.writeFile("a", 0644, 0, 1000, new ByteArrayInputStream(new byte[10]));
+        } catch (EOFException e) {
+            assertEquals(3 * TarWriter.BLOCK_SIZE, out.size());
+            return;
+        }
+        throw new AssertionError("Expected EOFException");
+    }
+
+    @Test
+    public void writeFile_grown_cutOff() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        tar.writeFile("a", 0644, 0, 10, new ByteArrayInputStream(new byte[1000]));
+
+        assertEquals(2 * TarWriter.BLOCK_SIZE, out.size());
+    }
+
+    @Test
+    public void writeDirectory_trailingSlash() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        tar.writeDirectory("dir", 0755, 0);
+
+        byte[] archive = out.toByteArray();
+        assertEquals("dir/", field(archive, 0, 100));
+        assertEquals('5', archive[156]);
+    }
+
+    @Test
+    public void writeSymbolicLink_target() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        tar.writeSymbolicLink("link", "../file", 0);
+
+        byte[] archive = out.toByteArray();
+        assertEquals('2', archive[156]);
+        assertEquals("../file", field(archive, 157, 100));
+    }
+
+    @Test
+    public void writeFile_longName_paxHeader() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+        String name = String.join("/", Collections.nCopies(30, "dir")) + "/file";
+
+        tar.writeFile(name, 0644, 0, 0, new ByteArrayInputStream(new byte[0]));
+
+        byte[] archive = out.toByteArray();
+        assertEquals('x', archive[156]);
+        String records = field(archive, 512, 512);
+        assertEquals(records.length() + " path=" + name + "\n", records);
+        assertEquals('0', archive[1024 + 156]);
+        assertEquals(3 * TarWriter.BLOCK_SIZE, archive.length);
+    }
+
+    @Test
+    public void paxRecords_lengthIncludesOwnDigits() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("path", "some/long/name");
+        // 89 bytes without its length, 91 with it
+        values.put("linkpath", new String(new char[78]).replace('\0', 'a'));
+
+        String records = new String(TarWriter.paxRecords(values), StandardCharsets.UTF_8);
+
+        assertEquals("23 path=some/long/name\n91 linkpath=" + values.get("linkpath") + "\n", records);
+    }
+
+    @Test
+    public void paxRecords_lengthGainsDigit() {
+        // 98 bytes without its length, which makes 100 and so needs a third digit
+        String value = new String(new char[91]).replace('\0', 'a');
+
+        String records = new String(TarWriter.paxRecords(Collections.singletonMap("path", value)), StandardCharsets.UTF_8);
+
+        assertTrue(records, records.startsWith("101 path="));
+        assertEquals(101, records.length());
+    }
+
+    @Test
+    public void finish_twoZeroBlocks() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarWriter tar = new TarWriter(out);
+
+        tar.finish();
+
+        assertEquals(2 * TarWriter.BLOCK_SIZE, out.size());
+    }
+}
@@ -0,0 +1,114 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import nl.esciencecenter.xenon.cli.StreamingOutput;
+import org.junit.Test;
+
+public class ExternalSorterTest {
+    private static ExternalSorter<String> newSorter(long memoryBudget) {
+        return new ExternalSorter<>(String.class, Comparator.naturalOrder(), memoryBudget, String::length);
+    }
+
+    private static List<String> shuffledNames(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("dir" + (i % 7) + "/file" + i);
+        }
+        Collections.shuffle(names, new Random(42));
+        return names;
+    }
+
+    @Test
+    public void add_withinBudget_sortedInMemory() throws IOException {
+        List<String> names = shuffledNames(10);
+        try (ExternalSorter<String> sorter = newSorter(Long.MAX_VALUE)) {
+            for (String name : names) {
+                sorter.add(name);
+            }
+
+            assertFalse(sorter.hasSpilled());
+            Collections.sort(names);
+            assertEquals(names, sorter.sortedInMemory());
+        }
+    }
+
+    @Test
+    public void iterator_spilledRuns_sorted() throws IOException {
+        List<String> names = shuffledNames(1000);
+        try (ExternalSorter<String> sorter = newSorter(100)) {
+            for (String name : names) {
+                sorter.add(name);
+            }
+
+            assertTrue(sorter.hasSpilled());
+            List<String> result = new ArrayList<>();
+            sorter.iterator().forEachRemaining(result::add);
+            Collections.sort(names);
+            assertEquals(names, result);
+        }
+    }
+
+    @Test
+    public void iterator_moreRunsThanFanIn_sorted() throws IOException {
+        // every item is a run of its own
+        List<String> names = shuffledNames(ExternalSorter.MAX_MERGE_FAN_IN * 2 + 3);
+        try (ExternalSorter<String> sorter = newSorter(1)) {
+            for (String name : names) {
+                sorter.add(name);
+            }
+
+            List<String> result = new ArrayList<>();
+            Iterator<String> iterator = sorter.iterator();
+            iterator.forEachRemaining(result::add);
+            Collections.sort(names);
+            assertEquals(names, result);
+        }
+    }
+
+    @Test
+    public void sortedListingOutput_sameAsInMemoryOutput() throws IOException {
+        List<String> names = shuffledNames(50);
+        ExternalSorter<String> sorter = newSorter(100);
+        for (String name : names) {
+            sorter.add(name);
+        }
+        Collections.sort(names);
+        ListFilesOutput expected = new ListFilesOutput(names);
+        Gson gson = new GsonBuilder().setPrettyPrinting()
+            .registerTypeHierarchyAdapter(StreamingOutput.class, new StreamingOutput.Adapter()).create();
+
+        String result = gson.toJson(new SortedListingOutput(sorter, false));
+
+        assertEquals(gson.toJson(expected), result);
+    }
+
+    @Test
+    public void sortedListingOutput_writeText_sameAsInMemoryOutput() throws IOException {
+        List<String> names = shuffledNames(50);
+        ExternalSorter<String> sorter = newSorter(100);
+        for (String name : names) {
+            sorter.add(name);
+        }
+        Collections.sort(names);
+        String sep = System.getProperty("line.separator");
+        StringWriter writer = new StringWriter();
+
+        new SortedListingOutput(sorter, false).writeText(writer);
+
+        assertEquals(new ListFilesOutput(names).toString() + sep, writer.toString());
+    }
+}
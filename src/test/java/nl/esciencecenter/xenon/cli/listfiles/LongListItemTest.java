@@ -1,16 +1,22 @@
 package nl.esciencecenter.xenon.cli.listfiles;
 
+import com.google.gson.Gson;
+import nl.esciencecenter.xenon.adaptors.filesystems.PathAttributesImplementation;
 import nl.esciencecenter.xenon.filesystems.AttributeNotSupportedException;
 import nl.esciencecenter.xenon.filesystems.Path;
 import nl.esciencecenter.xenon.filesystems.PathAttributes;
 import nl.esciencecenter.xenon.filesystems.PosixFilePermission;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -30,7 +36,7 @@ public class LongListItemTest {
         assertNull(item.owner);
         assertNull(item.group);
         Set<PosixFilePermission> expected = new HashSet<>();
-        assertEquals("Empty permissions", expected, item.permissions);
+        assertEquals("Empty permissions", expected, item.getPermissions());
     }
 
     @Test
@@ -51,7 +57,7 @@ public class LongListItemTest {
         expected.add(PosixFilePermission.OTHERS_EXECUTE);
         expected.add(PosixFilePermission.OTHERS_WRITE);
         expected.add(PosixFilePermission.OTHERS_READ);
-        assertEquals("------rwx permissions", expected, item.permissions);
+        assertEquals("------rwx permissions", expected, item.getPermissions());
     }
 
     @Test
@@ -87,4 +93,69 @@ public class LongListItemTest {
         String expected = "o\t---------\tfalse\t\t\t0\t\tfile1";
         assertEquals(expected, item.toString());
     }
-}
\ No newline at end of file
+
+    private static PathAttributesImplementation file(String path) {
+        PathAttributesImplementation attribs = new PathAttributesImplementation();
+        attribs.setPath(new Path(path));
+        attribs.setRegular(true);
+        attribs.setSize(42L);
+        attribs.setLastModifiedTime(1501233873000L);
+        attribs.setOwner(new String("xenon"));
+        Set<PosixFilePermission> perms = new HashSet<>();
+        perms.add(PosixFilePermission.OWNER_READ);
+        perms.add(PosixFilePermission.GROUP_EXECUTE);
+        attribs.setPermissions(perms);
+        return attribs;
+    }
+
+    @Test
+    public void construct_nested_pathsFormatted() {
+        PathPrefix.Table table = new PathPrefix.Table(new Path("/start"));
+
+        LongListItem item = new LongListItem(file("/start/dir1/dir2/file1"), table);
+
+        assertEquals("dir1/dir2/file1", item.getRelativePath());
+        assertEquals("/start/dir1/dir2/file1", item.getAbsolutePath());
+    }
+
+    @Test
+    public void construct_sameDirectory_sharesPrefixAndOwner() {
+        PathPrefix.Table table = new PathPrefix.Table(new Path("/start"));
+
+        LongListItem item1 = new LongListItem(file("/start/dir1/file1"), table);
+        LongListItem item2 = new LongListItem(file("/start/dir1/file2"), table);
+
+        assertSame(item1.owner, item2.owner);
+        assertEquals("dir1/file2", item2.getRelativePath());
+    }
+
+    @Test
+    public void byRelativePath_sameOrderAsStrings() {
+        PathPrefix.Table table = new PathPrefix.Table(new Path("/"));
+        List<String> paths = Arrays.asList("/a/b", "/a-c", "/a/b/c", "/a", "/ab", "/a/a", "/b/a");
+
+        List<String> result = paths.stream()
+                .map(p -> new LongListItem(file(p), table))
+                .sorted(LongListItem.byRelativePath())
+                .map(LongListItem::getRelativePath)
+                .collect(Collectors.toList());
+
+        List<String> expected = paths.stream().map(p -> p.substring(1)).sorted().collect(Collectors.toList());
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void json_roundTrip() {
+        Gson gson = new Gson();
+        PathPrefix.Table table = new PathPrefix.Table(new Path("/start"));
+        LongListItem item = new LongListItem(file("/start/dir1/file1"), table);
+        String json = gson.toJson(item);
+
+        LongListItem result = gson.fromJson(json, LongListItem.class);
+
+        assertEquals(json, gson.toJson(result));
+        assertEquals("dir1/file1", result.getRelativePath());
+        assertEquals("/start/dir1/file1", result.getAbsolutePath());
+        assertEquals(item.toString(), result.toString());
+    }
+}
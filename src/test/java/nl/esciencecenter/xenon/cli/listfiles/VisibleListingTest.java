@@ -0,0 +1,86 @@
+package nl.esciencecenter.xenon.cli.listfiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.esciencecenter.xenon.XenonException;
+import nl.esciencecenter.xenon.adaptors.filesystems.PathAttributesImplementation;
+import nl.esciencecenter.xenon.filesystems.FileSystem;
+import nl.esciencecenter.xenon.filesystems.Path;
+import nl.esciencecenter.xenon.filesystems.PathAttributes;
+import org.junit.Test;
+
+public class VisibleListingTest {
+    private static PathAttributes item(String path, boolean isDirectory, boolean isHidden) {
+        PathAttributesImplementation attribs = new PathAttributesImplementation();
+        attribs.setPath(new Path(path));
+        attribs.setDirectory(isDirectory);
+        attribs.setRegular(!isDirectory);
+        attribs.setHidden(isHidden);
+        return attribs;
+    }
+
+    private static List<String> paths(Iterable<PathAttributes> listing) {
+        List<String> result = new ArrayList<>();
+        for (PathAttributes item : listing) {
+            result.add(item.getPath().toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void iterator_hiddenDirectory_notListed() throws XenonException {
+        FileSystem fs = mock(FileSystem.class);
+        Path start = new Path("/start");
+        when(fs.list(start, false)).thenReturn(Arrays.asList(
+                item("/start/.cache", true, true),
+                item("/start/dir1", true, false),
+                item("/start/.file", false, true),
+                item("/start/dir2", true, false),
+                item("/start/file1", false, false)
+        ));
+        when(fs.list(new Path("/start/dir1"), false)).thenReturn(Arrays.asList(
+                item("/start/dir1/sub", true, false),
+                item("/start/dir1/.git", true, true),
+                item("/start/dir1/file2", false, false)
+        ));
+        when(fs.list(new Path("/start/dir1/sub"), false)).thenReturn(Arrays.asList(
+                item("/start/dir1/sub/file3", false, false)
+        ));
+        when(fs.list(new Path("/start/dir2"), false)).thenReturn(Arrays.asList(
+                item("/start/dir2/file4", false, false)
+        ));
+
+        List<String> result = paths(new VisibleListing(fs, start));
+
+        List<String> expected = Arrays.asList(
+                "/start/dir1", "/start/dir2", "/start/file1",
+                "/start/dir1/sub", "/start/dir1/file2",
+                "/start/dir1/sub/file3",
+                "/start/dir2/file4"
+        );
+        assertEquals(expected, result);
+        verify(fs, never()).list(eq(new Path("/start/.cache")), anyBoolean());
+        verify(fs, never()).list(eq(new Path("/start/dir1/.git")), anyBoolean());
+    }
+
+    @Test
+    public void iterator_emptyDirectory_empty() throws XenonException {
+        FileSystem fs = mock(FileSystem.class);
+        Path start = new Path("/start");
+        when(fs.list(start, false)).thenReturn(new ArrayList<>());
+
+        List<String> result = paths(new VisibleListing(fs, start));
+
+        assertEquals(new ArrayList<String>(), result);
+    }
+}
@@ -0,0 +1,52 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ChunkInputStreamTest {
+    @Test
+    public void read_multipleChunks_concatenated() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(wire);
+        byte[] hello = "Hello ".getBytes(StandardCharsets.UTF_8);
+        byte[] world = "world".getBytes(StandardCharsets.UTF_8);
+        ServeProtocol.writeChunk(out, hello, hello.length);
+        ServeProtocol.writeChunk(out, world, world.length);
+        ServeProtocol.writeChunk(out, world, 0);
+        // bytes after end of stdin must not be read
+        out.writeByte(42);
+
+        ChunkInputStream in = new ChunkInputStream(new DataInputStream(new ByteArrayInputStream(wire.toByteArray())));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4];
+        int len = in.read(buffer, 0, buffer.length);
+        while (len != -1) {
+            result.write(buffer, 0, len);
+            len = in.read(buffer, 0, buffer.length);
+        }
+
+        assertEquals("Hello world", new String(result.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void write_frameOutputStream_framesWithType() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        FrameOutputStream out = new FrameOutputStream(new DataOutputStream(wire), ServeProtocol.STDERR);
+
+        out.write("oops".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(wire.toByteArray()));
+        assertEquals(ServeProtocol.STDERR, in.readByte());
+        assertEquals("oops", new String(ServeProtocol.readPayload(in), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,104 @@
+package nl.esciencecenter.xenon.cli.serve;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClientStreamsTest {
+    private PrintStream originalOut;
+    private ByteArrayOutputStream daemonOut;
+
+    @Before
+    public void setUp() {
+        originalOut = System.out;
+        daemonOut = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(daemonOut, true));
+        ClientStreams.install();
+    }
+
+    @After
+    public void tearDown() {
+        ClientStreams.uninstall();
+        System.setOut(originalOut);
+    }
+
+    private static String text(ByteArrayOutputStream out) {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static ClientStreams attach(ByteArrayOutputStream out, byte[] in) {
+        return ClientStreams.attach(new PrintStream(out, true), new PrintStream(new ByteArrayOutputStream(), true), new ByteArrayInputStream(in));
+    }
+
+    @Test
+    public void out_eachThreadToItsClient() throws InterruptedException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Thread other = new Thread(() -> {
+            ClientStreams client = attach(second, new byte[0]);
+            System.out.print("second");
+            client.detach();
+        });
+
+        ClientStreams client = attach(first, new byte[0]);
+        other.start();
+        other.join();
+        System.out.print("first");
+        client.detach();
+
+        assertEquals("first", text(first));
+        assertEquals("second", text(second));
+        assertEquals("", text(daemonOut));
+    }
+
+    @Test
+    public void out_inheritedByStartedThread() throws InterruptedException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ClientStreams client = attach(first, new byte[0]);
+        Thread worker = new Thread(() -> System.out.print("worker"));
+
+        worker.start();
+        worker.join();
+        client.detach();
+
+        assertEquals("worker", text(first));
+    }
+
+    @Test
+    public void out_detached_daemon() throws InterruptedException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ClientStreams client = attach(first, new byte[0]);
+        Object lock = new Object();
+        Thread worker = new Thread(() -> {
+            synchronized (lock) {
+                System.out.print("late");
+            }
+        });
+        synchronized (lock) {
+            worker.start();
+            client.detach();
+        }
+        worker.join();
+
+        assertEquals("", text(first));
+        assertEquals("late", text(daemonOut));
+    }
+
+    @Test
+    public void in_ofClient() throws IOException {
+        ClientStreams client = attach(new ByteArrayOutputStream(), new byte[] {42});
+
+        int b = System.in.read();
+        client.detach();
+
+        assertEquals(42, b);
+    }
+}
@@ -0,0 +1,24 @@
+package nl.esciencecenter.xenon.cli.sync;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TreeDiffTest {
+    @Test
+    public void comparePaths_contentRightAfterDirectory() {
+        List<String> paths = Arrays.asList("a.txt", "a/x", "a-b/y", "a", "a-b", "a/x/z", "b");
+
+        paths.sort(TreeDiff::comparePaths);
+
+        assertEquals(Arrays.asList("a", "a/x", "a/x/z", "a-b", "a-b/y", "a.txt", "b"), paths);
+    }
+
+    @Test
+    public void comparePaths_equal() {
+        assertEquals(0, TreeDiff.comparePaths("a/b", "a/b"));
+    }
+}